@@ -1,6 +1,7 @@
 package ashes.of.jade.editor;
 
 import ashes.of.jade.editor.frames.EditorFrame;
+import ashes.of.jade.lang.interpreter.ExecutionPool;
 import ashes.of.jade.lang.interpreter.Interpreter;
 import ashes.of.jade.lang.interpreter.Settings;
 import ashes.of.jade.lang.lexer.Lexer;
@@ -11,7 +12,6 @@ import org.apache.logging.log4j.Logger;
 
 import javax.inject.Named;
 import javax.swing.*;
-import java.util.concurrent.ForkJoinPool;
 
 
 @Singleton
@@ -25,18 +25,39 @@ public class Editor {
 
         }
 
+        @Provides
+        @Singleton
+        public Settings settings() {
+            Settings settings = new Settings();
+            try {
+                if (settings.loadProfile(Settings.DEFAULT_PROFILE))
+                    log.info("Profile {} is loaded", Settings.DEFAULT_PROFILE);
+            } catch (Exception e) {
+                log.warn("Can't load profile {}", Settings.DEFAULT_PROFILE, e);
+            }
+
+            return settings;
+        }
+
         @Provides
         @Singleton
         @Named("editor-pool")
-        public ForkJoinPool editorPool() {
-            return ForkJoinPool.commonPool();
+        public ExecutionPool editorPool(Settings settings) {
+            return new ExecutionPool("editor-pool", settings.getEditorPoolSize());
         }
 
         @Provides
         @Singleton
         @Named("interpreter-pool")
-        public ForkJoinPool interpreterPool() {
-            return ForkJoinPool.commonPool();
+        public ExecutionPool interpreterPool(Settings settings) {
+            return new ExecutionPool("interpreter-pool", settings.getInterpreterPoolSize());
+        }
+
+        @Provides
+        @Singleton
+        @Named("background-pool")
+        public ExecutionPool backgroundPool(Settings settings) {
+            return new ExecutionPool("background-pool", settings.getBackgroundPoolSize());
         }
 
         @Provides
@@ -47,8 +68,7 @@ public class Editor {
 
         @Provides
         @Singleton
-        public Interpreter interpreter(Lexer lexer, @Named("interpreter-pool") ForkJoinPool pool) {
-            Settings settings = new Settings();
+        public Interpreter interpreter(Lexer lexer, Settings settings, @Named("interpreter-pool") ExecutionPool pool) {
             Interpreter interpreter = new Interpreter(pool, settings, lexer, new Parser());
             return interpreter;
         }
@@ -3,6 +3,9 @@ package ashes.of.jade.editor.frames;
 import ashes.of.jade.editor.Listeners;
 import ashes.of.jade.editor.VariablesTableModel;
 import ashes.of.jade.lang.Location;
+import ashes.of.jade.lang.interpreter.Evaluation;
+import ashes.of.jade.lang.interpreter.EvaluationCancelledException;
+import ashes.of.jade.lang.interpreter.ExecutionPool;
 import ashes.of.jade.lang.interpreter.Interpreter;
 import ashes.of.jade.lang.interpreter.Scope;
 import ashes.of.jade.lang.lexer.Lexem;
@@ -10,6 +13,7 @@ import ashes.of.jade.lang.lexer.LexemType;
 import ashes.of.jade.lang.lexer.Lexer;
 import ashes.of.jade.lang.nodes.StringNode;
 import ashes.of.jade.lang.parser.ParseException;
+import ashes.of.jade.lang.validator.ValidationException;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -29,10 +33,12 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.PrintStream;
 import java.nio.charset.Charset;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -44,7 +50,7 @@ import java.nio.file.Paths;
 public class EditorFrame extends JFrame {
     private static final Logger log = LogManager.getLogger(EditorFrame.class);
 
-    private final ForkJoinPool pool;
+    private final ExecutionPool pool;
     private final Lexer lexer;
     private final Interpreter interpreter;
     private final SettingsFrame settings;
@@ -87,6 +93,11 @@ public class EditorFrame extends JFrame {
 
     private final RunnerState runnerState = new RunnerState();
 
+    /**
+     * Last submitted evaluation, it's cancelled when the code is evaluated again
+     */
+    private final AtomicReference<Evaluation> evaluation = new AtomicReference<>();
+
 
     private final Map<LexemType, DefaultHighlighter.DefaultHighlightPainter> highlighters = new HashMap<>();
 
@@ -116,12 +127,13 @@ public class EditorFrame extends JFrame {
 
         highlighters.put(LexemType.MAP, functionPainter);
         highlighters.put(LexemType.REDUCE, functionPainter);
+        highlighters.put(LexemType.SCAN, functionPainter);
         highlighters.put(LexemType.OUT, functionPainter);
         highlighters.put(LexemType.PRINT, functionPainter);
     }
 
     @Inject
-    public EditorFrame(@Named("editor-pool") ForkJoinPool pool, Lexer lexer, Interpreter interpreter, SettingsFrame settings) {
+    public EditorFrame(@Named("editor-pool") ExecutionPool pool, Lexer lexer, Interpreter interpreter, SettingsFrame settings) {
         this.pool = pool;
         this.lexer = lexer;
         this.interpreter = interpreter;
@@ -285,26 +297,34 @@ public class EditorFrame extends JFrame {
     private void evalAction(ActionEvent event) {
         log.debug("evalAction invoked");
 
+        // every evaluation has its own output, a cancelled one may still print until it stops
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        Evaluation current = new Evaluation(new PrintStream(baos));
+        Evaluation previous = evaluation.getAndSet(current);
+        if (previous != null)
+            previous.cancel();
+
+        runnerState.setRunNow(true);
         String sourceCode = sourceCodeTextArea.getText();
-        pool.submit(() -> eval(sourceCode));
+        interpreter.submit(sourceCode, current);
+        pool.submit(() -> eval(sourceCode, current, baos));
     }
 
 
-    private void eval(String sourceCode) {
+    private void eval(String sourceCode, Evaluation current, ByteArrayOutputStream baos) {
         try {
-            runnerState.setRunNow(true);
             long start = System.currentTimeMillis();
 
             highlightCode();
 
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            PrintStream stream = new PrintStream(baos);
-            interpreter.getSettings().setOut(stream);
-
-            Scope state = interpreter.eval(sourceCode);
+            Scope state = current.join();
             String output = baos.toString(Charset.defaultCharset().name());
 
             SwingUtilities.invokeLater(() -> {
+                // results of a replaced evaluation are stale
+                if (evaluation.get() != current)
+                    return;
+
                 model.clear();
                 state.getVars().forEach(model::add);
                 model.add("_time", new StringNode(String.format("%.3f", (System.currentTimeMillis() - start) / 1000.0 )));
@@ -315,34 +335,53 @@ public class EditorFrame extends JFrame {
 
         } catch (ParseException ex) {
             log.warn("Can't parse", ex);
-            Location location = ex.getLocation();
-            String errorMessage = buildErrorMessage(sourceCode, ex);
+            List<ParseException> errors = ex instanceof ValidationException ?
+                    ((ValidationException) ex).getErrors() :
+                    Collections.singletonList(ex);
+
+            String errorMessage = errors.stream()
+                    .map(error -> buildErrorMessage(sourceCode, error))
+                    .collect(Collectors.joining("\n\n"));
 
             SwingUtilities.invokeLater(() -> {
+                if (evaluation.get() != current)
+                    return;
+
                 Highlighter highlighter = sourceCodeTextArea.getHighlighter();
 
-                try {
-                    Highlighter.Highlight[] highlights = highlighter.getHighlights();
-                    for (Highlighter.Highlight highlight : highlights) {
-                        if (highlight.getStartOffset() == location.getStart())
-                            highlighter.removeHighlight(highlight);
+                for (ParseException error : errors) {
+                    Location location = error.getLocation();
+                    try {
+                        Highlighter.Highlight[] highlights = highlighter.getHighlights();
+                        for (Highlighter.Highlight highlight : highlights) {
+                            if (highlight.getStartOffset() == location.getStart())
+                                highlighter.removeHighlight(highlight);
+                        }
+
+                        highlighter.addHighlight(location.getStart(), location.getEnd(), errorPainter);
+                    } catch (BadLocationException e) {
+                        log.error("Can't highlight", error);
                     }
-
-                    highlighter.addHighlight(location.getStart(), location.getEnd(), errorPainter);
-                } catch (BadLocationException e) {
-                    log.error("Can't highlight", ex);
                 }
 
                 debugTextArea.setText(errorMessage);
             });
 
+        } catch (EvaluationCancelledException ex) {
+            log.info("Evaluation is cancelled");
+
         } catch (Exception ex) {
             SwingUtilities.invokeLater(() -> debugTextArea.setText("Unknown error: " + ex.getMessage()));
             log.error("Very bad thing happened", ex);
         }
         finally {
-            runButton.setEnabled(true);
-            runnerState.setRunNow(false);
+            // compared on the event thread, where newer evaluations are submitted
+            SwingUtilities.invokeLater(() -> {
+                if (evaluation.compareAndSet(current, null)) {
+                    runButton.setEnabled(true);
+                    runnerState.setRunNow(false);
+                }
+            });
         }
     }
 
@@ -1,16 +1,23 @@
 package ashes.of.jade.editor.frames;
 
+import ashes.of.jade.lang.interpreter.Calibration;
+import ashes.of.jade.lang.interpreter.ExecutionPool;
 import ashes.of.jade.lang.interpreter.Interpreter;
 import ashes.of.jade.lang.interpreter.Settings;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import javax.inject.Inject;
+import javax.inject.Named;
 import javax.inject.Singleton;
 import javax.swing.*;
 import java.awt.*;
 import java.beans.PropertyChangeListener;
+import java.io.IOException;
 import java.text.NumberFormat;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 
 /**
@@ -21,24 +28,51 @@ public class SettingsFrame extends JFrame {
     private static final Logger log = LogManager.getLogger(SettingsFrame.class);
 
     private final Interpreter interpreter;
+    private final ExecutionPool editorPool;
+    private final ExecutionPool interpreterPool;
+    private final ExecutionPool backgroundPool;
 
     private final JPanel panel = new JPanel();
     private final JPanel settingsPane = new JPanel(new GridLayout(0,2));
-    private final JPanel buttonPane = new JPanel(new GridLayout(0,2));
+    private final JPanel buttonPane = new JPanel(new GridLayout(0,3));
 
 
     private final JButton save = new JButton("Save");
     private final JButton close = new JButton("Close");
+    private final JButton calibrate = new JButton("Calibrate");
+    private final JButton statistics = new JButton("Statistics");
+
+    private JFormattedTextField mapParallelismInput;
+    private JFormattedTextField reduceParallelismInput;
+    private JFormattedTextField mapTaskInput;
 
 
     private int mapParallelismSize;
     private int reduceParallelismSize;
+    private int mapTaskSize;
+    private boolean outputsOnly;
+    private boolean adaptiveParallelism;
+    private int editorPoolSize;
+    private int interpreterPoolSize;
+    private int backgroundPoolSize;
 
     @Inject
-    public SettingsFrame(Interpreter interpreter) {
+    public SettingsFrame(Interpreter interpreter,
+                         @Named("editor-pool") ExecutionPool editorPool,
+                         @Named("interpreter-pool") ExecutionPool interpreterPool,
+                         @Named("background-pool") ExecutionPool backgroundPool) {
         this.interpreter = interpreter;
+        this.editorPool = editorPool;
+        this.interpreterPool = interpreterPool;
+        this.backgroundPool = backgroundPool;
         this.mapParallelismSize = interpreter.getSettings().getMapParallelismSize();
         this.reduceParallelismSize = interpreter.getSettings().getReduceParallelismSize();
+        this.mapTaskSize = interpreter.getSettings().getMapTaskSize();
+        this.outputsOnly = interpreter.getSettings().isOutputsOnly();
+        this.adaptiveParallelism = interpreter.getSettings().isAdaptiveParallelism();
+        this.editorPoolSize = interpreter.getSettings().getEditorPoolSize();
+        this.interpreterPoolSize = interpreter.getSettings().getInterpreterPoolSize();
+        this.backgroundPoolSize = interpreter.getSettings().getBackgroundPoolSize();
 
         setTitle("Interpeter Settings");
 
@@ -51,8 +85,14 @@ public class SettingsFrame extends JFrame {
         add(panel);
 
 
-        createInputWithLabel(settingsPane, "map() min parallel size:", evt -> mapParallelismSize = ((Number) evt.getNewValue()).intValue());
-        createInputWithLabel(settingsPane, "reduce() min parallel size:", evt -> mapParallelismSize = ((Number) evt.getNewValue()).intValue());
+        mapParallelismInput = createInputWithLabel(settingsPane, "map() min parallel size:", mapParallelismSize, evt -> mapParallelismSize = ((Number) evt.getNewValue()).intValue());
+        reduceParallelismInput = createInputWithLabel(settingsPane, "reduce() min parallel size:", reduceParallelismSize, evt -> reduceParallelismSize = ((Number) evt.getNewValue()).intValue());
+        mapTaskInput = createInputWithLabel(settingsPane, "map() min task size:", mapTaskSize, evt -> mapTaskSize = ((Number) evt.getNewValue()).intValue());
+        createCheckBoxWithLabel(settingsPane, "Evaluate outputs only:", outputsOnly, selected -> outputsOnly = selected);
+        createCheckBoxWithLabel(settingsPane, "Adaptive parallelism:", adaptiveParallelism, selected -> adaptiveParallelism = selected);
+        createInputWithLabel(settingsPane, "Editor pool size (restart):", editorPoolSize, evt -> editorPoolSize = ((Number) evt.getNewValue()).intValue());
+        createInputWithLabel(settingsPane, "Interpreter pool size (restart):", interpreterPoolSize, evt -> interpreterPoolSize = ((Number) evt.getNewValue()).intValue());
+        createInputWithLabel(settingsPane, "Background pool size (restart):", backgroundPoolSize, evt -> backgroundPoolSize = ((Number) evt.getNewValue()).intValue());
 
 
         save.addActionListener(e -> saveAndHide());
@@ -61,9 +101,17 @@ public class SettingsFrame extends JFrame {
         close.addActionListener(e -> donNotSaveAndHide());
 
 
+        calibrate.addActionListener(e -> calibrate());
+
+
+        statistics.addActionListener(e -> showStatistics());
+
+
         add(settingsPane, BorderLayout.CENTER);
         add(buttonPane, BorderLayout.PAGE_END);
 
+        buttonPane.add(calibrate);
+        buttonPane.add(statistics);
         buttonPane.add(close);
         buttonPane.add(save);
 
@@ -71,17 +119,31 @@ public class SettingsFrame extends JFrame {
     }
 
 
-    private void createInputWithLabel(JPanel pane, String labelText, PropertyChangeListener listener) {
+    private JFormattedTextField createInputWithLabel(JPanel pane, String labelText, int value, PropertyChangeListener listener) {
         NumberFormat format = NumberFormat.getNumberInstance();
 
         JFormattedTextField input = new JFormattedTextField(format);
-        input.setValue(mapParallelismSize);
+        input.setValue(value);
         input.setColumns(20);
         input.addPropertyChangeListener("value", listener);
 
         JLabel label = new JLabel(labelText);
         label.setLabelFor(input);
 
+        pane.add(label);
+        pane.add(input);
+        return input;
+    }
+
+
+    private void createCheckBoxWithLabel(JPanel pane, String labelText, boolean value, Consumer<Boolean> listener) {
+        JCheckBox input = new JCheckBox();
+        input.setSelected(value);
+        input.addItemListener(evt -> listener.accept(input.isSelected()));
+
+        JLabel label = new JLabel(labelText);
+        label.setLabelFor(input);
+
         pane.add(label);
         pane.add(input);
     }
@@ -99,17 +161,75 @@ public class SettingsFrame extends JFrame {
     }
 
     /**
-     * Saves changes and hides this window
+     * Saves changes to settings and the profile and hides this window
      */
     private void saveAndHide() {
-        log.info("Save mapParallelismSize={} reduceParallelismSize={}",
-                mapParallelismSize, reduceParallelismSize);
+        log.info("Save mapParallelismSize={} reduceParallelismSize={} mapTaskSize={} outputsOnly={} adaptiveParallelism={} " +
+                        "editorPoolSize={} interpreterPoolSize={} backgroundPoolSize={}",
+                mapParallelismSize, reduceParallelismSize, mapTaskSize, outputsOnly, adaptiveParallelism,
+                editorPoolSize, interpreterPoolSize, backgroundPoolSize);
         Settings settings = interpreter.getSettings();
         settings.setMapParallelismSize(mapParallelismSize);
         settings.setReduceParallelismSize(reduceParallelismSize);
+        settings.setMapTaskSize(mapTaskSize);
+        settings.setOutputsOnly(outputsOnly);
+        settings.setAdaptiveParallelism(adaptiveParallelism);
+        settings.setEditorPoolSize(editorPoolSize);
+        settings.setInterpreterPoolSize(interpreterPoolSize);
+        settings.setBackgroundPoolSize(backgroundPoolSize);
+        saveProfile(settings);
 
         setVisible(false);
     }
+
+    /**
+     * Measures the machine in background and shows calibrated values, they are applied on save.
+     * Probes run in their own pool with as many workers as the interpreter pool,
+     * so they don't wait behind evaluations and evaluations don't wait behind them
+     */
+    private void calibrate() {
+        calibrate.setEnabled(false);
+        Settings calibrated = new Settings();
+        calibrated.setEngine(interpreter.getSettings().getEngine());
+
+        backgroundPool.submit(() -> {
+            ExecutionPool probes = new ExecutionPool("calibration-pool", interpreterPool.getParallelism());
+            try {
+                new Calibration(probes).calibrate(calibrated);
+
+                SwingUtilities.invokeLater(() -> {
+                    mapParallelismInput.setValue(calibrated.getMapParallelismSize());
+                    reduceParallelismInput.setValue(calibrated.getReduceParallelismSize());
+                    mapTaskInput.setValue(calibrated.getMapTaskSize());
+                });
+            } catch (Exception e) {
+                log.error("Can't calibrate", e);
+            } finally {
+                probes.shutdown();
+                SwingUtilities.invokeLater(() -> calibrate.setEnabled(true));
+            }
+        });
+    }
+
+    /**
+     * Shows current statistics of all pools
+     */
+    private void showStatistics() {
+        String text = Stream.of(editorPool, interpreterPool, backgroundPool)
+                .map(pool -> pool.getStatistics().toString())
+                .collect(Collectors.joining("\n"));
+
+        log.info("Pools statistics:\n{}", text);
+        JOptionPane.showMessageDialog(this, text, "Pools statistics", JOptionPane.INFORMATION_MESSAGE);
+    }
+
+    private void saveProfile(Settings settings) {
+        try {
+            settings.saveProfile(Settings.DEFAULT_PROFILE);
+        } catch (IOException e) {
+            log.error("Can't save profile {}", Settings.DEFAULT_PROFILE, e);
+        }
+    }
 }
 
 
@@ -0,0 +1,107 @@
+package ashes.of.jade.lang.engine.vector;
+
+
+/**
+ * Kernels with explicit SIMD operations of jdk.incubator.vector. The module must be added
+ * to the JVM with --add-modules jdk.incubator.vector. Without it the kernels aren't supported
+ * and loops with vector classes are never loaded, so the kernels can still be created
+ */
+public class SimdKernels implements Kernels {
+
+    private static final String MODULE = "jdk.incubator.vector";
+
+    @Override
+    public boolean isSupported() {
+        return ModuleLayer.boot().findModule(MODULE).isPresent();
+    }
+
+    @Override
+    public String getName() {
+        return "simd";
+    }
+
+    @Override
+    public void add(long[] a, long[] b, int length) {
+        SimdLoops.add(a, b, length);
+    }
+
+    @Override
+    public void sub(long[] a, long[] b, int length) {
+        SimdLoops.sub(a, b, length);
+    }
+
+    @Override
+    public void mul(long[] a, long[] b, int length) {
+        SimdLoops.mul(a, b, length);
+    }
+
+    @Override
+    public void add(double[] a, double[] b, int length) {
+        SimdLoops.add(a, b, length);
+    }
+
+    @Override
+    public void sub(double[] a, double[] b, int length) {
+        SimdLoops.sub(a, b, length);
+    }
+
+    @Override
+    public void mul(double[] a, double[] b, int length) {
+        SimdLoops.mul(a, b, length);
+    }
+
+    @Override
+    public void div(double[] a, double[] b, int length) {
+        SimdLoops.div(a, b, length);
+    }
+
+    @Override
+    public void add(long[] a, long b, int length) {
+        SimdLoops.add(a, b, length);
+    }
+
+    @Override
+    public void sub(long[] a, long b, int length) {
+        SimdLoops.sub(a, b, length);
+    }
+
+    @Override
+    public void reverseSub(long[] a, long b, int length) {
+        SimdLoops.reverseSub(a, b, length);
+    }
+
+    @Override
+    public void mul(long[] a, long b, int length) {
+        SimdLoops.mul(a, b, length);
+    }
+
+    @Override
+    public void add(double[] a, double b, int length) {
+        SimdLoops.add(a, b, length);
+    }
+
+    @Override
+    public void sub(double[] a, double b, int length) {
+        SimdLoops.sub(a, b, length);
+    }
+
+    @Override
+    public void reverseSub(double[] a, double b, int length) {
+        SimdLoops.reverseSub(a, b, length);
+    }
+
+    @Override
+    public void mul(double[] a, double b, int length) {
+        SimdLoops.mul(a, b, length);
+    }
+
+    @Override
+    public void div(double[] a, double b, int length) {
+        SimdLoops.div(a, b, length);
+    }
+
+    @Override
+    public void reverseDiv(double[] a, double b, int length) {
+        SimdLoops.reverseDiv(a, b, length);
+    }
+}
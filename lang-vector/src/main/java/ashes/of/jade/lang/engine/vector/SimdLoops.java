@@ -0,0 +1,207 @@
+package ashes.of.jade.lang.engine.vector;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorSpecies;
+
+
+/**
+ * Loops of {@link SimdKernels}. Columns are processed by vectors of the preferred width
+ * of the machine, elements after the last full vector by scalar loops.
+ * The class is loaded on the first call only if the module is present
+ */
+final class SimdLoops {
+
+    private static final VectorSpecies<Long> LONG = LongVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Double> DOUBLE = DoubleVector.SPECIES_PREFERRED;
+
+    private SimdLoops() {
+    }
+
+    static void add(long[] a, long[] b, int length) {
+        int i = 0;
+        for (int bound = LONG.loopBound(length); i < bound; i += LONG.length())
+            LongVector.fromArray(LONG, a, i)
+                    .add(LongVector.fromArray(LONG, b, i))
+                    .intoArray(a, i);
+
+        for (; i < length; i++)
+            a[i] += b[i];
+    }
+
+    static void sub(long[] a, long[] b, int length) {
+        int i = 0;
+        for (int bound = LONG.loopBound(length); i < bound; i += LONG.length())
+            LongVector.fromArray(LONG, a, i)
+                    .sub(LongVector.fromArray(LONG, b, i))
+                    .intoArray(a, i);
+
+        for (; i < length; i++)
+            a[i] -= b[i];
+    }
+
+    static void mul(long[] a, long[] b, int length) {
+        int i = 0;
+        for (int bound = LONG.loopBound(length); i < bound; i += LONG.length())
+            LongVector.fromArray(LONG, a, i)
+                    .mul(LongVector.fromArray(LONG, b, i))
+                    .intoArray(a, i);
+
+        for (; i < length; i++)
+            a[i] *= b[i];
+    }
+
+    static void add(double[] a, double[] b, int length) {
+        int i = 0;
+        for (int bound = DOUBLE.loopBound(length); i < bound; i += DOUBLE.length())
+            DoubleVector.fromArray(DOUBLE, a, i)
+                    .add(DoubleVector.fromArray(DOUBLE, b, i))
+                    .intoArray(a, i);
+
+        for (; i < length; i++)
+            a[i] += b[i];
+    }
+
+    static void sub(double[] a, double[] b, int length) {
+        int i = 0;
+        for (int bound = DOUBLE.loopBound(length); i < bound; i += DOUBLE.length())
+            DoubleVector.fromArray(DOUBLE, a, i)
+                    .sub(DoubleVector.fromArray(DOUBLE, b, i))
+                    .intoArray(a, i);
+
+        for (; i < length; i++)
+            a[i] -= b[i];
+    }
+
+    static void mul(double[] a, double[] b, int length) {
+        int i = 0;
+        for (int bound = DOUBLE.loopBound(length); i < bound; i += DOUBLE.length())
+            DoubleVector.fromArray(DOUBLE, a, i)
+                    .mul(DoubleVector.fromArray(DOUBLE, b, i))
+                    .intoArray(a, i);
+
+        for (; i < length; i++)
+            a[i] *= b[i];
+    }
+
+    static void div(double[] a, double[] b, int length) {
+        int i = 0;
+        for (int bound = DOUBLE.loopBound(length); i < bound; i += DOUBLE.length())
+            DoubleVector.fromArray(DOUBLE, a, i)
+                    .div(DoubleVector.fromArray(DOUBLE, b, i))
+                    .intoArray(a, i);
+
+        for (; i < length; i++)
+            a[i] /= b[i];
+    }
+
+    static void add(long[] a, long b, int length) {
+        int i = 0;
+        for (int bound = LONG.loopBound(length); i < bound; i += LONG.length())
+            LongVector.fromArray(LONG, a, i)
+                    .add(b)
+                    .intoArray(a, i);
+
+        for (; i < length; i++)
+            a[i] += b;
+    }
+
+    static void sub(long[] a, long b, int length) {
+        int i = 0;
+        for (int bound = LONG.loopBound(length); i < bound; i += LONG.length())
+            LongVector.fromArray(LONG, a, i)
+                    .sub(b)
+                    .intoArray(a, i);
+
+        for (; i < length; i++)
+            a[i] -= b;
+    }
+
+    static void reverseSub(long[] a, long b, int length) {
+        LongVector left = LongVector.broadcast(LONG, b);
+        int i = 0;
+        for (int bound = LONG.loopBound(length); i < bound; i += LONG.length())
+            left.sub(LongVector.fromArray(LONG, a, i))
+                    .intoArray(a, i);
+
+        for (; i < length; i++)
+            a[i] = b - a[i];
+    }
+
+    static void mul(long[] a, long b, int length) {
+        int i = 0;
+        for (int bound = LONG.loopBound(length); i < bound; i += LONG.length())
+            LongVector.fromArray(LONG, a, i)
+                    .mul(b)
+                    .intoArray(a, i);
+
+        for (; i < length; i++)
+            a[i] *= b;
+    }
+
+    static void add(double[] a, double b, int length) {
+        int i = 0;
+        for (int bound = DOUBLE.loopBound(length); i < bound; i += DOUBLE.length())
+            DoubleVector.fromArray(DOUBLE, a, i)
+                    .add(b)
+                    .intoArray(a, i);
+
+        for (; i < length; i++)
+            a[i] += b;
+    }
+
+    static void sub(double[] a, double b, int length) {
+        int i = 0;
+        for (int bound = DOUBLE.loopBound(length); i < bound; i += DOUBLE.length())
+            DoubleVector.fromArray(DOUBLE, a, i)
+                    .sub(b)
+                    .intoArray(a, i);
+
+        for (; i < length; i++)
+            a[i] -= b;
+    }
+
+    static void reverseSub(double[] a, double b, int length) {
+        DoubleVector left = DoubleVector.broadcast(DOUBLE, b);
+        int i = 0;
+        for (int bound = DOUBLE.loopBound(length); i < bound; i += DOUBLE.length())
+            left.sub(DoubleVector.fromArray(DOUBLE, a, i))
+                    .intoArray(a, i);
+
+        for (; i < length; i++)
+            a[i] = b - a[i];
+    }
+
+    static void mul(double[] a, double b, int length) {
+        int i = 0;
+        for (int bound = DOUBLE.loopBound(length); i < bound; i += DOUBLE.length())
+            DoubleVector.fromArray(DOUBLE, a, i)
+                    .mul(b)
+                    .intoArray(a, i);
+
+        for (; i < length; i++)
+            a[i] *= b;
+    }
+
+    static void div(double[] a, double b, int length) {
+        int i = 0;
+        for (int bound = DOUBLE.loopBound(length); i < bound; i += DOUBLE.length())
+            DoubleVector.fromArray(DOUBLE, a, i)
+                    .div(b)
+                    .intoArray(a, i);
+
+        for (; i < length; i++)
+            a[i] /= b;
+    }
+
+    static void reverseDiv(double[] a, double b, int length) {
+        DoubleVector left = DoubleVector.broadcast(DOUBLE, b);
+        int i = 0;
+        for (int bound = DOUBLE.loopBound(length); i < bound; i += DOUBLE.length())
+            left.div(DoubleVector.fromArray(DOUBLE, a, i))
+                    .intoArray(a, i);
+
+        for (; i < length; i++)
+            a[i] = b / a[i];
+    }
+}
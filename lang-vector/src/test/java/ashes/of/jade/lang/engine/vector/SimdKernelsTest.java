@@ -0,0 +1,167 @@
+package ashes.of.jade.lang.engine.vector;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeFalse;
+import static org.junit.Assume.assumeTrue;
+
+public class SimdKernelsTest {
+
+    private static final int[] LENGTHS = { 0, 1, 3, 7, 8, 15, 16, 17, 63, 64, 65, 1000 };
+
+    private interface LongOp {
+        void apply(Kernels kernels, long[] a, long[] b, int length);
+    }
+
+    private interface LongScalarOp {
+        void apply(Kernels kernels, long[] a, long b, int length);
+    }
+
+    private interface DoubleOp {
+        void apply(Kernels kernels, double[] a, double[] b, int length);
+    }
+
+    private interface DoubleScalarOp {
+        void apply(Kernels kernels, double[] a, double b, int length);
+    }
+
+    private final Kernels scalar = new ScalarKernels();
+    private final Kernels simd = new SimdKernels();
+    private final Random random = new Random(42);
+
+    private void assumeSupported() {
+        assumeTrue("jdk.incubator.vector isn't added to the JVM", simd.isSupported());
+    }
+
+    private long[] longs(int length) {
+        long[] values = new long[length + 5];
+        for (int i = 0; i < values.length; i++)
+            values[i] = i % 7 == 0 ? Long.MIN_VALUE + i : random.nextLong() >> random.nextInt(64);
+
+        return values;
+    }
+
+    private double[] doubles(int length) {
+        double[] values = new double[length + 5];
+        for (int i = 0; i < values.length; i++)
+            values[i] = i % 11 == 0 ? 0.0 : random.nextGaussian() * 1e6;
+
+        return values;
+    }
+
+    private void assertLongColumns(LongOp op) {
+        for (int length : LENGTHS) {
+            long[] a = longs(length);
+            long[] b = longs(length);
+            long[] expected = Arrays.copyOf(a, a.length);
+
+            op.apply(scalar, expected, b, length);
+            op.apply(simd, a, b, length);
+            assertArrayEquals("length " + length, expected, a);
+        }
+    }
+
+    private void assertLongScalars(LongScalarOp op) {
+        for (int length : LENGTHS) {
+            for (long b : new long[] { 0, -3, 1L << 40, Long.MAX_VALUE }) {
+                long[] a = longs(length);
+                long[] expected = Arrays.copyOf(a, a.length);
+
+                op.apply(scalar, expected, b, length);
+                op.apply(simd, a, b, length);
+                assertArrayEquals("length " + length + ", " + b, expected, a);
+            }
+        }
+    }
+
+    private void assertDoubleColumns(DoubleOp op) {
+        for (int length : LENGTHS) {
+            double[] a = doubles(length);
+            double[] b = doubles(length);
+            double[] expected = Arrays.copyOf(a, a.length);
+
+            op.apply(scalar, expected, b, length);
+            op.apply(simd, a, b, length);
+            assertArrayEquals("length " + length, expected, a, 0);
+        }
+    }
+
+    private void assertDoubleScalars(DoubleScalarOp op) {
+        for (int length : LENGTHS) {
+            for (double b : new double[] { 0, -0.5, 3, 1e300, Double.NaN }) {
+                double[] a = doubles(length);
+                double[] expected = Arrays.copyOf(a, a.length);
+
+                op.apply(scalar, expected, b, length);
+                op.apply(simd, a, b, length);
+                assertArrayEquals("length " + length + ", " + b, expected, a, 0);
+            }
+        }
+    }
+
+
+    @Test
+    public void loadShouldFindSimdKernels() throws Exception {
+        assumeSupported();
+        assertEquals("simd", Kernels.load().getName());
+    }
+
+    @Test
+    public void loadShouldFallBackToScalarWithoutModule() throws Exception {
+        assumeFalse(simd.isSupported());
+        assertEquals("scalar", Kernels.load().getName());
+    }
+
+    @Test
+    public void longColumnsShouldMatchScalarKernels() throws Exception {
+        assumeSupported();
+        assertLongColumns(Kernels::add);
+        assertLongColumns(Kernels::sub);
+        assertLongColumns(Kernels::mul);
+    }
+
+    @Test
+    public void longColumnAndScalarShouldMatchScalarKernels() throws Exception {
+        assumeSupported();
+        assertLongScalars(Kernels::add);
+        assertLongScalars(Kernels::sub);
+        assertLongScalars(Kernels::reverseSub);
+        assertLongScalars(Kernels::mul);
+    }
+
+    @Test
+    public void doubleColumnsShouldMatchScalarKernels() throws Exception {
+        assumeSupported();
+        assertDoubleColumns(Kernels::add);
+        assertDoubleColumns(Kernels::sub);
+        assertDoubleColumns(Kernels::mul);
+        assertDoubleColumns(Kernels::div);
+    }
+
+    @Test
+    public void doubleColumnAndScalarShouldMatchScalarKernels() throws Exception {
+        assumeSupported();
+        assertDoubleScalars(Kernels::add);
+        assertDoubleScalars(Kernels::sub);
+        assertDoubleScalars(Kernels::reverseSub);
+        assertDoubleScalars(Kernels::mul);
+        assertDoubleScalars(Kernels::div);
+        assertDoubleScalars(Kernels::reverseDiv);
+    }
+
+    @Test
+    public void kernelsShouldNotWriteAfterLength() throws Exception {
+        assumeSupported();
+
+        // elements after the length are left as they were
+        long[] column = { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10 };
+        simd.mul(column, 3, 9);
+        simd.reverseSub(column, 1, 9);
+
+        assertArrayEquals(new long[] { -2, -5, -8, -11, -14, -17, -20, -23, -26, 10 }, column);
+    }
+}
@@ -0,0 +1,52 @@
+package ashes.of.jade.lang.engine;
+
+
+/**
+ * Reusable columns of a worker for evaluation of lambdas a block of elements at a time.
+ * Elements of a block are stored in longs or doubles depending on their type known
+ * when lambdas are compiled. Blocks aren't thread safe
+ */
+public class Block {
+
+    /**
+     * Max number of elements in a block, columns of this size fit into L1 cache
+     */
+    public static final int SIZE = 1024;
+
+    private static final int DEFAULT_DEPTH = 4;
+
+    /**
+     * Integer elements, parameter and result of block functions
+     */
+    public final long[] longs = new long[SIZE];
+
+    /**
+     * Double elements, parameter and result of block functions
+     */
+    public final double[] doubles = new double[SIZE];
+
+    /**
+     * Operand stack of columns, a column at index is stored in stackLongs or stackDoubles
+     * depending on the type known when the lambda is compiled
+     */
+    public long[][] stackLongs = new long[DEFAULT_DEPTH][SIZE];
+    public double[][] stackDoubles = new double[DEFAULT_DEPTH][SIZE];
+
+    /**
+     * Frame for functions evaluated element by element
+     */
+    public final Frame frame = new Frame();
+
+    /**
+     * Grows operand stack if it's smaller than depth
+     *
+     * @param depth maximum operand stack depth of a lambda
+     */
+    public void reserve(int depth) {
+        if (stackLongs.length >= depth)
+            return;
+
+        stackLongs = new long[depth][SIZE];
+        stackDoubles = new double[depth][SIZE];
+    }
+}
@@ -0,0 +1,33 @@
+package ashes.of.jade.lang.engine;
+
+import ashes.of.jade.lang.nodes.LambdaNode;
+import ashes.of.jade.lang.nodes.NodeType;
+
+import java.util.*;
+
+
+/**
+ * Compiles every lambda once per set of parameter types, so a map or reduce
+ * nested into a lambda body isn't compiled again for every element
+ */
+public class CachingEngine implements Engine {
+
+    private final Engine engine;
+    private final Map<LambdaNode, Map<List<NodeType>, Optional<LambdaFunction>>> cache =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    public CachingEngine(Engine engine) {
+        this.engine = engine;
+    }
+
+    @Override
+    public LambdaFunction compile(LambdaNode lambda, NodeType... params) {
+        Map<List<NodeType>, Optional<LambdaFunction>> compiled = cache.computeIfAbsent(lambda, k -> new HashMap<>());
+
+        synchronized (compiled) {
+            return compiled
+                    .computeIfAbsent(Arrays.asList(params), k -> Optional.ofNullable(engine.compile(lambda, params)))
+                    .orElse(null);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package ashes.of.jade.lang.engine;
+
+import ashes.of.jade.lang.nodes.LambdaNode;
+import ashes.of.jade.lang.nodes.NodeType;
+
+
+/**
+ * Compiles lambdas to functions over primitive values
+ */
+public interface Engine {
+
+    /**
+     * @param lambda lambda node
+     * @param params types of lambda parameters, {@link NodeType#INTEGER} or {@link NodeType#DOUBLE}
+     * @return compiled function or null if the lambda can't be compiled by this engine
+     */
+    LambdaFunction compile(LambdaNode lambda, NodeType... params);
+}
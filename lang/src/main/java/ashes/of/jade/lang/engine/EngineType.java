@@ -0,0 +1,29 @@
+package ashes.of.jade.lang.engine;
+
+
+/**
+ * Execution tier used by map and reduce for lambdas
+ */
+public enum EngineType {
+
+    /**
+     * Evaluate lambda nodes for every element on a reusable primitive stack
+     */
+    INTERPRETER,
+
+    /**
+     * Link arithmetic lambdas into a tree of evaluators, other lambdas are interpreted
+     */
+    TREE,
+
+    /**
+     * Compile arithmetic lambdas to JVM bytecode, other lambdas are interpreted
+     */
+    BYTECODE,
+
+    /**
+     * Evaluate map lambdas an operation at a time over blocks of elements,
+     * reduce lambdas are evaluated element by element on a primitive stack
+     */
+    VECTOR
+}
@@ -0,0 +1,238 @@
+package ashes.of.jade.lang.engine;
+
+import ashes.of.jade.lang.nodes.LambdaNode;
+import ashes.of.jade.lang.nodes.Node;
+import ashes.of.jade.lang.nodes.NodeType;
+import ashes.of.jade.lang.nodes.VariableNode;
+
+import java.util.*;
+
+
+/**
+ * Typed arithmetic expression built from lambda body. Contains only constants,
+ * parameters, operators and locals, so its type is known before evaluation.
+ * A local is a subexpression stored to a temporary slot of the lambda, the same
+ * instance is shared by all its uses and engines evaluate it once per call
+ */
+public class Expression {
+
+    /**
+     * INTEGER or DOUBLE for constants, LOAD for parameters, ADD, SUB, MUL, DIV or POWER for operators,
+     * PARITY for unary operator with the right operand missing, STORE for locals with the value as the left operand
+     */
+    private final NodeType op;
+
+    /**
+     * Type of result, INTEGER or DOUBLE
+     */
+    private final NodeType type;
+
+    private final long longValue;
+    private final double doubleValue;
+
+    /**
+     * Index of parameter or local, locals are numbered from zero in order of evaluation
+     */
+    private final int param;
+
+    private final Expression left;
+    private final Expression right;
+
+    private Expression(NodeType op, NodeType type, long longValue, double doubleValue, int param, Expression left, Expression right) {
+        this.op = op;
+        this.type = type;
+        this.longValue = longValue;
+        this.doubleValue = doubleValue;
+        this.param = param;
+        this.left = left;
+        this.right = right;
+    }
+
+    public static Expression constant(long value) {
+        return new Expression(NodeType.INTEGER, NodeType.INTEGER, value, value, -1, null, null);
+    }
+
+    public static Expression constant(double value) {
+        return new Expression(NodeType.DOUBLE, NodeType.DOUBLE, 0, value, -1, null, null);
+    }
+
+    public static Expression param(int index, NodeType type) {
+        return new Expression(NodeType.LOAD, type, 0, 0, index, null, null);
+    }
+
+    public static Expression local(int index, Expression value) {
+        return new Expression(NodeType.STORE, value.type, 0, 0, index, value, null);
+    }
+
+    public static Expression operator(NodeType op, Expression left, Expression right) {
+        return new Expression(op, typeOf(op, left.type, right.type), 0, 0, -1, left, right);
+    }
+
+    public static Expression operator(NodeType op, Expression operand) {
+        return new Expression(op, operand.type, 0, 0, -1, operand, null);
+    }
+
+    /**
+     * @return (-1) raised to the power, without calling Math.pow
+     */
+    public static long parity(long power) {
+        return 1 - ((power & 1) << 1);
+    }
+
+    /**
+     * Type of operator result, same rules as the interpreter uses:
+     * division is always double, other operators are double if any operand is double
+     */
+    public static NodeType typeOf(NodeType op, NodeType a, NodeType b) {
+        if (op == NodeType.DIV)
+            return NodeType.DOUBLE;
+
+        return a == NodeType.DOUBLE || b == NodeType.DOUBLE ?
+                NodeType.DOUBLE :
+                NodeType.INTEGER;
+    }
+
+
+    /**
+     * Builds expression from lambda body
+     *
+     * @param lambda lambda node
+     * @param params types of lambda parameters
+     * @return expression or null if lambda contains anything but numbers, parameters, operators and temporaries
+     */
+    public static Expression of(LambdaNode lambda, NodeType... params) {
+        Deque<Expression> stack = new ArrayDeque<>();
+        Map<Integer, Expression> locals = new HashMap<>();
+        int stores = 0;
+
+        Iterator<Node> it = lambda.getNodes().descendingIterator();
+        while (it.hasNext()) {
+            Node node = it.next();
+            switch (node.getType()) {
+                case STORE:
+                    // parameters are stored from the last one to the first one,
+                    // temporaries after them store a subexpression from the stack
+                    if (!stack.isEmpty()) {
+                        int slot = ((VariableNode) node).getSlot();
+                        if (slot < params.length || locals.containsKey(slot))
+                            return null;
+
+                        locals.put(slot, local(locals.size(), stack.pop()));
+                        break;
+                    }
+
+                    if (!locals.isEmpty())
+                        return null;
+
+                    stores++;
+                    break;
+
+                case LOAD:
+                    int index = ((VariableNode) node).getSlot();
+                    if (index >= params.length) {
+                        if (!locals.containsKey(index))
+                            return null;
+
+                        stack.push(locals.get(index));
+                        break;
+                    }
+
+                    stack.push(param(index, params[index]));
+                    break;
+
+                case INTEGER:
+                    stack.push(constant(node.toInteger()));
+                    break;
+
+                case DOUBLE:
+                    stack.push(constant(node.toDouble()));
+                    break;
+
+                case ADD:
+                case SUB:
+                case MUL:
+                case DIV:
+                case POWER:
+                    if (stack.size() < 2)
+                        return null;
+
+                    Expression right = stack.pop();
+                    Expression left = stack.pop();
+                    stack.push(operator(node.getType(), left, right));
+                    break;
+
+                case PARITY:
+                    if (stack.isEmpty())
+                        return null;
+
+                    stack.push(operator(node.getType(), stack.pop()));
+                    break;
+
+                default:
+                    return null;
+            }
+        }
+
+        if (stores != params.length || lambda.getParams() != params.length || stack.size() != 1)
+            return null;
+
+        return stack.pop();
+    }
+
+
+    public NodeType getOp() {
+        return op;
+    }
+
+    public NodeType getType() {
+        return type;
+    }
+
+    public boolean isConstant() {
+        return op == NodeType.INTEGER || op == NodeType.DOUBLE;
+    }
+
+    public boolean isParam() {
+        return op == NodeType.LOAD;
+    }
+
+    public boolean isLocal() {
+        return op == NodeType.STORE;
+    }
+
+    public boolean isOperator() {
+        return left != null && !isLocal();
+    }
+
+    public long getLongValue() {
+        return longValue;
+    }
+
+    public double getDoubleValue() {
+        return doubleValue;
+    }
+
+    public int getParam() {
+        return param;
+    }
+
+    public Expression getLeft() {
+        return left;
+    }
+
+    public Expression getRight() {
+        return right;
+    }
+
+    @Override
+    public String toString() {
+        switch (op) {
+            case INTEGER:   return String.valueOf(longValue);
+            case DOUBLE:    return String.valueOf(doubleValue);
+            case LOAD:      return "$" + param;
+            case STORE:     return "(t" + param + " = " + left + ")";
+            case PARITY:    return "(-1 ^ " + left + ")";
+            default:        return "(" + left + " " + op + " " + right + ")";
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package ashes.of.jade.lang.engine;
+
+
+/**
+ * Reusable evaluation frame of a worker: parameter slots and operand stack
+ * of primitive values. Frame is created once per task and reused for every
+ * element, so evaluation of lambdas doesn't allocate. Frames aren't thread safe
+ */
+public class Frame {
+
+    /**
+     * Maximum number of lambda parameters, map lambda has one and reduce lambda has two
+     */
+    public static final int MAX_PARAMS = 2;
+
+    private static final int DEFAULT_DEPTH = 16;
+
+    /**
+     * Integer parameters
+     */
+    public final long[] longs = new long[MAX_PARAMS];
+
+    /**
+     * Double parameters
+     */
+    public final double[] doubles = new double[MAX_PARAMS];
+
+    /**
+     * Operand stack, a value at index is stored in stackLongs or stackDoubles
+     * depending on the type known when the lambda is compiled
+     */
+    public long[] stackLongs = new long[DEFAULT_DEPTH];
+    public double[] stackDoubles = new double[DEFAULT_DEPTH];
+
+    /**
+     * Grows operand stack if it's smaller than depth
+     *
+     * @param depth maximum operand stack depth of a lambda
+     */
+    public void reserve(int depth) {
+        if (stackLongs.length >= depth)
+            return;
+
+        stackLongs = new long[depth];
+        stackDoubles = new double[depth];
+    }
+}
@@ -0,0 +1,39 @@
+package ashes.of.jade.lang.engine;
+
+import ashes.of.jade.lang.nodes.NodeType;
+
+
+/**
+ * Lambda compiled for fixed types of parameters. Parameter i is read from
+ * frame.longs[i] if its type is integer and from frame.doubles[i] if it's double
+ */
+public interface LambdaFunction {
+
+    /**
+     * @return type of result, {@link NodeType#INTEGER} or {@link NodeType#DOUBLE}
+     */
+    NodeType getType();
+
+    long applyAsLong(Frame frame);
+
+    double applyAsDouble(Frame frame);
+
+    /**
+     * Applies function with one parameter to the first length elements of the block.
+     * Parameter is read from block.longs or block.doubles depending on its type, the result
+     * is written to block.longs or block.doubles depending on the type of the function.
+     * By default elements are evaluated one by one in the frame of the block
+     */
+    default void applyToBlock(Block block, int length) {
+        Frame frame = block.frame;
+        for (int i = 0; i < length; i++) {
+            frame.longs[0] = block.longs[i];
+            frame.doubles[0] = block.doubles[i];
+
+            if (getType() == NodeType.DOUBLE)
+                block.doubles[i] = applyAsDouble(frame);
+            else
+                block.longs[i] = applyAsLong(frame);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package ashes.of.jade.lang.engine;
+
+import ashes.of.jade.lang.nodes.LambdaNode;
+import ashes.of.jade.lang.nodes.Node;
+import ashes.of.jade.lang.nodes.NodeType;
+import ashes.of.jade.lang.nodes.SequenceNode;
+
+import java.util.List;
+
+
+/**
+ * Compiled map lambdas applied one after another to elements of a primitive sequence
+ */
+public class Pipeline {
+
+    private final SequenceNode source;
+    private final LambdaFunction[] stages;
+    private final NodeType type;
+
+    private Pipeline(SequenceNode source, LambdaFunction[] stages, NodeType type) {
+        this.source = source;
+        this.stages = stages;
+        this.type = type;
+    }
+
+    /**
+     * @param engine engine which compiles lambdas
+     * @param source sequence with stored or computed elements
+     * @param lambdas map lambdas in order of application
+     * @return pipeline or null if any lambda can't be compiled
+     */
+    public static Pipeline compile(Engine engine, SequenceNode source, List<Node> lambdas) {
+        NodeType type = source.getElementType();
+        LambdaFunction[] stages = new LambdaFunction[lambdas.size()];
+        for (int i = 0; i < stages.length; i++) {
+            LambdaFunction stage = engine.compile((LambdaNode) lambdas.get(i), type);
+            if (stage == null)
+                return null;
+
+            stages[i] = stage;
+            type = stage.getType();
+        }
+
+        return new Pipeline(source, stages, type);
+    }
+
+    public SequenceNode getSource() {
+        return source;
+    }
+
+    /**
+     * @return type of pipeline result
+     */
+    public NodeType getType() {
+        return type;
+    }
+
+    /**
+     * Maps element by all stages, the result is left in frame.longs[0] or frame.doubles[0]
+     * depending on its type
+     *
+     * @param index element index
+     * @param frame frame of current task
+     */
+    public void apply(int index, Frame frame) {
+        if (source.isDoubleSeq())
+            frame.doubles[0] = source.getDouble(index);
+        else
+            frame.longs[0] = source.getLong(index);
+
+        for (LambdaFunction stage : stages) {
+            if (stage.getType() == NodeType.DOUBLE)
+                frame.doubles[0] = stage.applyAsDouble(frame);
+            else
+                frame.longs[0] = stage.applyAsLong(frame);
+        }
+    }
+
+    /**
+     * Maps elements a block at a time: every stage is applied to all elements of the block
+     * before the next one, the results are left in block.longs or block.doubles depending on their type
+     *
+     * @param start first element index, inclusive
+     * @param end last element index, exclusive, at most {@link Block#SIZE} elements after start
+     * @param block block of current task
+     */
+    public void apply(int start, int end, Block block) {
+        int length = end - start;
+        if (source.isDoubleSeq()) {
+            for (int i = 0; i < length; i++)
+                block.doubles[i] = source.getDouble(start + i);
+        } else {
+            for (int i = 0; i < length; i++)
+                block.longs[i] = source.getLong(start + i);
+        }
+
+        for (LambdaFunction stage : stages)
+            stage.applyToBlock(block, length);
+    }
+
+    public long applyAsLong(int index, Frame frame) {
+        apply(index, frame);
+        return type == NodeType.DOUBLE ? Math.round(frame.doubles[0]) : frame.longs[0];
+    }
+
+    public double applyAsDouble(int index, Frame frame) {
+        apply(index, frame);
+        return type == NodeType.DOUBLE ? frame.doubles[0] : frame.longs[0];
+    }
+}
@@ -0,0 +1,242 @@
+package ashes.of.jade.lang.engine.bytecode;
+
+import ashes.of.jade.lang.engine.Engine;
+import ashes.of.jade.lang.engine.Expression;
+import ashes.of.jade.lang.engine.Frame;
+import ashes.of.jade.lang.engine.LambdaFunction;
+import ashes.of.jade.lang.nodes.LambdaNode;
+import ashes.of.jade.lang.nodes.NodeType;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Compiles arithmetic lambdas to JVM classes implementing {@link LambdaFunction},
+ * so the JIT can inline the arithmetic into map and reduce loops
+ */
+public class BytecodeEngine implements Engine {
+    private static final Logger log = LogManager.getLogger(BytecodeEngine.class);
+
+    private static final String FUNCTION = LambdaFunction.class.getName().replace('.', '/');
+    private static final String NODE_TYPE = NodeType.class.getName().replace('.', '/');
+    private static final String PACKAGE = BytecodeEngine.class.getPackage().getName().replace('.', '/');
+
+    private static final String FRAME = Frame.class.getName().replace('.', '/');
+    private static final String EXPRESSION = Expression.class.getName().replace('.', '/');
+    private static final String APPLY_AS_LONG = "(L" + FRAME + ";)J";
+    private static final String APPLY_AS_DOUBLE = "(L" + FRAME + ";)D";
+
+    /**
+     * First local variable of a method for locals of the expression, after this and frame,
+     * every long or double takes two variables
+     */
+    private static final int LOCALS = 2;
+
+    private static final AtomicInteger counter = new AtomicInteger();
+
+
+    /**
+     * Every class gets its own loader, so classes of old programs can be unloaded
+     */
+    private static class LambdaClassLoader extends ClassLoader {
+
+        LambdaClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+
+    @Override
+    public LambdaFunction compile(LambdaNode lambda, NodeType... params) {
+        Expression expression = Expression.of(lambda, params);
+        if (expression == null) {
+            log.debug("Lambda {} isn't arithmetic, can't compile", lambda);
+            return null;
+        }
+
+        try {
+            String name = PACKAGE + "/Lambda$" + counter.incrementAndGet();
+            byte[] bytes = generate(name, expression);
+
+            LambdaClassLoader loader = new LambdaClassLoader(LambdaFunction.class.getClassLoader());
+            Class<?> type = loader.define(name.replace('/', '.'), bytes);
+
+            log.debug("Lambda {} compiled to {}: {}", lambda, name, expression);
+            return (LambdaFunction) type.getConstructor().newInstance();
+        } catch (Exception | LinkageError e) {
+            log.warn("Can't compile lambda {}", lambda, e);
+            return null;
+        }
+    }
+
+
+    /**
+     * Generates class file with lambda function
+     *
+     * @param name internal name of the class
+     * @param expression lambda body
+     * @return class file bytes
+     */
+    byte[] generate(String name, Expression expression) throws IOException {
+        ConstantPool pool = new ConstantPool();
+        int thisClass = pool.classRef(name);
+        int superClass = pool.classRef("java/lang/Object");
+        int function = pool.classRef(FUNCTION);
+        int code = pool.utf8("Code");
+
+        Code init = new Code(1)
+                .op(Code.ALOAD_0, 1)
+                .op(Code.INVOKESPECIAL, pool.methodRef("java/lang/Object", "<init>", "()V"), -1)
+                .op(Code.RETURN, 0);
+
+        Code getType = new Code(1)
+                .op(Code.GETSTATIC, pool.fieldRef(NODE_TYPE, expression.getType().name(), "L" + NODE_TYPE + ";"), 1)
+                .op(Code.ARETURN, -1);
+
+        Code applyAsLong = new Code(2);
+        emit(pool, applyAsLong, expression, expression.getType(), new BitSet());
+        if (expression.getType() == NodeType.DOUBLE)
+            applyAsLong.op(Code.INVOKESTATIC, pool.methodRef("java/lang/Math", "round", "(D)J"), 0);
+        applyAsLong.op(Code.LRETURN, -2);
+
+        Code applyAsDouble = new Code(2);
+        emit(pool, applyAsDouble, expression, NodeType.DOUBLE, new BitSet());
+        applyAsDouble.op(Code.DRETURN, -2);
+
+        int[] methods = {
+                pool.utf8("<init>"), pool.utf8("()V"),
+                pool.utf8("getType"), pool.utf8("()L" + NODE_TYPE + ";"),
+                pool.utf8("applyAsLong"), pool.utf8(APPLY_AS_LONG),
+                pool.utf8("applyAsDouble"), pool.utf8(APPLY_AS_DOUBLE),
+        };
+        Code[] bodies = { init, getType, applyAsLong, applyAsDouble };
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0);      // minor version
+        out.writeShort(52);     // Java 8
+        pool.writeTo(out);
+        out.writeShort(0x0001 | 0x0010 | 0x0020);   // public final super
+        out.writeShort(thisClass);
+        out.writeShort(superClass);
+        out.writeShort(1);
+        out.writeShort(function);
+        out.writeShort(0);      // fields
+
+        out.writeShort(bodies.length);
+        for (int i = 0; i < bodies.length; i++) {
+            out.writeShort(0x0001);     // public
+            out.writeShort(methods[i * 2]);
+            out.writeShort(methods[i * 2 + 1]);
+            out.writeShort(1);
+            bodies[i].writeTo(out, code);
+        }
+
+        out.writeShort(0);      // attributes
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Emits instructions which leave value of the expression on the stack
+     *
+     * @param type type of value on the stack, expression result is widened to double if needed
+     * @param locals locals already stored to local variables of the method
+     */
+    private void emit(ConstantPool pool, Code code, Expression e, NodeType type, BitSet locals) {
+        if (e.isConstant()) {
+            if (type == NodeType.DOUBLE)
+                code.op(Code.LDC2_W, pool.doubleConst(e.getDoubleValue()), 2);
+            else
+                code.op(Code.LDC2_W, pool.longConst(e.getLongValue()), 2);
+            return;
+        }
+
+        if (e.isParam()) {
+            boolean isDouble = e.getType() == NodeType.DOUBLE;
+            int params = isDouble ?
+                    pool.fieldRef(FRAME, "doubles", "[D") :
+                    pool.fieldRef(FRAME, "longs", "[J");
+
+            code.op(Code.ALOAD_1, 1)
+                .op(Code.GETFIELD, params, 0)
+                .iconst(e.getParam())
+                .op(isDouble ? Code.DALOAD : Code.LALOAD, 0);
+
+            if (!isDouble && type == NodeType.DOUBLE)
+                code.op(Code.L2D, 0);
+            return;
+        }
+
+        if (e.isLocal()) {
+            boolean isDouble = e.getType() == NodeType.DOUBLE;
+            int local = LOCALS + e.getParam() * 2;
+            if (locals.get(e.getParam())) {
+                code.local(isDouble ? Code.DLOAD : Code.LLOAD, local, 2);
+            } else {
+                emit(pool, code, e.getLeft(), e.getType(), locals);
+                code.op(Code.DUP2, 2)
+                    .local(isDouble ? Code.DSTORE : Code.LSTORE, local, -2);
+                locals.set(e.getParam());
+            }
+
+            if (!isDouble && type == NodeType.DOUBLE)
+                code.op(Code.L2D, 0);
+            return;
+        }
+
+        if (e.getOp() == NodeType.PARITY) {
+            if (e.getType() == NodeType.DOUBLE) {
+                code.op(Code.LDC2_W, pool.doubleConst(-1), 2);
+                emit(pool, code, e.getLeft(), NodeType.DOUBLE, locals);
+                code.op(Code.INVOKESTATIC, pool.methodRef("java/lang/Math", "pow", "(DD)D"), -2);
+                return;
+            }
+
+            emit(pool, code, e.getLeft(), NodeType.INTEGER, locals);
+            code.op(Code.INVOKESTATIC, pool.methodRef(EXPRESSION, "parity", "(J)J"), 0);
+            if (type == NodeType.DOUBLE)
+                code.op(Code.L2D, 0);
+            return;
+        }
+
+        if (e.getOp() == NodeType.POWER) {
+            emit(pool, code, e.getLeft(), NodeType.DOUBLE, locals);
+            emit(pool, code, e.getRight(), NodeType.DOUBLE, locals);
+            code.op(Code.INVOKESTATIC, pool.methodRef("java/lang/Math", "pow", "(DD)D"), -2);
+
+            if (e.getType() == NodeType.INTEGER) {
+                code.op(Code.INVOKESTATIC, pool.methodRef("java/lang/Math", "round", "(D)J"), 0);
+                if (type == NodeType.DOUBLE)
+                    code.op(Code.L2D, 0);
+            }
+            return;
+        }
+
+        boolean isDouble = e.getType() == NodeType.DOUBLE;
+        emit(pool, code, e.getLeft(), e.getType(), locals);
+        emit(pool, code, e.getRight(), e.getType(), locals);
+
+        switch (e.getOp()) {
+            case ADD:   code.op(isDouble ? Code.DADD : Code.LADD, -2); break;
+            case SUB:   code.op(isDouble ? Code.DSUB : Code.LSUB, -2); break;
+            case MUL:   code.op(isDouble ? Code.DMUL : Code.LMUL, -2); break;
+            case DIV:   code.op(Code.DDIV, -2); break;
+            default:
+                throw new IllegalArgumentException("Unexpected operator: " + e.getOp());
+        }
+
+        if (!isDouble && type == NodeType.DOUBLE)
+            code.op(Code.L2D, 0);
+    }
+}
@@ -0,0 +1,112 @@
+package ashes.of.jade.lang.engine.bytecode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+
+/**
+ * Straight-line method body, tracks operand stack depth in slots
+ */
+class Code {
+
+    static final int ICONST_0 = 0x03;
+    static final int BIPUSH = 0x10;
+    static final int LDC2_W = 0x14;
+    static final int LLOAD = 0x16;
+    static final int DLOAD = 0x18;
+    static final int ALOAD_0 = 0x2a;
+    static final int ALOAD_1 = 0x2b;
+    static final int LALOAD = 0x2f;
+    static final int DALOAD = 0x31;
+    static final int LSTORE = 0x37;
+    static final int DSTORE = 0x39;
+    static final int DUP2 = 0x5c;
+    static final int LADD = 0x61;
+    static final int DADD = 0x63;
+    static final int LSUB = 0x65;
+    static final int DSUB = 0x67;
+    static final int LMUL = 0x69;
+    static final int DMUL = 0x6b;
+    static final int DDIV = 0x6f;
+    static final int L2D = 0x8a;
+    static final int LRETURN = 0xad;
+    static final int DRETURN = 0xaf;
+    static final int ARETURN = 0xb0;
+    static final int RETURN = 0xb1;
+    static final int GETSTATIC = 0xb2;
+    static final int GETFIELD = 0xb4;
+    static final int INVOKESPECIAL = 0xb7;
+    static final int INVOKESTATIC = 0xb8;
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private int maxLocals;
+
+    private int stack;
+    private int maxStack;
+
+    Code(int maxLocals) {
+        this.maxLocals = maxLocals;
+    }
+
+    /**
+     * Appends instruction
+     *
+     * @param opcode instruction opcode
+     * @param delta change of operand stack depth in slots
+     */
+    Code op(int opcode, int delta) {
+        bytes.write(opcode);
+        stack += delta;
+        maxStack = Math.max(maxStack, stack);
+        return this;
+    }
+
+    /**
+     * Appends instruction with two byte operand
+     */
+    Code op(int opcode, int operand, int delta) {
+        op(opcode, delta);
+        bytes.write(operand >> 8);
+        bytes.write(operand);
+        return this;
+    }
+
+    /**
+     * Appends load or store of a long or double local variable
+     *
+     * @param index index of the first of two variables
+     */
+    Code local(int opcode, int index, int delta) {
+        if (index + 1 > 0xff)
+            throw new IllegalArgumentException("Too many local variables: " + index);
+
+        op(opcode, delta);
+        bytes.write(index);
+        maxLocals = Math.max(maxLocals, index + 2);
+        return this;
+    }
+
+    /**
+     * Pushes small int constant
+     */
+    Code iconst(int value) {
+        if (value <= 5)
+            return op(ICONST_0 + value, 1);
+
+        op(BIPUSH, 1);
+        bytes.write(value);
+        return this;
+    }
+
+    void writeTo(DataOutputStream out, int codeAttribute) throws IOException {
+        out.writeShort(codeAttribute);
+        out.writeInt(12 + bytes.size());
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(bytes.size());
+        bytes.writeTo(out);
+        out.writeShort(0);  // exception table
+        out.writeShort(0);  // attributes
+    }
+}
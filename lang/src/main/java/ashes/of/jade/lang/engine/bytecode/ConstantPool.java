@@ -0,0 +1,116 @@
+package ashes.of.jade.lang.engine.bytecode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * Constant pool of a class file, equal constants share one entry
+ */
+class ConstantPool {
+
+    private static final int UTF8 = 1;
+    private static final int LONG = 5;
+    private static final int DOUBLE = 6;
+    private static final int CLASS = 7;
+    private static final int FIELD_REF = 9;
+    private static final int METHOD_REF = 10;
+    private static final int NAME_AND_TYPE = 12;
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final DataOutputStream out = new DataOutputStream(bytes);
+    private final Map<String, Integer> indexes = new HashMap<>();
+
+    /**
+     * Index of the next entry, long and double constants take two entries
+     */
+    private int next = 1;
+
+
+    public int utf8(String value) {
+        return add("U" + value, 1, () -> {
+            out.writeByte(UTF8);
+            out.writeUTF(value);
+        });
+    }
+
+    public int classRef(String internalName) {
+        int name = utf8(internalName);
+        return add("C" + internalName, 1, () -> {
+            out.writeByte(CLASS);
+            out.writeShort(name);
+        });
+    }
+
+    public int longConst(long value) {
+        return add("J" + value, 2, () -> {
+            out.writeByte(LONG);
+            out.writeLong(value);
+        });
+    }
+
+    public int doubleConst(double value) {
+        return add("D" + Double.doubleToRawLongBits(value), 2, () -> {
+            out.writeByte(DOUBLE);
+            out.writeDouble(value);
+        });
+    }
+
+    public int fieldRef(String owner, String name, String descriptor) {
+        return memberRef(FIELD_REF, owner, name, descriptor);
+    }
+
+    public int methodRef(String owner, String name, String descriptor) {
+        return memberRef(METHOD_REF, owner, name, descriptor);
+    }
+
+    private int memberRef(int tag, String owner, String name, String descriptor) {
+        int classRef = classRef(owner);
+        int nameAndType = nameAndType(name, descriptor);
+        return add(tag + owner + "." + name + descriptor, 1, () -> {
+            out.writeByte(tag);
+            out.writeShort(classRef);
+            out.writeShort(nameAndType);
+        });
+    }
+
+    private int nameAndType(String name, String descriptor) {
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        return add("N" + name + descriptor, 1, () -> {
+            out.writeByte(NAME_AND_TYPE);
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+        });
+    }
+
+
+    private interface Writer {
+        void write() throws IOException;
+    }
+
+    private int add(String key, int size, Writer writer) {
+        Integer index = indexes.get(key);
+        if (index != null)
+            return index;
+
+        try {
+            writer.write();
+        } catch (IOException e) {
+            throw new IllegalStateException("Can't write constant " + key, e);
+        }
+
+        index = next;
+        next += size;
+        indexes.put(key, index);
+        return index;
+    }
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeShort(next);
+        bytes.writeTo(out);
+    }
+}
@@ -0,0 +1,117 @@
+package ashes.of.jade.lang.engine.pattern;
+
+import ashes.of.jade.lang.engine.Expression;
+import ashes.of.jade.lang.engine.Frame;
+import ashes.of.jade.lang.engine.LambdaFunction;
+import ashes.of.jade.lang.engine.Pipeline;
+import ashes.of.jade.lang.nodes.NodeType;
+
+
+/**
+ * Reduce lambda x y -> x + y or x y -> x * y over parameters of the same type.
+ * Ranges are folded by loops specialized for the operator, the lambda isn't evaluated per element
+ */
+public class AssociativeFunction implements LambdaFunction {
+
+    /**
+     * ADD or MUL
+     */
+    private final NodeType op;
+    private final NodeType type;
+
+    public AssociativeFunction(NodeType op, NodeType type) {
+        this.op = op;
+        this.type = type;
+    }
+
+    /**
+     * Matches x + y and x * y in any order of parameters, both operations are commutative in integer
+     * and floating point arithmetic
+     *
+     * @param e expression of two parameters of the same type
+     * @return function or null if expression doesn't match
+     */
+    public static AssociativeFunction match(Expression e) {
+        if (e.getOp() != NodeType.ADD && e.getOp() != NodeType.MUL)
+            return null;
+
+        Expression a = e.getLeft();
+        Expression b = e.getRight();
+        if (!a.isParam() || !b.isParam() || a.getParam() == b.getParam())
+            return null;
+
+        return new AssociativeFunction(e.getOp(), e.getType());
+    }
+
+    public NodeType getOp() {
+        return op;
+    }
+
+    @Override
+    public NodeType getType() {
+        return type;
+    }
+
+    @Override
+    public long applyAsLong(Frame frame) {
+        if (type == NodeType.DOUBLE)
+            return Math.round(applyAsDouble(frame));
+
+        return op == NodeType.ADD ?
+                frame.longs[0] + frame.longs[1] :
+                frame.longs[0] * frame.longs[1];
+    }
+
+    @Override
+    public double applyAsDouble(Frame frame) {
+        if (type == NodeType.INTEGER)
+            return applyAsLong(frame);
+
+        return op == NodeType.ADD ?
+                frame.doubles[0] + frame.doubles[1] :
+                frame.doubles[0] * frame.doubles[1];
+    }
+
+    /**
+     * Folds elements of the range from left to right
+     *
+     * @param left first element index, inclusive
+     * @param right last element index, exclusive
+     */
+    public long reduceLongs(Pipeline pipeline, int left, int right, Frame frame) {
+        long acc = pipeline.applyAsLong(left, frame);
+        if (op == NodeType.ADD) {
+            for (int i = left + 1; i < right; i++)
+                acc += pipeline.applyAsLong(i, frame);
+        } else {
+            for (int i = left + 1; i < right; i++)
+                acc *= pipeline.applyAsLong(i, frame);
+        }
+
+        return acc;
+    }
+
+    /**
+     * Folds elements of the range from left to right
+     *
+     * @param left first element index, inclusive
+     * @param right last element index, exclusive
+     */
+    public double reduceDoubles(Pipeline pipeline, int left, int right, Frame frame) {
+        double acc = pipeline.applyAsDouble(left, frame);
+        if (op == NodeType.ADD) {
+            for (int i = left + 1; i < right; i++)
+                acc += pipeline.applyAsDouble(i, frame);
+        } else {
+            for (int i = left + 1; i < right; i++)
+                acc *= pipeline.applyAsDouble(i, frame);
+        }
+
+        return acc;
+    }
+
+    @Override
+    public String toString() {
+        return "$0 " + op + " $1";
+    }
+}
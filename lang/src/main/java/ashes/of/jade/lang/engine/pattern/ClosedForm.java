@@ -0,0 +1,91 @@
+package ashes.of.jade.lang.engine.pattern;
+
+import ashes.of.jade.lang.engine.Expression;
+import ashes.of.jade.lang.nodes.*;
+
+import java.util.List;
+
+
+/**
+ * Computes sums and products of integer polynomial maps over ranges without visiting elements.
+ * Element i of a range is start + i * step, so elements of the mapped range are values of
+ * a polynomial of the index, and their sum is a sum of powers of indices. Integer arithmetic
+ * wraps around and a polynomial evaluates exactly modulo 2^64, so the closed form returns the
+ * same value as the fold. Double elements aren't supported, their sum depends on order of additions
+ */
+public class ClosedForm {
+
+    /**
+     * Product of values with 64 factors of two is zero modulo 2^64
+     */
+    private static final int WORD_SIZE = 64;
+
+    private ClosedForm() {
+    }
+
+    /**
+     * @param seq non-empty sequence
+     * @param acc initial value of reduce
+     * @param lambda reduce lambda
+     * @return reduced elements of the sequence without the initial value or null if there is no closed form
+     */
+    public static IntNode reduce(SequenceNode seq, Node acc, Node lambda) {
+        if (acc.getType() != NodeType.INTEGER || !lambda.isLambda())
+            return null;
+
+        Expression reduce = Expression.of((LambdaNode) lambda, NodeType.INTEGER, NodeType.INTEGER);
+        AssociativeFunction op = reduce != null ? AssociativeFunction.match(reduce) : null;
+        if (op == null)
+            return null;
+
+        Polynomial p = polynomialOf(seq);
+        if (p == null)
+            return null;
+
+        return op.getOp() == NodeType.ADD ? new IntNode(p.sum(seq.size())) : product(p, seq.size());
+    }
+
+    /**
+     * @return polynomial of element index or null if the sequence isn't a range mapped by polynomials
+     */
+    private static Polynomial polynomialOf(SequenceNode seq) {
+        if (seq instanceof RangeSequenceNode) {
+            RangeSequenceNode range = (RangeSequenceNode) seq;
+            return Polynomial.linear(range.getStep(), range.getStart());
+        }
+
+        if (!(seq instanceof MappedSequenceNode))
+            return null;
+
+        MappedSequenceNode mapped = (MappedSequenceNode) seq;
+        Polynomial p = polynomialOf(mapped.getSource());
+        List<Node> lambdas = mapped.getLambdas();
+        for (int i = 0; i < lambdas.size() && p != null; i++) {
+            Node lambda = lambdas.get(i);
+            Expression e = lambda.isLambda() ? Expression.of((LambdaNode) lambda, NodeType.INTEGER) : null;
+            Polynomial map = e != null ? Polynomial.of(e) : null;
+            p = map != null ? map.compose(p) : null;
+        }
+
+        return p;
+    }
+
+    /**
+     * Only products with at least 64 even values are closed, they are zero.
+     * Parity of a polynomial with integer coefficients depends only on parity of the index:
+     * it's the constant coefficient for even indices and the sum of coefficients for odd ones
+     */
+    private static IntNode product(Polynomial p, long size) {
+        long sum = 0;
+        for (int k = 0; k <= p.degree(); k++)
+            sum += p.coefficient(k);
+
+        long evens = 0;
+        if ((p.coefficient(0) & 1) == 0)
+            evens += (size + 1) / 2;
+        if ((sum & 1) == 0)
+            evens += size / 2;
+
+        return evens >= WORD_SIZE ? new IntNode(0) : null;
+    }
+}
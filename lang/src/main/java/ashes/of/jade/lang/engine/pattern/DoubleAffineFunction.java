@@ -0,0 +1,82 @@
+package ashes.of.jade.lang.engine.pattern;
+
+import ashes.of.jade.lang.engine.Block;
+import ashes.of.jade.lang.engine.Frame;
+import ashes.of.jade.lang.engine.LambdaFunction;
+import ashes.of.jade.lang.nodes.NodeType;
+
+
+/**
+ * Double map lambda x * a + b or x / a + b with optional scale and offset. Floating point
+ * operations aren't associative, so only lambdas which evaluate exactly these operations
+ * in this order match, e.g. c - x / a is x / -a + c, but (x + 1) * 2 doesn't match
+ */
+public class DoubleAffineFunction implements LambdaFunction {
+
+    /**
+     * Parameter type, integer parameter is widened to double
+     */
+    private final NodeType param;
+
+    private final boolean scaled;
+    private final boolean divided;
+    private final double scale;
+
+    private final boolean shifted;
+    private final double offset;
+
+    /**
+     * @param param type of parameter
+     * @param scaled parameter is multiplied or divided by scale
+     * @param divided parameter is divided by scale
+     * @param shifted offset is added to the scaled parameter
+     */
+    public DoubleAffineFunction(NodeType param, boolean scaled, boolean divided, double scale, boolean shifted, double offset) {
+        this.param = param;
+        this.scaled = scaled;
+        this.divided = divided;
+        this.scale = scale;
+        this.shifted = shifted;
+        this.offset = offset;
+    }
+
+    @Override
+    public NodeType getType() {
+        return NodeType.DOUBLE;
+    }
+
+    @Override
+    public long applyAsLong(Frame frame) {
+        return Math.round(applyAsDouble(frame));
+    }
+
+    @Override
+    public double applyAsDouble(Frame frame) {
+        return apply(param == NodeType.DOUBLE ? frame.doubles[0] : frame.longs[0]);
+    }
+
+    private double apply(double x) {
+        if (scaled)
+            x = divided ? x / scale : x * scale;
+
+        return shifted ? x + offset : x;
+    }
+
+    @Override
+    public void applyToBlock(Block block, int length) {
+        double[] values = block.doubles;
+        if (param == NodeType.DOUBLE) {
+            for (int i = 0; i < length; i++)
+                values[i] = apply(values[i]);
+        } else {
+            long[] longs = block.longs;
+            for (int i = 0; i < length; i++)
+                values[i] = apply(longs[i]);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "$0" + (scaled ? (divided ? " / " : " * ") + scale : "") + (shifted ? " + " + offset : "");
+    }
+}
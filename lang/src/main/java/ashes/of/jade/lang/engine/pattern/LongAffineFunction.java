@@ -0,0 +1,57 @@
+package ashes.of.jade.lang.engine.pattern;
+
+import ashes.of.jade.lang.engine.Block;
+import ashes.of.jade.lang.engine.Frame;
+import ashes.of.jade.lang.engine.LambdaFunction;
+import ashes.of.jade.lang.nodes.NodeType;
+
+
+/**
+ * Integer map lambda a * x + b. Integer arithmetic wraps around, so any lambda of additions,
+ * subtractions and multiplications linear in the parameter is exactly this function
+ */
+public class LongAffineFunction implements LambdaFunction {
+
+    private final long scale;
+    private final long offset;
+
+    public LongAffineFunction(long scale, long offset) {
+        this.scale = scale;
+        this.offset = offset;
+    }
+
+    public long getScale() {
+        return scale;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    @Override
+    public NodeType getType() {
+        return NodeType.INTEGER;
+    }
+
+    @Override
+    public long applyAsLong(Frame frame) {
+        return scale * frame.longs[0] + offset;
+    }
+
+    @Override
+    public double applyAsDouble(Frame frame) {
+        return applyAsLong(frame);
+    }
+
+    @Override
+    public void applyToBlock(Block block, int length) {
+        long[] values = block.longs;
+        for (int i = 0; i < length; i++)
+            values[i] = scale * values[i] + offset;
+    }
+
+    @Override
+    public String toString() {
+        return scale + " * $0 + " + offset;
+    }
+}
@@ -0,0 +1,107 @@
+package ashes.of.jade.lang.engine.pattern;
+
+import ashes.of.jade.lang.engine.Engine;
+import ashes.of.jade.lang.engine.Expression;
+import ashes.of.jade.lang.engine.LambdaFunction;
+import ashes.of.jade.lang.nodes.LambdaNode;
+import ashes.of.jade.lang.nodes.NodeType;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+
+/**
+ * Recognizes common lambdas and replaces them with hand-written functions: affine maps
+ * and sum or product reduces. A lambda matches only if the function returns exactly the same
+ * values, all other lambdas are compiled by the underlying engine
+ */
+public class PatternEngine implements Engine {
+    private static final Logger log = LogManager.getLogger(PatternEngine.class);
+
+    private final Engine engine;
+
+    public PatternEngine(Engine engine) {
+        this.engine = engine;
+    }
+
+    @Override
+    public LambdaFunction compile(LambdaNode lambda, NodeType... params) {
+        Expression expression = Expression.of(lambda, params);
+        LambdaFunction function = expression != null ? match(expression, params) : null;
+        if (function != null) {
+            log.debug("Lambda {} matches {}", lambda, function);
+            return function;
+        }
+
+        return engine.compile(lambda, params);
+    }
+
+    private LambdaFunction match(Expression e, NodeType... params) {
+        if (params.length == 1)
+            return e.getType() == NodeType.DOUBLE ? matchDoubleAffine(e, params[0]) : matchLongAffine(e);
+
+        if (params.length == 2 && params[0] == params[1])
+            return AssociativeFunction.match(e);
+
+        return null;
+    }
+
+    /**
+     * Integer lambda is affine if its polynomial has degree one or less
+     */
+    private LambdaFunction matchLongAffine(Expression e) {
+        Polynomial polynomial = Polynomial.of(e);
+        if (polynomial == null || polynomial.degree() > 1)
+            return null;
+
+        return new LongAffineFunction(polynomial.coefficient(1), polynomial.coefficient(0));
+    }
+
+    /**
+     * Matches x, x * a, a * x or x / a with optional offset added or subtracted on either side.
+     * Negation and subtraction are exact in floating point, so c - x / a is x / -a + c
+     */
+    private LambdaFunction matchDoubleAffine(Expression e, NodeType param) {
+        Expression term = e;
+        boolean shifted = false;
+        boolean negated = false;
+        double offset = 0;
+
+        if (e.getOp() == NodeType.ADD || e.getOp() == NodeType.SUB) {
+            shifted = true;
+            if (e.getRight().isConstant()) {
+                term = e.getLeft();
+                offset = e.getOp() == NodeType.ADD ? e.getRight().getDoubleValue() : -e.getRight().getDoubleValue();
+            } else if (e.getLeft().isConstant()) {
+                term = e.getRight();
+                offset = e.getLeft().getDoubleValue();
+                negated = e.getOp() == NodeType.SUB;
+            } else {
+                return null;
+            }
+        }
+
+        if (term.isParam())
+            return new DoubleAffineFunction(param, negated, false, -1, shifted, offset);
+
+        // integer subexpression is evaluated with integer arithmetic before widening
+        if (term.getType() != NodeType.DOUBLE)
+            return null;
+
+        Expression left = term.getLeft();
+        Expression right = term.getRight();
+        if (term.getOp() == NodeType.MUL && left.isParam() && right.isConstant())
+            return new DoubleAffineFunction(param, true, false, sign(negated) * right.getDoubleValue(), shifted, offset);
+
+        if (term.getOp() == NodeType.MUL && left.isConstant() && right.isParam())
+            return new DoubleAffineFunction(param, true, false, sign(negated) * left.getDoubleValue(), shifted, offset);
+
+        if (term.getOp() == NodeType.DIV && left.isParam() && right.isConstant())
+            return new DoubleAffineFunction(param, true, true, sign(negated) * right.getDoubleValue(), shifted, offset);
+
+        return null;
+    }
+
+    private double sign(boolean negated) {
+        return negated ? -1 : 1;
+    }
+}
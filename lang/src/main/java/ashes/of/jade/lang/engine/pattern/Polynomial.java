@@ -0,0 +1,201 @@
+package ashes.of.jade.lang.engine.pattern;
+
+import ashes.of.jade.lang.engine.Expression;
+import ashes.of.jade.lang.nodes.NodeType;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+
+/**
+ * Polynomial of one integer variable with integer coefficients. Integer arithmetic wraps around,
+ * it's a ring modulo 2^64, so coefficients are kept modulo 2^64 and any integer expression
+ * of additions, subtractions and multiplications evaluates exactly as its polynomial
+ */
+public class Polynomial {
+
+    /**
+     * Max degree of polynomials, higher degrees are never built
+     */
+    public static final int MAX_DEGREE = 16;
+
+    private static final BigInteger MODULUS = BigInteger.ONE.shiftLeft(64);
+
+    /**
+     * Coefficient at index k is multiplied by x^k, the last one isn't zero
+     */
+    private final long[] coefficients;
+
+    private Polynomial(long[] coefficients) {
+        int degree = coefficients.length - 1;
+        while (degree >= 0 && coefficients[degree] == 0)
+            degree--;
+
+        this.coefficients = Arrays.copyOf(coefficients, degree + 1);
+    }
+
+    public static Polynomial constant(long value) {
+        return new Polynomial(new long[] { value });
+    }
+
+    /**
+     * @return a * x + b
+     */
+    public static Polynomial linear(long a, long b) {
+        return new Polynomial(new long[] { b, a });
+    }
+
+    /**
+     * @param e expression of one parameter
+     * @return polynomial or null if expression isn't integer or contains anything but additions,
+     *         subtractions and multiplications, powers are evaluated in floating point and don't match
+     */
+    public static Polynomial of(Expression e) {
+        if (e.getType() != NodeType.INTEGER)
+            return null;
+
+        if (e.isConstant())
+            return constant(e.getLongValue());
+
+        if (e.isParam())
+            return e.getParam() == 0 ? linear(1, 0) : null;
+
+        if (e.isLocal())
+            return of(e.getLeft());
+
+        if (e.getOp() != NodeType.ADD && e.getOp() != NodeType.SUB && e.getOp() != NodeType.MUL)
+            return null;
+
+        Polynomial a = of(e.getLeft());
+        Polynomial b = of(e.getRight());
+        if (a == null || b == null)
+            return null;
+
+        switch (e.getOp()) {
+            case ADD:   return a.add(b);
+            case SUB:   return a.subtract(b);
+            default:    return a.multiply(b);
+        }
+    }
+
+    /**
+     * @return degree, -1 for zero polynomial
+     */
+    public int degree() {
+        return coefficients.length - 1;
+    }
+
+    /**
+     * @return coefficient of x^k
+     */
+    public long coefficient(int k) {
+        return k < coefficients.length ? coefficients[k] : 0;
+    }
+
+    public Polynomial add(Polynomial p) {
+        long[] r = new long[Math.max(coefficients.length, p.coefficients.length)];
+        for (int k = 0; k < r.length; k++)
+            r[k] = coefficient(k) + p.coefficient(k);
+
+        return new Polynomial(r);
+    }
+
+    public Polynomial subtract(Polynomial p) {
+        long[] r = new long[Math.max(coefficients.length, p.coefficients.length)];
+        for (int k = 0; k < r.length; k++)
+            r[k] = coefficient(k) - p.coefficient(k);
+
+        return new Polynomial(r);
+    }
+
+    /**
+     * @return product or null if its degree exceeds {@link #MAX_DEGREE}
+     */
+    public Polynomial multiply(Polynomial p) {
+        if (degree() < 0 || p.degree() < 0)
+            return constant(0);
+
+        if (degree() + p.degree() > MAX_DEGREE)
+            return null;
+
+        long[] r = new long[degree() + p.degree() + 1];
+        for (int i = 0; i < coefficients.length; i++)
+            for (int j = 0; j < p.coefficients.length; j++)
+                r[i + j] += coefficients[i] * p.coefficients[j];
+
+        return new Polynomial(r);
+    }
+
+    /**
+     * @return this(inner(x)) or null if its degree exceeds {@link #MAX_DEGREE}
+     */
+    public Polynomial compose(Polynomial inner) {
+        Polynomial result = constant(0);
+        for (int k = coefficients.length - 1; k >= 0; k--) {
+            result = result.multiply(inner);
+            if (result == null)
+                return null;
+
+            result = result.add(constant(coefficients[k]));
+        }
+
+        return result;
+    }
+
+    public long apply(long x) {
+        long result = 0;
+        for (int k = coefficients.length - 1; k >= 0; k--)
+            result = result * x + coefficients[k];
+
+        return result;
+    }
+
+    /**
+     * Sum of values at 0, 1, .. n - 1 computed with sums of powers, the same as folding values modulo 2^64
+     *
+     * @param n number of values
+     */
+    public long sum(long n) {
+        BigInteger[] powers = powerSums(BigInteger.valueOf(n), degree());
+        BigInteger sum = BigInteger.ZERO;
+        for (int k = 0; k < coefficients.length; k++)
+            sum = sum.add(BigInteger.valueOf(coefficients[k]).multiply(powers[k]));
+
+        return sum.mod(MODULUS).longValue();
+    }
+
+    /**
+     * Sums of powers 0^k + 1^k + .. (n - 1)^k for k up to degree, from the identity
+     * sum of C(k + 1, j) * S(j) for j from 0 to k equals n^(k + 1)
+     */
+    private static BigInteger[] powerSums(BigInteger n, int degree) {
+        BigInteger[] sums = new BigInteger[Math.max(degree + 1, 0)];
+        for (int k = 0; k <= degree; k++) {
+            BigInteger s = n.pow(k + 1);
+            BigInteger binomial = BigInteger.ONE;
+            for (int j = 0; j < k; j++) {
+                s = s.subtract(binomial.multiply(sums[j]));
+                binomial = binomial.multiply(BigInteger.valueOf(k + 1 - j)).divide(BigInteger.valueOf(j + 1));
+            }
+
+            sums[k] = s.divide(BigInteger.valueOf(k + 1));
+        }
+
+        return sums;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int k = coefficients.length - 1; k >= 0; k--) {
+            if (sb.length() > 0)
+                sb.append(" + ");
+
+            sb.append(coefficients[k]);
+            if (k > 0)
+                sb.append(" * $0^").append(k);
+        }
+
+        return sb.length() == 0 ? "0" : sb.toString();
+    }
+}
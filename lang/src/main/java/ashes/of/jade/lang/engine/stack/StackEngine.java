@@ -0,0 +1,254 @@
+package ashes.of.jade.lang.engine.stack;
+
+import ashes.of.jade.lang.engine.Engine;
+import ashes.of.jade.lang.engine.Expression;
+import ashes.of.jade.lang.engine.Frame;
+import ashes.of.jade.lang.engine.LambdaFunction;
+import ashes.of.jade.lang.nodes.LambdaNode;
+import ashes.of.jade.lang.nodes.NodeType;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+
+/**
+ * Interprets arithmetic lambdas on the operand stack of a reusable frame.
+ * Lambda is compiled to typed instructions using types inferred for its expression,
+ * so evaluation neither allocates nor checks types of values on the stack
+ */
+public class StackEngine implements Engine {
+
+    private static final int LCONST = 0;
+    private static final int DCONST = 1;
+    private static final int LLOAD  = 2;
+    private static final int DLOAD  = 3;
+    private static final int L2D    = 4;
+    private static final int D2L    = 5;
+    private static final int LADD   = 6;
+    private static final int LSUB   = 7;
+    private static final int LMUL   = 8;
+    private static final int DADD   = 9;
+    private static final int DSUB   = 10;
+    private static final int DMUL   = 11;
+    private static final int DDIV   = 12;
+    private static final int DPOW   = 13;
+    private static final int LPARITY = 14;
+    private static final int DPARITY = 15;
+
+    /*
+     * Locals are stored above the operand stack, tee copies the top of the stack to a local
+     */
+    private static final int LTEE   = 16;
+    private static final int DTEE   = 17;
+    private static final int LLOCAL = 18;
+    private static final int DLOCAL = 19;
+
+    private static class StackFunction implements LambdaFunction {
+
+        /**
+         * Instructions in order of evaluation
+         */
+        private final int[] code;
+
+        /**
+         * Parameter index for loads, index of constant for constants or index of local for locals
+         */
+        private final int[] operands;
+
+        private final long[] longConstants;
+        private final double[] doubleConstants;
+        private final NodeType type;
+        private final int depth;
+        private final int locals;
+
+        private StackFunction(int[] code, int[] operands, long[] longConstants, double[] doubleConstants, NodeType type, int depth, int locals) {
+            this.code = code;
+            this.operands = operands;
+            this.longConstants = longConstants;
+            this.doubleConstants = doubleConstants;
+            this.type = type;
+            this.depth = depth;
+            this.locals = locals;
+        }
+
+        @Override
+        public NodeType getType() {
+            return type;
+        }
+
+        @Override
+        public long applyAsLong(Frame frame) {
+            eval(frame);
+            return type == NodeType.DOUBLE ? Math.round(frame.stackDoubles[0]) : frame.stackLongs[0];
+        }
+
+        @Override
+        public double applyAsDouble(Frame frame) {
+            eval(frame);
+            return type == NodeType.DOUBLE ? frame.stackDoubles[0] : frame.stackLongs[0];
+        }
+
+        /**
+         * Evaluates lambda, the result is left at the bottom of the operand stack
+         */
+        private void eval(Frame frame) {
+            frame.reserve(depth + locals);
+            long[] longs = frame.stackLongs;
+            double[] doubles = frame.stackDoubles;
+
+            int top = -1;
+            for (int pc = 0; pc < code.length; pc++) {
+                switch (code[pc]) {
+                    case LCONST:    longs[++top] = longConstants[operands[pc]]; break;
+                    case DCONST:    doubles[++top] = doubleConstants[operands[pc]]; break;
+                    case LLOAD:     longs[++top] = frame.longs[operands[pc]]; break;
+                    case DLOAD:     doubles[++top] = frame.doubles[operands[pc]]; break;
+                    case L2D:       doubles[top] = longs[top]; break;
+                    case D2L:       longs[top] = Math.round(doubles[top]); break;
+                    case LADD:      top--; longs[top] = longs[top] + longs[top + 1]; break;
+                    case LSUB:      top--; longs[top] = longs[top] - longs[top + 1]; break;
+                    case LMUL:      top--; longs[top] = longs[top] * longs[top + 1]; break;
+                    case DADD:      top--; doubles[top] = doubles[top] + doubles[top + 1]; break;
+                    case DSUB:      top--; doubles[top] = doubles[top] - doubles[top + 1]; break;
+                    case DMUL:      top--; doubles[top] = doubles[top] * doubles[top + 1]; break;
+                    case DDIV:      top--; doubles[top] = doubles[top] / doubles[top + 1]; break;
+                    case DPOW:      top--; doubles[top] = Math.pow(doubles[top], doubles[top + 1]); break;
+                    case LPARITY:   longs[top] = Expression.parity(longs[top]); break;
+                    case DPARITY:   doubles[top] = Math.pow(-1, doubles[top]); break;
+                    case LTEE:      longs[depth + operands[pc]] = longs[top]; break;
+                    case DTEE:      doubles[depth + operands[pc]] = doubles[top]; break;
+                    case LLOCAL:    longs[++top] = longs[depth + operands[pc]]; break;
+                    case DLOCAL:    doubles[++top] = doubles[depth + operands[pc]]; break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Collects instructions of a function
+     */
+    private static class Builder {
+        private final List<Integer> code = new ArrayList<>();
+        private final List<Integer> operands = new ArrayList<>();
+        private final List<Long> longConstants = new ArrayList<>();
+        private final List<Double> doubleConstants = new ArrayList<>();
+
+        /**
+         * Locals which are already evaluated by emitted instructions
+         */
+        private final BitSet locals = new BitSet();
+
+        private int depth;
+        private int maxDepth;
+
+        private Builder op(int opcode, int operand, int delta) {
+            code.add(opcode);
+            operands.add(operand);
+            depth += delta;
+            maxDepth = Math.max(maxDepth, depth);
+            return this;
+        }
+
+        private Builder op(int opcode, int delta) {
+            return op(opcode, 0, delta);
+        }
+
+        private Builder constant(long value) {
+            longConstants.add(value);
+            return op(LCONST, longConstants.size() - 1, 1);
+        }
+
+        private Builder constant(double value) {
+            doubleConstants.add(value);
+            return op(DCONST, doubleConstants.size() - 1, 1);
+        }
+
+        private StackFunction build(NodeType type) {
+            return new StackFunction(
+                    code.stream().mapToInt(Integer::intValue).toArray(),
+                    operands.stream().mapToInt(Integer::intValue).toArray(),
+                    longConstants.stream().mapToLong(Long::longValue).toArray(),
+                    doubleConstants.stream().mapToDouble(Double::doubleValue).toArray(),
+                    type,
+                    maxDepth,
+                    locals.length());
+        }
+    }
+
+
+    @Override
+    public LambdaFunction compile(LambdaNode lambda, NodeType... params) {
+        Expression expression = Expression.of(lambda, params);
+        if (expression == null)
+            return null;
+
+        Builder builder = new Builder();
+        emit(builder, expression, expression.getType());
+        return builder.build(expression.getType());
+    }
+
+    /**
+     * Emits instructions which leave value of the expression on the stack
+     *
+     * @param type type of value on the stack, expression result is widened to double if needed
+     */
+    private void emit(Builder b, Expression e, NodeType type) {
+        if (e.isConstant()) {
+            if (type == NodeType.DOUBLE)
+                b.constant(e.getDoubleValue());
+            else
+                b.constant(e.getLongValue());
+            return;
+        }
+
+        boolean isDouble = e.getType() == NodeType.DOUBLE;
+        if (e.isParam()) {
+            b.op(isDouble ? DLOAD : LLOAD, e.getParam(), 1);
+        } else if (e.isLocal()) {
+            emitLocal(b, e);
+        } else if (e.getOp() == NodeType.PARITY) {
+            emit(b, e.getLeft(), e.getType());
+            b.op(isDouble ? DPARITY : LPARITY, 0);
+        } else if (e.getOp() == NodeType.POWER) {
+            emit(b, e.getLeft(), NodeType.DOUBLE);
+            emit(b, e.getRight(), NodeType.DOUBLE);
+            b.op(DPOW, -1);
+            if (!isDouble)
+                b.op(D2L, 0);
+        } else {
+            emit(b, e.getLeft(), e.getType());
+            emit(b, e.getRight(), e.getType());
+            b.op(opcodeOf(e.getOp(), isDouble), -1);
+        }
+
+        if (!isDouble && type == NodeType.DOUBLE)
+            b.op(L2D, 0);
+    }
+
+    /**
+     * The first use evaluates the local and keeps a copy, other uses load the copy
+     */
+    private void emitLocal(Builder b, Expression e) {
+        boolean isDouble = e.getType() == NodeType.DOUBLE;
+        if (b.locals.get(e.getParam())) {
+            b.op(isDouble ? DLOCAL : LLOCAL, e.getParam(), 1);
+            return;
+        }
+
+        emit(b, e.getLeft(), e.getType());
+        b.op(isDouble ? DTEE : LTEE, e.getParam(), 0);
+        b.locals.set(e.getParam());
+    }
+
+    private int opcodeOf(NodeType op, boolean isDouble) {
+        switch (op) {
+            case ADD:   return isDouble ? DADD : LADD;
+            case SUB:   return isDouble ? DSUB : LSUB;
+            case MUL:   return isDouble ? DMUL : LMUL;
+            case DIV:   return DDIV;
+        }
+
+        throw new IllegalArgumentException("Unexpected operator: " + op);
+    }
+}
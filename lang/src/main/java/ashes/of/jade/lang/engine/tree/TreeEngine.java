@@ -0,0 +1,202 @@
+package ashes.of.jade.lang.engine.tree;
+
+import ashes.of.jade.lang.engine.Engine;
+import ashes.of.jade.lang.engine.Expression;
+import ashes.of.jade.lang.engine.Frame;
+import ashes.of.jade.lang.engine.LambdaFunction;
+import ashes.of.jade.lang.nodes.LambdaNode;
+import ashes.of.jade.lang.nodes.NodeType;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.BitSet;
+
+
+/**
+ * Links arithmetic lambdas once into a tree of typed evaluators. Cheap to build,
+ * unlike bytecode, and avoids the stack walk and type checks of the interpreter.
+ * Locals are kept in the operand stack of the frame, which evaluators don't use otherwise
+ */
+public class TreeEngine implements Engine {
+    private static final Logger log = LogManager.getLogger(TreeEngine.class);
+
+    /**
+     * Evaluates subexpression with integer result
+     */
+    private interface LongEvaluator {
+        long eval(Frame frame);
+    }
+
+    /**
+     * Evaluates subexpression with double result
+     */
+    private interface DoubleEvaluator {
+        double eval(Frame frame);
+    }
+
+
+    private static class LongFunction implements LambdaFunction {
+        private final LongEvaluator root;
+        private final int locals;
+
+        private LongFunction(LongEvaluator root, int locals) {
+            this.root = root;
+            this.locals = locals;
+        }
+
+        @Override
+        public NodeType getType() {
+            return NodeType.INTEGER;
+        }
+
+        @Override
+        public long applyAsLong(Frame frame) {
+            frame.reserve(locals);
+            return root.eval(frame);
+        }
+
+        @Override
+        public double applyAsDouble(Frame frame) {
+            frame.reserve(locals);
+            return root.eval(frame);
+        }
+    }
+
+    private static class DoubleFunction implements LambdaFunction {
+        private final DoubleEvaluator root;
+        private final int locals;
+
+        private DoubleFunction(DoubleEvaluator root, int locals) {
+            this.root = root;
+            this.locals = locals;
+        }
+
+        @Override
+        public NodeType getType() {
+            return NodeType.DOUBLE;
+        }
+
+        @Override
+        public long applyAsLong(Frame frame) {
+            frame.reserve(locals);
+            return Math.round(root.eval(frame));
+        }
+
+        @Override
+        public double applyAsDouble(Frame frame) {
+            frame.reserve(locals);
+            return root.eval(frame);
+        }
+    }
+
+
+    @Override
+    public LambdaFunction compile(LambdaNode lambda, NodeType... params) {
+        Expression expression = Expression.of(lambda, params);
+        if (expression == null) {
+            log.debug("Lambda {} isn't arithmetic, can't link", lambda);
+            return null;
+        }
+
+        log.debug("Lambda {} linked: {}", lambda, expression);
+        BitSet locals = new BitSet();
+        if (expression.getType() == NodeType.DOUBLE) {
+            DoubleEvaluator root = linkDouble(expression, locals);
+            return new DoubleFunction(root, locals.length());
+        }
+
+        LongEvaluator root = linkLong(expression, locals);
+        return new LongFunction(root, locals.length());
+    }
+
+
+    private LongEvaluator linkLong(Expression e, BitSet locals) {
+        if (e.isConstant()) {
+            long value = e.getLongValue();
+            return frame -> value;
+        }
+
+        if (e.isParam()) {
+            int index = e.getParam();
+            return frame -> frame.longs[index];
+        }
+
+        if (e.isLocal()) {
+            int index = e.getParam();
+            if (locals.get(index))
+                return frame -> frame.stackLongs[index];
+
+            locals.set(index);
+            LongEvaluator value = linkLong(e.getLeft(), locals);
+            return frame -> frame.stackLongs[index] = value.eval(frame);
+        }
+
+        if (e.getOp() == NodeType.PARITY) {
+            LongEvaluator a = linkLong(e.getLeft(), locals);
+            return frame -> Expression.parity(a.eval(frame));
+        }
+
+        if (e.getOp() == NodeType.POWER) {
+            DoubleEvaluator a = linkDouble(e.getLeft(), locals);
+            DoubleEvaluator b = linkDouble(e.getRight(), locals);
+            return frame -> Math.round(Math.pow(a.eval(frame), b.eval(frame)));
+        }
+
+        LongEvaluator a = linkLong(e.getLeft(), locals);
+        LongEvaluator b = linkLong(e.getRight(), locals);
+        switch (e.getOp()) {
+            case ADD:   return frame -> a.eval(frame) + b.eval(frame);
+            case SUB:   return frame -> a.eval(frame) - b.eval(frame);
+            case MUL:   return frame -> a.eval(frame) * b.eval(frame);
+        }
+
+        throw new IllegalArgumentException("Unexpected integer operator: " + e.getOp());
+    }
+
+    /**
+     * Links expression with double result, integer expressions are widened
+     */
+    private DoubleEvaluator linkDouble(Expression e, BitSet locals) {
+        if (e.getType() == NodeType.INTEGER) {
+            LongEvaluator evaluator = linkLong(e, locals);
+            return evaluator::eval;
+        }
+
+        if (e.isConstant()) {
+            double value = e.getDoubleValue();
+            return frame -> value;
+        }
+
+        if (e.isParam()) {
+            int index = e.getParam();
+            return frame -> frame.doubles[index];
+        }
+
+        if (e.isLocal()) {
+            int index = e.getParam();
+            if (locals.get(index))
+                return frame -> frame.stackDoubles[index];
+
+            locals.set(index);
+            DoubleEvaluator value = linkDouble(e.getLeft(), locals);
+            return frame -> frame.stackDoubles[index] = value.eval(frame);
+        }
+
+        if (e.getOp() == NodeType.PARITY) {
+            DoubleEvaluator a = linkDouble(e.getLeft(), locals);
+            return frame -> Math.pow(-1, a.eval(frame));
+        }
+
+        DoubleEvaluator a = linkDouble(e.getLeft(), locals);
+        DoubleEvaluator b = linkDouble(e.getRight(), locals);
+        switch (e.getOp()) {
+            case ADD:   return frame -> a.eval(frame) + b.eval(frame);
+            case SUB:   return frame -> a.eval(frame) - b.eval(frame);
+            case MUL:   return frame -> a.eval(frame) * b.eval(frame);
+            case DIV:   return frame -> a.eval(frame) / b.eval(frame);
+            case POWER: return frame -> Math.pow(a.eval(frame), b.eval(frame));
+        }
+
+        throw new IllegalArgumentException("Unexpected double operator: " + e.getOp());
+    }
+}
@@ -0,0 +1,75 @@
+package ashes.of.jade.lang.engine.vector;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Iterator;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+
+/**
+ * Arithmetic over columns of a block, the result is stored in the first column.
+ * Implementations are found with {@link ServiceLoader}, so kernels built with SIMD
+ * intrinsics for a newer JVM, e.g. with jdk.incubator.vector, can be added to the
+ * classpath without making the language depend on them. Without such kernels
+ * or on a JVM which doesn't support them scalar loops are used
+ */
+public interface Kernels {
+
+    /**
+     * @return true if the kernels can run on this JVM
+     */
+    boolean isSupported();
+
+    String getName();
+
+    void add(long[] a, long[] b, int length);
+    void sub(long[] a, long[] b, int length);
+    void mul(long[] a, long[] b, int length);
+
+    void add(double[] a, double[] b, int length);
+    void sub(double[] a, double[] b, int length);
+    void mul(double[] a, double[] b, int length);
+    void div(double[] a, double[] b, int length);
+
+    /*
+     * Column and scalar, reversed operations take the scalar as the left operand
+     */
+
+    void add(long[] a, long b, int length);
+    void sub(long[] a, long b, int length);
+    void reverseSub(long[] a, long b, int length);
+    void mul(long[] a, long b, int length);
+
+    void add(double[] a, double b, int length);
+    void sub(double[] a, double b, int length);
+    void reverseSub(double[] a, double b, int length);
+    void mul(double[] a, double b, int length);
+    void div(double[] a, double b, int length);
+    void reverseDiv(double[] a, double b, int length);
+
+
+    /**
+     * @return first supported kernels found on the classpath or scalar kernels
+     */
+    static Kernels load() {
+        Logger log = LogManager.getLogger(Kernels.class);
+        try {
+            Iterator<Kernels> it = ServiceLoader.load(Kernels.class).iterator();
+            while (it.hasNext()) {
+                Kernels kernels = it.next();
+                if (kernels.isSupported()) {
+                    log.info("Use {} kernels", kernels.getName());
+                    return kernels;
+                }
+
+                log.info("Kernels {} aren't supported by this JVM", kernels.getName());
+            }
+        } catch (ServiceConfigurationError | LinkageError e) {
+            log.warn("Can't load kernels, scalar kernels are used", e);
+        }
+
+        return new ScalarKernels();
+    }
+}
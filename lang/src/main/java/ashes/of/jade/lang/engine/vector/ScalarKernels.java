@@ -0,0 +1,121 @@
+package ashes.of.jade.lang.engine.vector;
+
+
+/**
+ * Kernels as plain counted loops over arrays, the JIT unrolls them and
+ * uses SIMD instructions of the machine for most of operations
+ */
+public class ScalarKernels implements Kernels {
+
+    @Override
+    public boolean isSupported() {
+        return true;
+    }
+
+    @Override
+    public String getName() {
+        return "scalar";
+    }
+
+    @Override
+    public void add(long[] a, long[] b, int length) {
+        for (int i = 0; i < length; i++)
+            a[i] += b[i];
+    }
+
+    @Override
+    public void sub(long[] a, long[] b, int length) {
+        for (int i = 0; i < length; i++)
+            a[i] -= b[i];
+    }
+
+    @Override
+    public void mul(long[] a, long[] b, int length) {
+        for (int i = 0; i < length; i++)
+            a[i] *= b[i];
+    }
+
+    @Override
+    public void add(double[] a, double[] b, int length) {
+        for (int i = 0; i < length; i++)
+            a[i] += b[i];
+    }
+
+    @Override
+    public void sub(double[] a, double[] b, int length) {
+        for (int i = 0; i < length; i++)
+            a[i] -= b[i];
+    }
+
+    @Override
+    public void mul(double[] a, double[] b, int length) {
+        for (int i = 0; i < length; i++)
+            a[i] *= b[i];
+    }
+
+    @Override
+    public void div(double[] a, double[] b, int length) {
+        for (int i = 0; i < length; i++)
+            a[i] /= b[i];
+    }
+
+    @Override
+    public void add(long[] a, long b, int length) {
+        for (int i = 0; i < length; i++)
+            a[i] += b;
+    }
+
+    @Override
+    public void sub(long[] a, long b, int length) {
+        for (int i = 0; i < length; i++)
+            a[i] -= b;
+    }
+
+    @Override
+    public void reverseSub(long[] a, long b, int length) {
+        for (int i = 0; i < length; i++)
+            a[i] = b - a[i];
+    }
+
+    @Override
+    public void mul(long[] a, long b, int length) {
+        for (int i = 0; i < length; i++)
+            a[i] *= b;
+    }
+
+    @Override
+    public void add(double[] a, double b, int length) {
+        for (int i = 0; i < length; i++)
+            a[i] += b;
+    }
+
+    @Override
+    public void sub(double[] a, double b, int length) {
+        for (int i = 0; i < length; i++)
+            a[i] -= b;
+    }
+
+    @Override
+    public void reverseSub(double[] a, double b, int length) {
+        for (int i = 0; i < length; i++)
+            a[i] = b - a[i];
+    }
+
+    @Override
+    public void mul(double[] a, double b, int length) {
+        for (int i = 0; i < length; i++)
+            a[i] *= b;
+    }
+
+    @Override
+    public void div(double[] a, double b, int length) {
+        for (int i = 0; i < length; i++)
+            a[i] /= b;
+    }
+
+    @Override
+    public void reverseDiv(double[] a, double b, int length) {
+        for (int i = 0; i < length; i++)
+            a[i] = b / a[i];
+    }
+}
@@ -0,0 +1,368 @@
+package ashes.of.jade.lang.engine.vector;
+
+import ashes.of.jade.lang.engine.*;
+import ashes.of.jade.lang.engine.stack.StackEngine;
+import ashes.of.jade.lang.nodes.LambdaNode;
+import ashes.of.jade.lang.nodes.NodeType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+
+/**
+ * Interprets map lambdas a column at a time: every instruction is applied to a whole block
+ * of elements before the next one. Dispatch and types are resolved once per block and
+ * every instruction is a tight loop over primitive arrays which the JIT can vectorize.
+ * Arithmetic runs in kernels, constant operands are broadcast instead of filling columns.
+ * Single elements, e.g. of reduce, are evaluated by the stack engine
+ */
+public class VectorEngine implements Engine {
+
+    private static final int LCONST = 0;
+    private static final int DCONST = 1;
+    private static final int LLOAD  = 2;
+    private static final int DLOAD  = 3;
+    private static final int L2D    = 4;
+    private static final int D2L    = 5;
+    private static final int LADD   = 6;
+    private static final int LSUB   = 7;
+    private static final int LMUL   = 8;
+    private static final int DADD   = 9;
+    private static final int DSUB   = 10;
+    private static final int DMUL   = 11;
+    private static final int DDIV   = 12;
+    private static final int DPOW   = 13;
+    private static final int LPARITY = 14;
+    private static final int DPARITY = 15;
+
+    /*
+     * Column and constant, reversed operations take the constant as the left operand
+     */
+    private static final int LADDC  = 16;
+    private static final int LSUBC  = 17;
+    private static final int LRSUBC = 18;
+    private static final int LMULC  = 19;
+    private static final int DADDC  = 20;
+    private static final int DSUBC  = 21;
+    private static final int DRSUBC = 22;
+    private static final int DMULC  = 23;
+    private static final int DDIVC  = 24;
+    private static final int DRDIVC = 25;
+
+    /*
+     * Columns of locals are stored above the operand stack, tee copies the top column to a local
+     */
+    private static final int LTEE   = 26;
+    private static final int DTEE   = 27;
+    private static final int LLOCAL = 28;
+    private static final int DLOCAL = 29;
+
+    private static class VectorFunction implements LambdaFunction {
+
+        private final Kernels kernels;
+
+        /**
+         * Same function evaluated for single elements
+         */
+        private final LambdaFunction scalar;
+
+        /**
+         * Instructions in order of evaluation
+         */
+        private final int[] code;
+
+        /**
+         * Index of constant for constants and operations with constant, index of local for locals
+         */
+        private final int[] operands;
+
+        private final long[] longConstants;
+        private final double[] doubleConstants;
+        private final int depth;
+        private final int locals;
+
+        private VectorFunction(Kernels kernels, LambdaFunction scalar, int[] code, int[] operands, long[] longConstants, double[] doubleConstants, int depth, int locals) {
+            this.kernels = kernels;
+            this.scalar = scalar;
+            this.code = code;
+            this.operands = operands;
+            this.longConstants = longConstants;
+            this.doubleConstants = doubleConstants;
+            this.depth = depth;
+            this.locals = locals;
+        }
+
+        @Override
+        public NodeType getType() {
+            return scalar.getType();
+        }
+
+        @Override
+        public long applyAsLong(Frame frame) {
+            return scalar.applyAsLong(frame);
+        }
+
+        @Override
+        public double applyAsDouble(Frame frame) {
+            return scalar.applyAsDouble(frame);
+        }
+
+        @Override
+        public void applyToBlock(Block block, int length) {
+            block.reserve(depth + locals);
+            long[][] longs = block.stackLongs;
+            double[][] doubles = block.stackDoubles;
+            Kernels k = kernels;
+
+            int top = -1;
+            for (int pc = 0; pc < code.length; pc++) {
+                switch (code[pc]) {
+                    case LCONST:    Arrays.fill(longs[++top], 0, length, longConstants[operands[pc]]); break;
+                    case DCONST:    Arrays.fill(doubles[++top], 0, length, doubleConstants[operands[pc]]); break;
+                    case LLOAD:     System.arraycopy(block.longs, 0, longs[++top], 0, length); break;
+                    case DLOAD:     System.arraycopy(block.doubles, 0, doubles[++top], 0, length); break;
+                    case L2D:       l2d(longs[top], doubles[top], length); break;
+                    case D2L:       d2l(doubles[top], longs[top], length); break;
+                    case LADD:      top--; k.add(longs[top], longs[top + 1], length); break;
+                    case LSUB:      top--; k.sub(longs[top], longs[top + 1], length); break;
+                    case LMUL:      top--; k.mul(longs[top], longs[top + 1], length); break;
+                    case DADD:      top--; k.add(doubles[top], doubles[top + 1], length); break;
+                    case DSUB:      top--; k.sub(doubles[top], doubles[top + 1], length); break;
+                    case DMUL:      top--; k.mul(doubles[top], doubles[top + 1], length); break;
+                    case DDIV:      top--; k.div(doubles[top], doubles[top + 1], length); break;
+                    case DPOW:      top--; pow(doubles[top], doubles[top + 1], length); break;
+                    case LPARITY:   parity(longs[top], length); break;
+                    case DPARITY:   parity(doubles[top], length); break;
+                    case LADDC:     k.add(longs[top], longConstants[operands[pc]], length); break;
+                    case LSUBC:     k.sub(longs[top], longConstants[operands[pc]], length); break;
+                    case LRSUBC:    k.reverseSub(longs[top], longConstants[operands[pc]], length); break;
+                    case LMULC:     k.mul(longs[top], longConstants[operands[pc]], length); break;
+                    case DADDC:     k.add(doubles[top], doubleConstants[operands[pc]], length); break;
+                    case DSUBC:     k.sub(doubles[top], doubleConstants[operands[pc]], length); break;
+                    case DRSUBC:    k.reverseSub(doubles[top], doubleConstants[operands[pc]], length); break;
+                    case DMULC:     k.mul(doubles[top], doubleConstants[operands[pc]], length); break;
+                    case DDIVC:     k.div(doubles[top], doubleConstants[operands[pc]], length); break;
+                    case DRDIVC:    k.reverseDiv(doubles[top], doubleConstants[operands[pc]], length); break;
+                    case LTEE:      System.arraycopy(longs[top], 0, longs[depth + operands[pc]], 0, length); break;
+                    case DTEE:      System.arraycopy(doubles[top], 0, doubles[depth + operands[pc]], 0, length); break;
+                    case LLOCAL:    System.arraycopy(longs[depth + operands[pc]], 0, longs[++top], 0, length); break;
+                    case DLOCAL:    System.arraycopy(doubles[depth + operands[pc]], 0, doubles[++top], 0, length); break;
+                }
+            }
+
+            if (getType() == NodeType.DOUBLE)
+                System.arraycopy(doubles[0], 0, block.doubles, 0, length);
+            else
+                System.arraycopy(longs[0], 0, block.longs, 0, length);
+        }
+    }
+
+
+    /*
+     * Column operations without kernels, the result is stored in the first column
+     */
+
+    private static void l2d(long[] a, double[] r, int length) {
+        for (int i = 0; i < length; i++)
+            r[i] = a[i];
+    }
+
+    private static void d2l(double[] a, long[] r, int length) {
+        for (int i = 0; i < length; i++)
+            r[i] = Math.round(a[i]);
+    }
+
+    private static void pow(double[] a, double[] b, int length) {
+        for (int i = 0; i < length; i++)
+            a[i] = Math.pow(a[i], b[i]);
+    }
+
+    private static void parity(long[] a, int length) {
+        for (int i = 0; i < length; i++)
+            a[i] = Expression.parity(a[i]);
+    }
+
+    private static void parity(double[] a, int length) {
+        for (int i = 0; i < length; i++)
+            a[i] = Math.pow(-1, a[i]);
+    }
+
+
+    /**
+     * Collects instructions of a function
+     */
+    private static class Builder {
+        private final List<Integer> code = new ArrayList<>();
+        private final List<Integer> operands = new ArrayList<>();
+        private final List<Long> longConstants = new ArrayList<>();
+        private final List<Double> doubleConstants = new ArrayList<>();
+
+        /**
+         * Locals which are already evaluated by emitted instructions
+         */
+        private final BitSet locals = new BitSet();
+
+        private int depth;
+        private int maxDepth;
+
+        private Builder op(int opcode, int operand, int delta) {
+            code.add(opcode);
+            operands.add(operand);
+            depth += delta;
+            maxDepth = Math.max(maxDepth, depth);
+            return this;
+        }
+
+        private Builder op(int opcode, int delta) {
+            return op(opcode, 0, delta);
+        }
+
+        private Builder constant(long value) {
+            longConstants.add(value);
+            return op(LCONST, longConstants.size() - 1, 1);
+        }
+
+        private Builder constant(double value) {
+            doubleConstants.add(value);
+            return op(DCONST, doubleConstants.size() - 1, 1);
+        }
+
+        /**
+         * Operation of the column on the top of the stack and the constant
+         */
+        private Builder withConstant(int opcode, Expression constant, boolean isDouble) {
+            if (isDouble) {
+                doubleConstants.add(constant.getDoubleValue());
+                return op(opcode, doubleConstants.size() - 1, 0);
+            }
+
+            longConstants.add(constant.getLongValue());
+            return op(opcode, longConstants.size() - 1, 0);
+        }
+
+        private VectorFunction build(Kernels kernels, LambdaFunction scalar) {
+            return new VectorFunction(
+                    kernels,
+                    scalar,
+                    code.stream().mapToInt(Integer::intValue).toArray(),
+                    operands.stream().mapToInt(Integer::intValue).toArray(),
+                    longConstants.stream().mapToLong(Long::longValue).toArray(),
+                    doubleConstants.stream().mapToDouble(Double::doubleValue).toArray(),
+                    maxDepth,
+                    locals.length());
+        }
+    }
+
+
+    private final StackEngine stack = new StackEngine();
+    private final Kernels kernels;
+
+    public VectorEngine() {
+        this(Kernels.load());
+    }
+
+    public VectorEngine(Kernels kernels) {
+        this.kernels = kernels;
+    }
+
+    /**
+     * @return function which evaluates blocks if the lambda has one parameter, otherwise function of the stack engine
+     */
+    @Override
+    public LambdaFunction compile(LambdaNode lambda, NodeType... params) {
+        LambdaFunction scalar = stack.compile(lambda, params);
+        if (scalar == null || params.length != 1)
+            return scalar;
+
+        Expression expression = Expression.of(lambda, params);
+        Builder builder = new Builder();
+        emit(builder, expression, expression.getType());
+        return builder.build(kernels, scalar);
+    }
+
+    /**
+     * Emits instructions which leave column of the expression on the stack
+     *
+     * @param type type of the column, expression result is widened to double if needed
+     */
+    private void emit(Builder b, Expression e, NodeType type) {
+        if (e.isConstant()) {
+            if (type == NodeType.DOUBLE)
+                b.constant(e.getDoubleValue());
+            else
+                b.constant(e.getLongValue());
+            return;
+        }
+
+        boolean isDouble = e.getType() == NodeType.DOUBLE;
+        if (e.isParam()) {
+            b.op(isDouble ? DLOAD : LLOAD, e.getParam(), 1);
+        } else if (e.isLocal()) {
+            emitLocal(b, e);
+        } else if (e.getOp() == NodeType.PARITY) {
+            emit(b, e.getLeft(), e.getType());
+            b.op(isDouble ? DPARITY : LPARITY, 0);
+        } else if (e.getOp() == NodeType.POWER) {
+            emit(b, e.getLeft(), NodeType.DOUBLE);
+            emit(b, e.getRight(), NodeType.DOUBLE);
+            b.op(DPOW, -1);
+            if (!isDouble)
+                b.op(D2L, 0);
+        } else if (e.getRight().isConstant()) {
+            emit(b, e.getLeft(), e.getType());
+            b.withConstant(constantOpcodeOf(e.getOp(), isDouble, false), e.getRight(), isDouble);
+        } else if (e.getLeft().isConstant()) {
+            emit(b, e.getRight(), e.getType());
+            b.withConstant(constantOpcodeOf(e.getOp(), isDouble, true), e.getLeft(), isDouble);
+        } else {
+            emit(b, e.getLeft(), e.getType());
+            emit(b, e.getRight(), e.getType());
+            b.op(opcodeOf(e.getOp(), isDouble), -1);
+        }
+
+        if (!isDouble && type == NodeType.DOUBLE)
+            b.op(L2D, 0);
+    }
+
+    /**
+     * The first use evaluates the column of the local and keeps a copy, other uses load the copy
+     */
+    private void emitLocal(Builder b, Expression e) {
+        boolean isDouble = e.getType() == NodeType.DOUBLE;
+        if (b.locals.get(e.getParam())) {
+            b.op(isDouble ? DLOCAL : LLOCAL, e.getParam(), 1);
+            return;
+        }
+
+        emit(b, e.getLeft(), e.getType());
+        b.op(isDouble ? DTEE : LTEE, e.getParam(), 0);
+        b.locals.set(e.getParam());
+    }
+
+    private int opcodeOf(NodeType op, boolean isDouble) {
+        switch (op) {
+            case ADD:   return isDouble ? DADD : LADD;
+            case SUB:   return isDouble ? DSUB : LSUB;
+            case MUL:   return isDouble ? DMUL : LMUL;
+            case DIV:   return DDIV;
+        }
+
+        throw new IllegalArgumentException("Unexpected operator: " + op);
+    }
+
+    /**
+     * @param reversed constant is the left operand
+     */
+    private int constantOpcodeOf(NodeType op, boolean isDouble, boolean reversed) {
+        switch (op) {
+            case ADD:   return isDouble ? DADDC : LADDC;
+            case SUB:   return isDouble ? (reversed ? DRSUBC : DSUBC) : (reversed ? LRSUBC : LSUBC);
+            case MUL:   return isDouble ? DMULC : LMULC;
+            case DIV:   return reversed ? DRDIVC : DDIVC;
+        }
+
+        throw new IllegalArgumentException("Unexpected operator: " + op);
+    }
+}
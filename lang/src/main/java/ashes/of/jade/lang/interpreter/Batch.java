@@ -0,0 +1,14 @@
+package ashes.of.jade.lang.interpreter;
+
+
+/**
+ * Range of elements processed by one task
+ */
+interface Batch {
+
+    /**
+     * @param start first element index, inclusive
+     * @param end last element index, exclusive
+     */
+    void run(int start, int end);
+}
@@ -0,0 +1,113 @@
+package ashes.of.jade.lang.interpreter;
+
+import ashes.of.jade.lang.lexer.Lexer;
+import ashes.of.jade.lang.parser.Parser;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.function.Consumer;
+
+
+/**
+ * Measures the machine with probe programs and derives parallelism settings.
+ * Cost of an element is measured on sequential map and reduce, cost of parallelism on a map
+ * of a few elements split into tasks. Sequence goes parallel when its sequential work is
+ * several times larger than the cost of parallelism, and a task carries at least as much work
+ */
+public class Calibration {
+    private static final Logger log = LogManager.getLogger(Calibration.class);
+
+    private static final int RUNS = 5;
+
+    private static final int LARGE_SIZE = 1 << 20;
+    private static final int HEAVY_SIZE = 1 << 16;
+    private static final int SMALL_SIZE = 64;
+
+    /**
+     * Sequential work of a parallel sequence or task in units of the cost of parallelism
+     */
+    private static final int BREAK_EVEN_FACTOR = 4;
+
+    private static final int MIN_SIZE = 256;
+    private static final int MAX_SIZE = 1 << 24;
+
+    private static final String CHEAP_MAP = "var s = map({1, %d}, x -> x * 2 + 1)";
+    private static final String HEAVY_MAP = "var s = map({1, %d}, x -> (x * 3 + 1) ^ 2 / (x + 1) - x * x / 7 + (x - 1) ^ 3 / (x * x + 1))";
+    /**
+     * Sum of doubles has no closed form, otherwise the probe wouldn't visit elements.
+     * Elements and the reduce lambda have the same type, so the reduce is compiled as ordinary ones
+     */
+    static final String REDUCE = "var r = reduce(map({1, %d}, x -> x / 3), 0.0, a b -> a + b)";
+
+    private final ExecutionPool pool;
+
+    public Calibration(ExecutionPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Runs probes and updates parallelism settings, takes up to a few seconds
+     *
+     * @param settings settings to update, engine of the settings is used by probes
+     */
+    public void calibrate(Settings settings) {
+        Settings sequential = probeSettings(settings, s -> {
+            s.setMapParallelismSize(Integer.MAX_VALUE);
+            s.setReduceParallelismSize(Integer.MAX_VALUE);
+        });
+
+        Settings parallel = probeSettings(settings, s -> {
+            s.setMapParallelismSize(1);
+            s.setMapTaskSize(1);
+        });
+
+        double cheap = measure(sequential, String.format(CHEAP_MAP, LARGE_SIZE)) / LARGE_SIZE;
+        double heavy = measure(sequential, String.format(HEAVY_MAP, HEAVY_SIZE)) / HEAVY_SIZE;
+        double reduce = measure(sequential, String.format(REDUCE, LARGE_SIZE)) / LARGE_SIZE;
+
+        String small = String.format(CHEAP_MAP, SMALL_SIZE);
+        double overhead = Math.max(1.0, measure(parallel, small) - measure(sequential, small));
+
+        log.info("calibration: cheap map {}ns, heavy map {}ns, reduce {}ns per element, parallel map overhead {}ns",
+                cheap, heavy, reduce, overhead);
+
+        settings.setMapParallelismSize(sizeOf(overhead * BREAK_EVEN_FACTOR, cheap));
+        settings.setReduceParallelismSize(sizeOf(overhead * BREAK_EVEN_FACTOR, reduce));
+        settings.setMapTaskSize(sizeOf(overhead * BREAK_EVEN_FACTOR, heavy));
+
+        log.info("calibrated: mapParallelismSize={} reduceParallelismSize={} mapTaskSize={}",
+                settings.getMapParallelismSize(), settings.getReduceParallelismSize(), settings.getMapTaskSize());
+    }
+
+    private Settings probeSettings(Settings settings, Consumer<Settings> setup) {
+        Settings probe = new Settings();
+        probe.setEngine(settings.getEngine());
+        setup.accept(probe);
+        return probe;
+    }
+
+    /**
+     * @return best time of the program in nanoseconds, the first run warms up the interpreter
+     */
+    private double measure(Settings settings, String source) {
+        Interpreter interpreter = new Interpreter(pool, settings, new Lexer(), new Parser());
+        interpreter.eval(source);
+
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            interpreter.eval(source);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+
+        return best;
+    }
+
+    /**
+     * @return number of elements with work of the elements cost
+     */
+    private int sizeOf(double work, double cost) {
+        long size = (long) Math.ceil(work / Math.max(cost, 0.1));
+        return (int) Math.max(MIN_SIZE, Math.min(MAX_SIZE, size));
+    }
+}
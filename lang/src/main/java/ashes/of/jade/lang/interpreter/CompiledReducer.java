@@ -0,0 +1,113 @@
+package ashes.of.jade.lang.interpreter;
+
+import ashes.of.jade.lang.engine.Frame;
+import ashes.of.jade.lang.engine.LambdaFunction;
+import ashes.of.jade.lang.engine.Pipeline;
+import ashes.of.jade.lang.engine.pattern.AssociativeFunction;
+import ashes.of.jade.lang.nodes.DoubleNode;
+import ashes.of.jade.lang.nodes.DoubleSequenceNode;
+import ashes.of.jade.lang.nodes.IntNode;
+import ashes.of.jade.lang.nodes.LongSequenceNode;
+import ashes.of.jade.lang.nodes.MutableSequenceNode;
+import ashes.of.jade.lang.nodes.Node;
+import ashes.of.jade.lang.nodes.NodeType;
+import ashes.of.jade.lang.nodes.SequenceNode;
+
+
+/**
+ * Maps and reduces elements with compiled lambdas, the reduce lambda
+ * takes and returns values of pipeline result type. Sums and products
+ * are folded by loops of the matched kernel
+ */
+class CompiledReducer implements Reducer {
+
+    private final Pipeline pipeline;
+    private final LambdaFunction f;
+
+    CompiledReducer(Pipeline pipeline, LambdaFunction f) {
+        this.pipeline = pipeline;
+        this.f = f;
+    }
+
+    @Override
+    public Node reduce(int left, int right) {
+        Frame frame = new Frame();
+        if (f instanceof AssociativeFunction) {
+            AssociativeFunction kernel = (AssociativeFunction) f;
+            return pipeline.getType() == NodeType.DOUBLE ?
+                    new DoubleNode(kernel.reduceDoubles(pipeline, left, right, frame)) :
+                    new IntNode(kernel.reduceLongs(pipeline, left, right, frame));
+        }
+
+        if (pipeline.getType() == NodeType.DOUBLE) {
+            double acc = pipeline.applyAsDouble(left, frame);
+            for (int i = left + 1; i < right; i++) {
+                double element = pipeline.applyAsDouble(i, frame);
+                frame.doubles[0] = acc;
+                frame.doubles[1] = element;
+                acc = f.applyAsDouble(frame);
+            }
+
+            return new DoubleNode(acc);
+        }
+
+        long acc = pipeline.applyAsLong(left, frame);
+        for (int i = left + 1; i < right; i++) {
+            long element = pipeline.applyAsLong(i, frame);
+            frame.longs[0] = acc;
+            frame.longs[1] = element;
+            acc = f.applyAsLong(frame);
+        }
+
+        return new IntNode(acc);
+    }
+
+    /**
+     * @return type of elements and results
+     */
+    NodeType getType() {
+        return pipeline.getType();
+    }
+
+    @Override
+    public Node combine(Node a, Node b) {
+        Frame frame = new Frame();
+        frame.longs[0] = a.toInteger();
+        frame.longs[1] = b.toInteger();
+        frame.doubles[0] = a.toDouble();
+        frame.doubles[1] = b.toDouble();
+
+        return f.getType() == NodeType.DOUBLE ?
+                new DoubleNode(f.applyAsDouble(frame)) :
+                new IntNode(f.applyAsLong(frame));
+    }
+
+    @Override
+    public void scan(int left, int right, Node acc, MutableSequenceNode scanned) {
+        Frame frame = new Frame();
+
+        if (pipeline.getType() == NodeType.DOUBLE) {
+            double[] values = ((DoubleSequenceNode) scanned).getValues();
+            double result = acc.toDouble();
+            for (int i = left; i < right; i++) {
+                double element = pipeline.applyAsDouble(i, frame);
+                frame.doubles[0] = result;
+                frame.doubles[1] = element;
+                result = f.applyAsDouble(frame);
+                values[i] = result;
+            }
+
+            return;
+        }
+
+        long[] values = ((LongSequenceNode) scanned).getValues();
+        long result = acc.toInteger();
+        for (int i = left; i < right; i++) {
+            long element = pipeline.applyAsLong(i, frame);
+            frame.longs[0] = result;
+            frame.longs[1] = element;
+            result = f.applyAsLong(frame);
+            values[i] = result;
+        }
+    }
+}
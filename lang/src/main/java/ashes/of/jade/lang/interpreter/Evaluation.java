@@ -0,0 +1,123 @@
+package ashes.of.jade.lang.interpreter;
+
+import ashes.of.jade.lang.Location;
+
+import java.io.PrintStream;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Handle of a running evaluation.
+ * Cancellation is cooperative: map and reduce tasks check the handle between chunks of elements
+ * and abort with {@link EvaluationCancelledException}, so the pool is freed without waiting for the whole sequence.
+ * The same checks enforce time and element limits of the evaluation
+ */
+public class Evaluation {
+
+    private final PrintStream out;
+
+    private volatile boolean cancelled;
+    private volatile ForkJoinTask<Scope> task;
+
+    /**
+     * Time limit in milliseconds, zero if evaluation isn't limited
+     */
+    private long timeLimit;
+
+    /**
+     * Value of {@link System#nanoTime()} after which evaluation fails
+     */
+    private long deadline = Long.MAX_VALUE;
+
+    private long maxElements = Long.MAX_VALUE;
+    private final AtomicLong elements = new AtomicLong();
+
+    public Evaluation() {
+        this(null);
+    }
+
+    /**
+     * @param out output of out and print of this evaluation, output of settings is used if null
+     */
+    public Evaluation(PrintStream out) {
+        this.out = out;
+    }
+
+    public PrintStream getOut() {
+        return out;
+    }
+
+    void setTask(ForkJoinTask<Scope> task) {
+        this.task = task;
+    }
+
+    /**
+     * Starts limits of the evaluation, called before the program is evaluated
+     */
+    void start(Settings settings) {
+        timeLimit = settings.getTimeLimit();
+        deadline = timeLimit > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeLimit) : Long.MAX_VALUE;
+        maxElements = settings.getMaxElements();
+        elements.set(0);
+    }
+
+    /**
+     * Waits for the evaluation submitted to the interpreter pool
+     *
+     * @return scope of the evaluated program
+     * @throws EvaluationCancelledException if the evaluation is cancelled
+     */
+    public Scope join() {
+        if (task == null)
+            throw new IllegalStateException("Evaluation isn't submitted");
+
+        return task.join();
+    }
+
+    /**
+     * Requests all tasks of the evaluation to stop
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @param location location of the operation which checks evaluation
+     * @throws EvaluationCancelledException if the evaluation is cancelled
+     * @throws EvalException if the time limit is exceeded
+     */
+    public void check(Location location) {
+        if (cancelled)
+            throw new EvaluationCancelledException();
+
+        if (System.nanoTime() > deadline)
+            throw new EvalException(location, "Time limit of %d ms is exceeded", timeLimit);
+    }
+
+    /**
+     * Counts elements processed by map or reduce before they are processed
+     *
+     * @param location location of map or reduce
+     * @param count number of elements
+     * @throws EvalException if the evaluation processes more elements than allowed
+     */
+    public void process(Location location, long count) {
+        check(location);
+
+        if (elements.addAndGet(count) > maxElements)
+            throw new EvalException(location, "Limit of %d processed elements is exceeded", maxElements);
+    }
+
+    /**
+     * @return number of elements processed by map and reduce
+     */
+    public long getElements() {
+        return elements.get();
+    }
+}
@@ -0,0 +1,12 @@
+package ashes.of.jade.lang.interpreter;
+
+
+/**
+ * Evaluation is stopped by {@link Evaluation#cancel()}, it isn't an error of the program
+ */
+public class EvaluationCancelledException extends RuntimeException {
+
+    public EvaluationCancelledException() {
+        super("Evaluation is cancelled");
+    }
+}
@@ -0,0 +1,146 @@
+package ashes.of.jade.lang.interpreter;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Named fork-join pool with its own workers and statistics.
+ * Editor, interpreter and background jobs run in separate pools, so a long map
+ * never delays highlighting and calibration never competes with evaluation
+ */
+public class ExecutionPool {
+    private static final Logger log = LogManager.getLogger(ExecutionPool.class);
+
+    private final String name;
+    private final ForkJoinPool pool;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder busyNanos = new LongAdder();
+
+    /**
+     * Creates pool with workers named after the pool
+     *
+     * @param name name of the pool and prefix of worker names
+     * @param parallelism number of workers
+     */
+    public ExecutionPool(String name, int parallelism) {
+        this(name, new ForkJoinPool(parallelism, workerFactory(name), null, false));
+    }
+
+    /**
+     * Wraps existing pool, the pool isn't shut down by this wrapper
+     */
+    public ExecutionPool(String name, ForkJoinPool pool) {
+        this.name = name;
+        this.pool = pool;
+    }
+
+    /**
+     * @return wrapper of the common pool for tools and tests which don't manage pools
+     */
+    public static ExecutionPool common() {
+        return new ExecutionPool("common", ForkJoinPool.commonPool());
+    }
+
+    private static ForkJoinPool.ForkJoinWorkerThreadFactory workerFactory(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return pool -> {
+            ForkJoinWorkerThread worker = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            worker.setName(name + "-" + counter.incrementAndGet());
+            return worker;
+        };
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * @return true if the current thread is a worker of this pool
+     */
+    public boolean isWorker() {
+        return ForkJoinTask.getPool() == pool;
+    }
+
+    /**
+     * Runs job in the pool
+     *
+     * @return task to wait for the result
+     */
+    public <T> ForkJoinTask<T> submit(Callable<T> job) {
+        submitted.increment();
+        return pool.submit(() -> measure(job));
+    }
+
+    /**
+     * Runs job in the pool, result is ignored
+     */
+    public ForkJoinTask<?> submit(Runnable job) {
+        return submit(() -> {
+            job.run();
+            return null;
+        });
+    }
+
+    /**
+     * Runs task and waits for the result. Inside a worker of the pool the task is evaluated
+     * by the worker itself instead of waiting for it, so nested tasks never block workers
+     */
+    public <T> T invoke(ForkJoinTask<T> task) {
+        if (isWorker())
+            return task.invoke();
+
+        submitted.increment();
+        return measure(() -> pool.invoke(task));
+    }
+
+    private <T> T measure(Callable<T> job) throws RuntimeException {
+        long start = System.nanoTime();
+        try {
+            T result = job.call();
+            completed.increment();
+            return result;
+        } catch (RuntimeException | Error e) {
+            failed.increment();
+            throw e;
+        } catch (Exception e) {
+            failed.increment();
+            throw new CompletionException(e);
+        } finally {
+            busyNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * @return current state of the pool
+     */
+    public PoolStatistics getStatistics() {
+        return new PoolStatistics(name, pool.getParallelism(), pool.getPoolSize(), pool.getActiveThreadCount(),
+                pool.getQueuedTaskCount(), pool.getQueuedSubmissionCount(), pool.getStealCount(),
+                submitted.sum(), completed.sum(), failed.sum(), busyNanos.sum());
+    }
+
+    /**
+     * Stops workers of the pool, running tasks are interrupted
+     */
+    public void shutdown() {
+        log.info("Shutdown pool {}: {}", name, getStatistics());
+        pool.shutdownNow();
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,41 @@
+package ashes.of.jade.lang.interpreter;
+
+
+/**
+ * Chooses size of parallel tasks from cost of elements measured on a prefix of the sequence,
+ * so every task carries about the same amount of work whatever the lambda is:
+ * cheap lambdas over large sequences get few large tasks, expensive lambdas over small sequences get many small ones
+ */
+class Granularity {
+
+    /**
+     * Number of elements evaluated sequentially to measure their cost
+     */
+    static final int SAMPLE_SIZE = 256;
+
+    /**
+     * Work of one task, large enough to hide the cost of scheduling it
+     */
+    private static final long TARGET_TASK_NANOS = 200_000;
+
+    private final int parallelism;
+
+    Granularity(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @param sampled number of elements in the sample
+     * @param nanos time spent on the sample
+     * @param remaining number of elements left after the sample
+     * @return number of elements per task, remaining elements are processed sequentially if it isn't less than remaining
+     */
+    int taskSize(int sampled, long nanos, int remaining) {
+        if (parallelism < 2 || remaining < 2)
+            return Math.max(1, remaining);
+
+        double cost = Math.max(1.0, (double) nanos / Math.max(1, sampled));
+        long size = (long) Math.ceil(TARGET_TASK_NANOS / cost);
+        return (int) Math.min(remaining, size);
+    }
+}
@@ -1,16 +1,32 @@
 package ashes.of.jade.lang.interpreter;
 
+import ashes.of.jade.lang.Location;
+import ashes.of.jade.lang.engine.*;
+import ashes.of.jade.lang.engine.bytecode.BytecodeEngine;
+import ashes.of.jade.lang.engine.pattern.ClosedForm;
+import ashes.of.jade.lang.engine.pattern.PatternEngine;
+import ashes.of.jade.lang.engine.stack.StackEngine;
+import ashes.of.jade.lang.engine.tree.TreeEngine;
+import ashes.of.jade.lang.engine.vector.VectorEngine;
 import ashes.of.jade.lang.lexer.Lexem;
 import ashes.of.jade.lang.lexer.Lexer;
 import ashes.of.jade.lang.nodes.*;
+import ashes.of.jade.lang.optimizer.Optimizer;
+import ashes.of.jade.lang.parser.ParseException;
 import ashes.of.jade.lang.parser.Parser;
+import ashes.of.jade.lang.program.Liveness;
+import ashes.of.jade.lang.program.Program;
+import ashes.of.jade.lang.program.ProgramCompiler;
+import ashes.of.jade.lang.validator.ValidationException;
+import ashes.of.jade.lang.validator.Validator;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.PrintStream;
 import java.util.*;
 import java.util.concurrent.*;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 
 
 /**
@@ -20,28 +36,102 @@ public class Interpreter {
     private static final Logger log = LogManager.getLogger(Interpreter.class);
 
 
-    private ForkJoinPool threadPool = ForkJoinPool.commonPool();
+    /**
+     * Number of elements mapped or printed between checks of cancellation
+     */
+    private static final int CHECK_INTERVAL = 4096;
+
+    /**
+     * Longest formatted element with separator, e.g. -1.2345678901234567E-300
+     */
+    private static final int OUT_ELEMENT_CHARS = 26;
+
+    private final ExecutionPool pool;
     private final Settings settings;
     private final Lexer lexer;
     private final Parser parser;
+    private final Optimizer optimizer;
+    private final Validator validator = new Validator();
+    private final ProgramCompiler compiler = new ProgramCompiler();
+    private final Liveness liveness = new Liveness();
+    private final Engine stack = new CachingEngine(new PatternEngine(new StackEngine()));
+    private final Engine tree = new CachingEngine(new PatternEngine(new TreeEngine()));
+    private final Engine bytecode = new CachingEngine(new PatternEngine(new BytecodeEngine()));
+    private final Engine vector = new CachingEngine(new PatternEngine(new VectorEngine()));
 
 
-    public Interpreter(ForkJoinPool pool, Settings settings, Lexer lexer, Parser parser) {
+    /**
+     * @param pool pool which evaluates submitted programs and runs tasks of map and reduce
+     */
+    public Interpreter(ExecutionPool pool, Settings settings, Lexer lexer, Parser parser, Optimizer optimizer) {
         this.settings = settings;
-        this.threadPool = pool;
+        this.pool = pool;
         this.lexer = lexer;
         this.parser = parser;
+        this.optimizer = optimizer;
+    }
+
+    public Interpreter(ExecutionPool pool, Settings settings, Lexer lexer, Parser parser) {
+        this(pool, settings, lexer, parser, new Optimizer());
     }
 
     public Settings getSettings() {
         return settings;
     }
 
+    public ExecutionPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Parses and validates the program, nothing is evaluated if the program has errors
+     *
+     * @throws ValidationException with all errors found in the program
+     */
     public Scope eval(String text) {
+        return eval(text, new Evaluation());
+    }
+
+    /**
+     * Evaluates the program in the thread pool of the interpreter
+     *
+     * @return handle to wait for the result or cancel the evaluation
+     */
+    public Evaluation submit(String text) {
+        return submit(text, new Evaluation());
+    }
+
+    /**
+     * Evaluates the program in the thread pool of the interpreter with the handle created by the caller
+     *
+     * @return the handle
+     */
+    public Evaluation submit(String text, Evaluation evaluation) {
+        evaluation.setTask(pool.submit(() -> eval(text, evaluation)));
+        return evaluation;
+    }
+
+    /**
+     * @param evaluation handle checked by map and reduce between chunks of elements
+     * @throws ValidationException with all errors found in the program
+     * @throws EvaluationCancelledException if the evaluation is cancelled
+     * @throws EvalException if the program exceeds any of limits set in settings
+     */
+    public Scope eval(String text, Evaluation evaluation) {
         log.info("eval source: {}", text);
+        evaluation.start(settings);
         List<Lexem> lexems = lexer.parse(text);
         Deque<Node> rpn = parser.parse(lexems);
-        return eval(rpn);
+
+        List<ParseException> errors = validator.validate(rpn);
+        if (!errors.isEmpty())
+            throw new ValidationException(errors);
+
+        Program program = compiler.compile(optimizer.optimize(rpn));
+        if (settings.isOutputsOnly())
+            program = liveness.apply(program);
+
+        return eval(new Scope(evaluation), program);
     }
 
     public Scope eval(Deque<Node> nodes) {
@@ -53,51 +143,65 @@ public class Interpreter {
     }
 
     public Scope eval(Scope scope, Deque<Node> nodes) {
+        return eval(scope, compiler.compile(nodes));
+    }
+
+    public Scope eval(Scope scope, Program program) {
         long start = System.currentTimeMillis();
-        log.info("eval {} nodes: {}", nodes.size(), nodes);
-        
-        log.trace("vars  <-- {}", scope.getVars());
-        log.trace("stack <-- {}", scope.getStack());
-
-        Iterator<Node> it = nodes.descendingIterator();
-        while (it.hasNext()) {
-            Node node = it.next();
-            if (node.is(NodeType.NL) || node.is(NodeType.EOF))
-                continue;
-
-            log.debug("eval: {}", node);
-            log.trace("vars  <-- {}", scope.getVars());
-            log.trace("stack <-- {}", scope.getStack());
-
-            switch (node.getType()) {
-                case ADD:
-                case SUB:
-                case MUL:
-                case DIV:
-                case POWER:         op(node, scope); break;
-
-                case INTEGER:
-                case DOUBLE:
-                case STRING:
-                case LAMBDA:        push(node, scope); break;
-
-                case STORE:         store(node, scope); break;
-                case LOAD:          load(node, scope); break;
-
-                case OUT:           out(node, scope); break;
-                case PRINT:         print(node, scope); break;
-                case MAP:           map(node, scope); break;
-                case REDUCE:        reduce(node, scope); break;
-                case NEWSEQUENCE:   sequence(node, scope); break;
+        log.info("eval {} instructions: {}", program.size(), program);
+        log.trace("scope <-- {}", scope);
+
+        int[] code = program.getCode();
+        for (int pc = 0; pc < code.length; pc += Program.INSTRUCTION_SIZE) {
+            int opcode = code[pc];
+            int operand = code[pc + 1];
+            Location location = program.getLocation(pc);
+
+            log.debug("eval: {}:{} {}", opcode, operand, location);
+            log.trace("scope <-- {}", scope);
+
+            switch (opcode) {
+                case Program.ADD:
+                case Program.SUB:
+                case Program.MUL:
+                case Program.DIV:
+                case Program.POWER:         op(opcode, location, scope); break;
+                case Program.PARITY:        parity(scope); break;
+
+                case Program.CONST:         push(program.getConstant(operand), scope); break;
+                case Program.STORE:         store(program, operand, location, scope); break;
+                case Program.LOAD:          load(program, operand, location, scope); break;
+                case Program.LOADLAST:      loadLast(program, operand, location, scope); break;
+
+                case Program.OUT:           out(location, scope); break;
+                case Program.PRINT:         print(location, scope); break;
+                case Program.MAP:           map(location, scope); break;
+                case Program.LAZYMAP:       lazyMap(location, scope); break;
+                case Program.REDUCE:        reduce(location, scope); break;
+                case Program.SCAN:          scan(location, scope); break;
+                case Program.NEWSEQUENCE:   sequence(location, scope); break;
             }
         }
 
         log.info("Eval ends after {}ms", System.currentTimeMillis() - start);
-        log.debug("vars  <-- {}", scope.getVars());
-        log.debug("stack <-- {}", scope.getStack());
+        log.debug("scope <-- {}", scope);
         return scope;
     }
 
+    /**
+     * Evaluates lambda with arguments on the stack in a scope with slots for its parameters
+     */
+    private Scope eval(Deque<Node> stack, Node lambda, Evaluation evaluation) {
+        LambdaNode node = (LambdaNode) lambda;
+        Program program = node.getProgram();
+        if (program == null) {
+            program = compiler.compile(node);
+            node.setProgram(program);
+        }
+
+        return eval(new Scope(node.getParams(), stack, evaluation), program);
+    }
+
     /**
      * Pushes node to stack
      *
@@ -109,200 +213,610 @@ public class Interpreter {
     }
 
     /**
-     * Creates sequence and pushes it to stack
+     * Creates lazy integer range and pushes it to stack
      *
-     * @param node create sequence node
+     * @param location location of sequence
      * @param scope current scope
      */
-    private void sequence(Node node, Scope scope) {
-        scope.checkStackSize(node.getLocation(), 2);
+    private void sequence(Location location, Scope scope) {
+        scope.checkStackSize(location, 2);
         Node r = scope.pop(Node::isInteger, "Expected Integer");
         Node l = scope.pop(Node::isInteger, "Expected Integer");
 
-        SequenceNode seq = new SequenceNode(node.getLocation(), l.toInteger(), r.toInteger());
-        scope.push(seq);
+        long start = l.toInteger();
+        long end = r.toInteger();
+        long size = RangeSequenceNode.sizeOf(start, end, 1);
+        if (size < 0)
+            throw new EvalException(location, "Sequence is too long: {%d, %d}", start, end);
+
+        if (size > Math.min(Integer.MAX_VALUE, settings.getMaxSequenceLength()))
+            throw new EvalException(location, "Sequence is too long: %d elements", size);
+
+        scope.push(new RangeSequenceNode(location, start, end));
     }
 
 
-    private void map(Node node, Scope scope) {
-        scope.checkStackSize(node.getLocation(), 2);
+    private void map(Location location, Scope scope) {
+        scope.checkStackSize(location, 2);
         Node lambda = scope.pop(Node::isLambda, "Expected Lambda");
         Node seq = scope.pop(Node::isSeq, "Expected Sequence");
 
-        Node mapped = map(seq.toSeq(), lambda);
+        Node mapped = map(seq.toSeq(), lambda, location, scope.getEvaluation());
         scope.push(mapped);
     }
 
-    private Node map(SequenceNode seq, Node lambda) {
+    /**
+     * Pushes lazy view of mapped sequence to stack, elements are mapped by consumer.
+     * Consecutive lazy maps are composed into one pipeline over the same source
+     *
+     * @param location location of map call
+     * @param scope current scope
+     */
+    private void lazyMap(Location location, Scope scope) {
+        scope.checkStackSize(location, 2);
+        Node lambda = scope.pop(Node::isLambda, "Expected Lambda");
+        Node seq = scope.pop(Node::isSeq, "Expected Sequence");
+
+        log.debug("call lazy map({}, {})", seq, lambda);
+        Evaluation evaluation = scope.getEvaluation();
+        UnaryOperator<Node> mapper = element -> apply(lambda, element, evaluation);
+        MappedSequenceNode mapped = seq instanceof MappedSequenceNode ?
+                ((MappedSequenceNode) seq).andThen(seq.getLocation(), lambda, mapper) :
+                new MappedSequenceNode(seq.getLocation(), seq.toSeq(), lambda, mapper);
+
+        scope.push(mapped);
+    }
+
+    private Node map(SequenceNode seq, Node lambda, Location location, Evaluation evaluation) {
         log.debug("call map({}, {})", seq, lambda);
 
-        long time = System.currentTimeMillis();
-        if (seq.size() < settings.getMapParallelismSize()) {
-            map(seq, lambda, 0, seq.size());
-            log.trace("map.elapsed all: {}", System.currentTimeMillis() - time);
+        if (seq.size() == 0)
             return seq;
+
+        long bytes = (long) seq.size() * Long.BYTES;
+        if (bytes > settings.getMaxSequenceBytes())
+            throw new EvalException(location, "Sequence is too large: %d bytes", bytes);
+
+        evaluation.process(location, seq.size());
+
+        long time = System.currentTimeMillis();
+        Pipeline pipeline = compile(seq, lambda);
+        if (pipeline != null) {
+            MutableSequenceNode mapped = createSequence(pipeline.getType(), seq.getLocation(), seq.size());
+            forEachBatch(0, seq.size(), location, evaluation, (start, end) -> map(pipeline, mapped, start, end));
+            log.trace("map.elapsed all: {} (compiled)", System.currentTimeMillis() - time);
+            return mapped;
+        }
+
+        MutableSequenceNode mapped = createMapped(seq, lambda, evaluation);
+        forEachBatch(1, seq.size(), location, evaluation, (start, end) -> map(seq, lambda, mapped, start, end, evaluation));
+        log.trace("map.elapsed all: {}", System.currentTimeMillis() - time);
+        return mapped;
+    }
+
+    /**
+     * Runs batch for elements from start to end, in parallel if there are enough elements.
+     * Evaluation is checked before every chunk of a batch, remaining tasks are cancelled if any of them fails
+     */
+    private void forEachBatch(int start, int end, Location location, Evaluation evaluation, Batch batch) {
+        int size = end - start;
+        if (settings.isAdaptiveParallelism()) {
+            forEachAdaptiveBatch(start, end, location, evaluation, batch);
+            return;
+        }
+
+        if (size < settings.getMapParallelismSize()) {
+            forEachChunk(start, end, location, evaluation, batch);
+            return;
         }
 
-        int threads = threadPool.getParallelism();
-        int batchSize = seq.size() / (threads * 4 + 1);
-        List<ForkJoinTask<?>> futures = new ArrayList<>();
-        for (int start = 0; start < seq.size(); start += batchSize)
-            futures.add(submitMap(seq, lambda, start, Math.min(seq.size(), start + batchSize)));
+        forEachBatch(start, end, settings.getMapTaskSize(), location, evaluation, batch);
+    }
 
-        futures.forEach(ForkJoinTask::join);
-        log.trace("map.elapsed all: {} (tasks: {})", System.currentTimeMillis() - time, futures.size());
-        return seq;
+    /**
+     * Measures cost of elements on a sample evaluated sequentially and runs
+     * the rest of elements in tasks with the same amount of work each
+     */
+    private void forEachAdaptiveBatch(int start, int end, Location location, Evaluation evaluation, Batch batch) {
+        int sampled = Math.min(end - start, Granularity.SAMPLE_SIZE);
+        long time = System.nanoTime();
+        forEachChunk(start, start + sampled, location, evaluation, batch);
+        long nanos = System.nanoTime() - time;
+
+        int remaining = end - start - sampled;
+        int batchSize = new Granularity(pool.getParallelism()).taskSize(sampled, nanos, remaining);
+        log.trace("map sample: {} elements in {}ns, batch size: {}", sampled, nanos, batchSize);
+
+        if (batchSize >= remaining) {
+            forEachChunk(start + sampled, end, location, evaluation, batch);
+            return;
+        }
+
+        forEachBatch(start + sampled, end, batchSize, location, evaluation, batch);
     }
 
-    private ForkJoinTask<?> submitMap(SequenceNode seq, Node lambda, int start, int end) {
-        return threadPool.submit(() -> map(seq, lambda, start, end));
+    /**
+     * Runs batch in parallel, the range is split while workers of the pool are short of tasks
+     *
+     * @param minSize min number of elements in one task
+     */
+    private void forEachBatch(int start, int end, int minSize, Location location, Evaluation evaluation, Batch batch) {
+        invoke(new MapRecursiveAction(minSize, start, end, (from, to) -> forEachChunk(from, to, location, evaluation, batch)));
+    }
+
+    /**
+     * Runs task in the pool, nested maps and reduces are evaluated by the worker itself
+     */
+    private <T> T invoke(ForkJoinTask<T> task) {
+        return pool.invoke(task);
     }
 
-    private void map(SequenceNode seq, Node lambda, int start, int end) {
+    private void forEachChunk(int start, int end, Location location, Evaluation evaluation, Batch batch) {
+        for (int i = start; i < end; i += CHECK_INTERVAL) {
+            evaluation.check(location);
+            batch.run(i, Math.min(end, i + CHECK_INTERVAL));
+        }
+    }
+
+    private MutableSequenceNode createSequence(NodeType type, Location location, int size) {
+        return type == NodeType.DOUBLE ?
+                new DoubleSequenceNode(location, new double[size]) :
+                new LongSequenceNode(location, new long[size]);
+    }
+
+    /**
+     * Maps the first element and creates the result sequence with storage
+     * for the element type returned by lambda
+     *
+     * @param seq source sequence
+     * @param lambda map lambda
+     * @return result sequence with the first element set
+     */
+    private MutableSequenceNode createMapped(SequenceNode seq, Node lambda, Evaluation evaluation) {
+        Node first = apply(lambda, seq.get(0), evaluation);
+
+        MutableSequenceNode mapped = createSequence(first.getType(), seq.getLocation(), seq.size());
+        mapped.set(0, first);
+        return mapped;
+    }
+
+    private Node apply(Node lambda, Node element, Evaluation evaluation) {
+        Deque<Node> stack = new ArrayDeque<>();
+        stack.push(element);
+        Scope scope = eval(stack, lambda, evaluation);
+        return scope.pop(Node::isNumber, "Expected number");
+    }
+
+    private void map(SequenceNode seq, Node lambda, MutableSequenceNode mapped, int start, int end, Evaluation evaluation) {
         long time = System.currentTimeMillis();
+        Predicate<Node> isElement = mapped.isDoubleSeq() ? Node::isNumber : Node::isInteger;
         Deque<Node> stack = new ArrayDeque<>();
         for (int i = start; i < end; i++) {
-            stack.push(seq.seq[i]);
-            Scope scope = eval(stack, lambda.getNodes());
-            Node result = scope.pop(Node::isNumber, "Expected number");
-            seq.seq[i] = result;
+            stack.push(seq.get(i));
+            Scope scope = eval(stack, lambda, evaluation);
+            Node result = scope.pop(isElement, "Expected %s", mapped.getElementType());
+            mapped.set(i, result);
         }
 
         log.trace("map.elapsed task: {}", System.currentTimeMillis() - time);
     }
 
+    private void map(Pipeline pipeline, MutableSequenceNode mapped, int start, int end) {
+        if (settings.getEngine() == EngineType.VECTOR) {
+            mapBlocks(pipeline, mapped, start, end);
+            return;
+        }
+
+        long time = System.currentTimeMillis();
+        Frame frame = new Frame();
+
+        if (mapped.isDoubleSeq()) {
+            double[] values = ((DoubleSequenceNode) mapped).getValues();
+            for (int i = start; i < end; i++)
+                values[i] = pipeline.applyAsDouble(i, frame);
+        } else {
+            long[] values = ((LongSequenceNode) mapped).getValues();
+            for (int i = start; i < end; i++)
+                values[i] = pipeline.applyAsLong(i, frame);
+        }
+
+        log.trace("map.elapsed task: {} (compiled)", System.currentTimeMillis() - time);
+    }
+
+
+    /**
+     * Maps elements a block at a time, every operation of lambdas is applied to the whole block
+     */
+    private void mapBlocks(Pipeline pipeline, MutableSequenceNode mapped, int start, int end) {
+        long time = System.currentTimeMillis();
+        Block block = new Block();
+        boolean isDouble = mapped.isDoubleSeq();
+
+        for (int i = start; i < end; i += Block.SIZE) {
+            int length = Math.min(Block.SIZE, end - i);
+            pipeline.apply(i, i + length, block);
+
+            if (isDouble)
+                System.arraycopy(block.doubles, 0, ((DoubleSequenceNode) mapped).getValues(), i, length);
+            else
+                System.arraycopy(block.longs, 0, ((LongSequenceNode) mapped).getValues(), i, length);
+        }
+
+        log.trace("map.elapsed task: {} (blocks)", System.currentTimeMillis() - time);
+    }
+
+
+    /**
+     * Compiles lambdas which produce elements of the sequence
+     *
+     * @param seq sequence, lambdas of lazily mapped sequence are compiled too
+     * @param lambdas lambdas applied to elements of the sequence
+     * @return pipeline or null if any of lambdas can't be compiled
+     */
+    private Pipeline compile(SequenceNode seq, Node... lambdas) {
+        List<Node> pipeline = new ArrayList<>();
+        SequenceNode source = seq;
+        if (seq instanceof MappedSequenceNode) {
+            source = ((MappedSequenceNode) seq).getSource();
+            pipeline.addAll(((MappedSequenceNode) seq).getLambdas());
+        }
+
+        pipeline.addAll(Arrays.asList(lambdas));
+        return Pipeline.compile(engine(), source, pipeline);
+    }
+
+    /**
+     * @return engine selected in settings
+     */
+    private Engine engine() {
+        switch (settings.getEngine()) {
+            case TREE:      return tree;
+            case BYTECODE:  return bytecode;
+            case VECTOR:    return vector;
+            default:        return stack;
+        }
+    }
+
 
-    private void reduce(Node node, Scope scope) {
-        scope.checkStackSize(node.getLocation(), 3);
+    private void reduce(Location location, Scope scope) {
+        scope.checkStackSize(location, 3);
         Node lambda = scope.pop(Node::isLambda, "Expected Lambda");
         Node acc = scope.pop(Node::isNumber, "Expected Number");
         Node seq = scope.pop(Node::isSeq, "Expected Sequence");
 
-        Node reduced = reduce(seq.toSeq(), acc, lambda);
+        Node reduced = reduce(seq.toSeq(), acc, lambda, location, scope.getEvaluation());
 
         scope.push(reduced);
     }
 
-    private Node reduce(SequenceNode seq, Node acc, Node lambda) {
+    private Node reduce(SequenceNode seq, Node acc, Node lambda, Location location, Evaluation evaluation) {
         log.debug("call reduce({}, {}, {})", seq, acc, lambda);
 
+        if (seq.size() == 0)
+            return acc;
+
+        evaluation.process(location, seq.size());
+
         long start = System.currentTimeMillis();
-        ReduceFunction reduce = (a, b) -> {
+        ReduceFunction reduce = reduceFunction(lambda, evaluation);
+        IntNode closed = ClosedForm.reduce(seq, acc, lambda);
+        if (closed != null) {
+            log.debug("reduce {} in closed form: {}", seq, closed);
+            return reduce.reduce(acc, closed);
+        }
+
+        Reducer reducer = reducer(seq, lambda, reduce);
+        Node reduced = reduce.reduce(acc, settings.isAdaptiveParallelism() ?
+                reduceAdaptive(seq.size(), reducer, location, evaluation) :
+                reduce(0, seq.size(), settings.getReduceParallelismSize(), reducer, location, evaluation));
+
+        log.trace("reduce.elapsed {} (getReduceParallelismSize = {})",
+                System.currentTimeMillis() - start, settings.getReduceParallelismSize());
+        return reduced;
+    }
+
+    private Node reduce(int left, int right, int minParallelSize, Reducer reducer, Location location, Evaluation evaluation) {
+        return invoke(new ReduceRecursiveTask(minParallelSize, left, right, reducer, location, evaluation));
+    }
+
+    private ReduceFunction reduceFunction(Node lambda, Evaluation evaluation) {
+        return (a, b) -> {
             Deque<Node> stack = new ArrayDeque<>();
             stack.push(a);
             stack.push(b);
-            eval(stack, lambda.getNodes());
+            eval(stack, lambda, evaluation);
 
             return stack.pop();
         };
+    }
 
-        ForkJoinTask<Node> task = threadPool
-                .submit(new ReduceRecursiveTask(settings.getReduceParallelismSize(), seq.seq, 0, seq.seq.length, reduce));
+    /**
+     * Measures cost of elements on a prefix reduced sequentially and reduces
+     * the rest of elements in tasks with the same amount of work each
+     */
+    private Node reduceAdaptive(int size, Reducer reducer, Location location, Evaluation evaluation) {
+        int sampled = Math.min(size, Granularity.SAMPLE_SIZE);
+        long time = System.nanoTime();
+        Node prefix = reducer.reduce(0, sampled);
+        long nanos = System.nanoTime() - time;
+        if (sampled == size)
+            return prefix;
+
+        int leafSize = new Granularity(pool.getParallelism()).taskSize(sampled, nanos, size - sampled);
+        log.trace("reduce sample: {} elements in {}ns, leaf size: {}", sampled, nanos, leafSize);
+
+        return reducer.combine(prefix, reduce(sampled, size, leafSize, reducer, location, evaluation));
+    }
 
-        Node reduced = reduce.reduce(acc, task.join());
-        log.trace("reduce.elapsed {} (getReduceParallelismSize = {})",
-                System.currentTimeMillis() - start, settings.getReduceParallelismSize());
-        return reduced;
+    /**
+     * Creates compiled reducer if all lambdas can be compiled and the reduce lambda
+     * returns the type of elements, otherwise elements are reduced by the interpreter
+     */
+    private Reducer reducer(SequenceNode seq, Node lambda, ReduceFunction reduce) {
+        Pipeline pipeline = compile(seq);
+        if (pipeline != null) {
+            NodeType type = pipeline.getType();
+            LambdaFunction f = engine().compile((LambdaNode) lambda, type, type);
+            if (f != null && f.getType() == type)
+                return new CompiledReducer(pipeline, f);
+        }
+
+        return new SequenceReducer(seq, reduce);
     }
 
 
+    private void scan(Location location, Scope scope) {
+        scope.checkStackSize(location, 3);
+        Node lambda = scope.pop(Node::isLambda, "Expected Lambda");
+        Node acc = scope.pop(Node::isNumber, "Expected Number");
+        Node seq = scope.pop(Node::isSeq, "Expected Sequence");
+
+        Node scanned = scan(seq.toSeq(), acc, lambda, location, scope.getEvaluation());
+
+        scope.push(scanned);
+    }
 
     /**
-     * Loads value from local score and pushes it to stack
+     * Inclusive prefix reduce, every element of the result is the accumulator reduced
+     * with all elements of the sequence up to and including the element.
+     * Lambda should be associative as in reduce, elements are split into blocks of
+     * reduce parallelism size which are scanned in two parallel passes: the first one reduces
+     * every block, then offsets of blocks are combined sequentially from the reduced blocks,
+     * the second one scans every block from its offset
+     */
+    private Node scan(SequenceNode seq, Node acc, Node lambda, Location location, Evaluation evaluation) {
+        log.debug("call scan({}, {}, {})", seq, acc, lambda);
+
+        if (seq.size() == 0)
+            return seq;
+
+        long bytes = (long) seq.size() * Long.BYTES;
+        if (bytes > settings.getMaxSequenceBytes())
+            throw new EvalException(location, "Sequence is too large: %d bytes", bytes);
+
+        evaluation.process(location, seq.size());
+
+        long time = System.currentTimeMillis();
+        ReduceFunction reduce = reduceFunction(lambda, evaluation);
+        Node first = reduce.reduce(acc, seq.get(0));
+        if (!first.isNumber())
+            throw new EvalException(first.getLocation(), "Invalid type: Expected number");
+
+        MutableSequenceNode scanned = createSequence(first.getType(), seq.getLocation(), seq.size());
+        scanned.set(0, first);
+
+        Reducer reducer = scanner(seq, lambda, reduce, first.getType());
+        int size = seq.size();
+        int blockSize = Math.max(1, settings.getReduceParallelismSize());
+        int blocks = (int) (((long) size - 1 + blockSize - 1) / blockSize);
+        if (blocks <= 1) {
+            forEachChunk(1, size, location, evaluation, (start, end) -> reducer.scan(start, end, scanned.get(start - 1), scanned));
+            log.trace("scan.elapsed {}", System.currentTimeMillis() - time);
+            return scanned;
+        }
+
+        Node[] reduced = new Node[blocks - 1];
+        invoke(new MapRecursiveAction(1, 0, blocks - 1, (from, to) -> {
+            for (int block = from; block < to; block++) {
+                evaluation.check(location);
+                reduced[block] = reducer.reduce(blockStart(block, blockSize, size), blockStart(block + 1, blockSize, size));
+            }
+        }));
+
+        Node[] offsets = new Node[blocks];
+        offsets[0] = first;
+        for (int block = 1; block < blocks; block++)
+            offsets[block] = reducer.combine(offsets[block - 1], reduced[block - 1]);
+
+        invoke(new MapRecursiveAction(1, 0, blocks, (from, to) -> {
+            for (int block = from; block < to; block++) {
+                evaluation.check(location);
+                reducer.scan(blockStart(block, blockSize, size), blockStart(block + 1, blockSize, size), offsets[block], scanned);
+            }
+        }));
+
+        log.trace("scan.elapsed {} ({} blocks of {})", System.currentTimeMillis() - time, blocks, blockSize);
+        return scanned;
+    }
+
+    /**
+     * @return index of the first element of the block, the first element of sequence is scanned before blocks
+     */
+    private int blockStart(int block, int blockSize, int size) {
+        return (int) Math.min(size, 1 + (long) block * blockSize);
+    }
+
+    /**
+     * Creates reducer which stores results of the type of the first result
+     */
+    private Reducer scanner(SequenceNode seq, Node lambda, ReduceFunction reduce, NodeType type) {
+        Reducer reducer = reducer(seq, lambda, reduce);
+        if (reducer instanceof CompiledReducer && ((CompiledReducer) reducer).getType() != type)
+            return new SequenceReducer(seq, reduce);
+
+        return reducer;
+    }
+
+
+
+    /**
+     * Loads value from local scope and pushes it to stack
      *
-     * @param node store node
+     * @param program evaluated program
+     * @param slot variable slot
+     * @param location location of load
      * @param scope current scope
      */
-    private void load(Node node, Scope scope) {
-        Node var = scope.load(node.getContent());
+    private void load(Program program, int slot, Location location, Scope scope) {
+        Node var = scope.load(slot);
         if (var == null)
-            throw new EvalException(node.getLocation(), "No value found with name %s", node.getContent());
+            throw new EvalException(location, "No value found with name %s", program.getName(slot));
 
         scope.push(var);
     }
 
+    /**
+     * Loads value from local scope for the last time, sequence is released from the scope
+     *
+     * @param program evaluated program
+     * @param slot variable slot
+     * @param location location of load
+     * @param scope current scope
+     */
+    private void loadLast(Program program, int slot, Location location, Scope scope) {
+        load(program, slot, location, scope);
+        if (scope.getStack().peek().isSeq())
+            scope.release(slot);
+    }
+
     /**
      * Stores value from stack to local scope
      *
-     * @param node store node
+     * @param program evaluated program
+     * @param slot variable slot
+     * @param location location of store
      * @param scope current scope
      */
-    private void store(Node node, Scope scope) {
-        scope.checkStackNotEmpty(node.getLocation());
+    private void store(Program program, int slot, Location location, Scope scope) {
+        scope.checkStackNotEmpty(location);
 
         Node pop = scope.pop();
-        scope.store(node.getContent(), pop);
+        scope.store(slot, program.getName(slot), pop);
     }
 
 
     /**
      * Prints integer or double values to the output stream
      *
-     * @param node print node
+     * @param location location of out
      * @param scope current scope
      */
-    private void out(Node node, Scope scope) {
-        scope.checkStackNotEmpty(node.getLocation());
+    private void out(Location location, Scope scope) {
+        scope.checkStackNotEmpty(location);
 
         Node pop = scope.pop(n -> n.isNumber() || n.isSeq(), "Expected Number or Sequence");
 
+        PrintStream out = out(scope.getEvaluation());
         switch (pop.getType()) {
             case INTEGER:
-                settings.getOut().println(pop.toInteger());
+                out.println(pop.toInteger());
                 break;
 
             case DOUBLE:
-                settings.getOut().println(pop.toDouble());
+                out.println(pop.toDouble());
                 break;
 
             case SEQUENCE:
-                String seq = Stream.of(pop.toSeq().getSeq())
-                        .map(Node::toString)
-                        .collect(Collectors.joining(", ", "[", "]"));
-
-                settings.getOut().println(seq);
+                out.println(join(pop.toSeq(), location, scope.getEvaluation()));
                 break;
         }
     }
 
+    /**
+     * Formats elements of the sequence, lazy elements are computed here,
+     * so the output counts as processed elements and is limited as a sequence
+     */
+    private String join(SequenceNode seq, Location location, Evaluation evaluation) {
+        long bytes = (long) seq.size() * OUT_ELEMENT_CHARS * Character.BYTES;
+        if (bytes > settings.getMaxSequenceBytes())
+            throw new EvalException(location, "Output is too large: %d bytes", bytes);
+
+        evaluation.process(location, seq.size());
+
+        StringBuilder b = new StringBuilder("[");
+        for (int i = 0; i < seq.size(); i++) {
+            if (i % CHECK_INTERVAL == 0)
+                evaluation.check(location);
+
+            if (i > 0)
+                b.append(", ");
+
+            if (seq.isDoubleSeq())
+                b.append(seq.getDouble(i));
+            else
+                b.append(seq.getLong(i));
+        }
+
+        return b.append("]").toString();
+    }
+
     /**
      * Prints string value to the output stream
      *
-     * @param node print node
+     * @param location location of print
      * @param scope current scope
      */
-    private void print(Node node, Scope scope) {
-        scope.checkStackNotEmpty(node.getLocation());
+    private void print(Location location, Scope scope) {
+        scope.checkStackNotEmpty(location);
         Node pop = scope.pop(Node::isString, "Expected String");
 
         log.trace("print {}", pop);
-        settings.getOut().print(pop.toString());
+        out(scope.getEvaluation()).print(pop.toString());
+    }
+
+    /**
+     * @return output of the evaluation or output of settings if the evaluation has none
+     */
+    private PrintStream out(Evaluation evaluation) {
+        PrintStream out = evaluation.getOut();
+        return out != null ? out : settings.getOut();
     }
 
 
     /**
      * A op B
      */
-    private void op(Node node, Scope scope) {
-        scope.checkStackSize(node.getLocation(), 2);
+    private void op(int opcode, Location location, Scope scope) {
+        scope.checkStackSize(location, 2);
         Node b = scope.pop(Node::isNumber, "Expected Number");
         Node a = scope.pop(Node::isNumber, "Expected Number");
 
-        log.trace("operator: {} {} {}", node, a, b);
-        Node result = op(node, a, b);
+        log.trace("operator: {} {} {}", opcode, a, b);
+        Node result = op(opcode, location, a, b);
         scope.push(result);
     }
 
-    private Node op(Node op, Node a, Node b) {
-        switch (op.getType()) {
-            case ADD:   return add(a, b);
-            case SUB:   return subtract(a, b);
-            case MUL:   return multiply(a, b);
-            case DIV:   return divide(a, b);
-            case POWER: return power(a, b);
+    private Node op(int opcode, Location location, Node a, Node b) {
+        switch (opcode) {
+            case Program.ADD:   return add(a, b);
+            case Program.SUB:   return subtract(a, b);
+            case Program.MUL:   return multiply(a, b);
+            case Program.DIV:   return divide(a, b);
+            case Program.POWER: return power(a, b);
         }
 
-        throw new EvalException(op.getLocation(), "Unexpected operator: %s", op);
+        throw new EvalException(location, "Unexpected operator: %d", opcode);
+    }
+
+    /**
+     * (-1) ^ A
+     */
+    private void parity(Scope scope) {
+        Node a = scope.pop(Node::isNumber, "Expected Number");
+
+        scope.push(a.isDouble() ?
+                new DoubleNode(a.getLocation(), Math.pow(-1, a.toDouble())) :
+                new IntNode(a.getLocation(), Expression.parity(a.toInteger())));
     }
 
     private Node add(Node a, Node b) {
@@ -0,0 +1,75 @@
+package ashes.of.jade.lang.interpreter;
+
+import java.util.concurrent.RecursiveAction;
+
+
+/**
+ * Maps a range of elements splitting it in halves while other workers have nothing to steal.
+ * Halves are forked and the task continues with the left one, so work is split only as much as
+ * the pool needs and busy workers process large ranges without scheduling overhead
+ */
+class MapRecursiveAction extends RecursiveAction {
+
+    /**
+     * Max number of queued tasks of the worker which still lets the task split
+     */
+    private static final int SURPLUS_THRESHOLD = 3;
+
+    /**
+     * Range is never split into parts smaller than this size
+     */
+    private final int minSize;
+
+    /**
+     * Left bound of current task
+     */
+    private final int left;
+
+    /**
+     * Right bound of current task
+     */
+    private final int right;
+
+    /**
+     * Maps elements of a range
+     */
+    private final Batch batch;
+
+    /**
+     * Previously forked sibling, siblings are joined in reverse order
+     */
+    private MapRecursiveAction next;
+
+    MapRecursiveAction(int minSize, int left, int right, Batch batch) {
+        this.minSize = Math.max(1, minSize);
+        this.left = left;
+        this.right = right;
+        this.batch = batch;
+    }
+
+    @Override
+    protected void compute() {
+        int l = left;
+        int r = right;
+        MapRecursiveAction forked = null;
+        while (r - l > minSize && getSurplusQueuedTaskCount() <= SURPLUS_THRESHOLD) {
+            int mid = (l + r) >>> 1;
+            MapRecursiveAction half = new MapRecursiveAction(minSize, mid, r, batch);
+            half.next = forked;
+            forked = half;
+            half.fork();
+            r = mid;
+        }
+
+        try {
+            batch.run(l, r);
+            for (; forked != null; forked = forked.next)
+                forked.join();
+        } catch (RuntimeException e) {
+            for (; forked != null; forked = forked.next)
+                forked.cancel(false);
+
+            throw e;
+        }
+    }
+}
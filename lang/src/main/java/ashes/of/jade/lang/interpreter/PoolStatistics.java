@@ -0,0 +1,95 @@
+package ashes.of.jade.lang.interpreter;
+
+
+/**
+ * Snapshot of the state of an execution pool
+ */
+public class PoolStatistics {
+
+    private final String name;
+    private final int parallelism;
+    private final int workers;
+    private final int active;
+    private final long queuedTasks;
+    private final int queuedSubmissions;
+    private final long steals;
+
+    /**
+     * Jobs submitted from outside of the pool
+     */
+    private final long submitted;
+    private final long completed;
+    private final long failed;
+
+    /**
+     * Total time of finished jobs in nanoseconds
+     */
+    private final long busyNanos;
+
+    public PoolStatistics(String name, int parallelism, int workers, int active, long queuedTasks,
+                          int queuedSubmissions, long steals, long submitted, long completed, long failed, long busyNanos) {
+        this.name = name;
+        this.parallelism = parallelism;
+        this.workers = workers;
+        this.active = active;
+        this.queuedTasks = queuedTasks;
+        this.queuedSubmissions = queuedSubmissions;
+        this.steals = steals;
+        this.submitted = submitted;
+        this.completed = completed;
+        this.failed = failed;
+        this.busyNanos = busyNanos;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    public int getActive() {
+        return active;
+    }
+
+    public long getQueuedTasks() {
+        return queuedTasks;
+    }
+
+    public int getQueuedSubmissions() {
+        return queuedSubmissions;
+    }
+
+    public long getSteals() {
+        return steals;
+    }
+
+    public long getSubmitted() {
+        return submitted;
+    }
+
+    public long getCompleted() {
+        return completed;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public long getBusyNanos() {
+        return busyNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: parallelism=%d workers=%d active=%d queued=%d submissions=%d steals=%d " +
+                        "submitted=%d completed=%d failed=%d busy=%dms",
+                name, parallelism, workers, active, queuedTasks, queuedSubmissions, steals,
+                submitted, completed, failed, busyNanos / 1_000_000);
+    }
+}
@@ -1,6 +1,8 @@
 package ashes.of.jade.lang.interpreter;
 
+import ashes.of.jade.lang.Location;
 import ashes.of.jade.lang.nodes.Node;
+import ashes.of.jade.lang.nodes.SequenceNode;
 
 import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.RecursiveTask;
@@ -13,55 +15,65 @@ public class ReduceRecursiveTask extends RecursiveTask<Node> {
      */
     private final int minParallelSize;
 
-    /**
-     * Sequence
-     */
-    private final Node[] seq;
-
     /**
      * Left bound of current task
      */
     private final int left;
 
     /**
-     * Left bound of current task
+     * Right bound of current task
      */
     private final int right;
 
     /**
-     * Reduce function
+     * Reduces ranges and combines results
      */
-    private final ReduceFunction f;
+    private final Reducer reducer;
 
-    public ReduceRecursiveTask(int minParallelSize, Node[] seq, int left, int right, ReduceFunction f) {
+    /**
+     * Location of reduce call, reported if evaluation exceeds its limits
+     */
+    private final Location location;
+
+    /**
+     * Checked before every range is reduced and before results are combined
+     */
+    private final Evaluation evaluation;
+
+    public ReduceRecursiveTask(int minParallelSize, int left, int right, Reducer reducer, Location location, Evaluation evaluation) {
         this.minParallelSize = minParallelSize;
-        this.seq = seq;
         this.left = left;
         this.right = right;
-        this.f = f;
+        this.reducer = reducer;
+        this.location = location;
+        this.evaluation = evaluation;
+    }
+
+    public ReduceRecursiveTask(int minParallelSize, SequenceNode seq, int left, int right, ReduceFunction f, Evaluation evaluation) {
+        this(minParallelSize, left, right, new SequenceReducer(seq, f), seq.getLocation(), evaluation);
+    }
+
+    public ReduceRecursiveTask(int minParallelSize, SequenceNode seq, int left, int right, ReduceFunction f) {
+        this(minParallelSize, seq, left, right, f, new Evaluation());
     }
 
     @Override
     protected Node compute() {
         int length = right - left;
 
+        evaluation.check(location);
         if (length <= minParallelSize)
-            return reduce(seq, left, right, f);
+            return reducer.reduce(left, right);
 
-        ReduceRecursiveTask l = new ReduceRecursiveTask(minParallelSize, seq, left, left + length / 2,  f);
-        ReduceRecursiveTask r = new ReduceRecursiveTask(minParallelSize, seq, left + length / 2, right, f);
+        ReduceRecursiveTask l = new ReduceRecursiveTask(minParallelSize, left, left + length / 2, reducer, location, evaluation);
+        ReduceRecursiveTask r = new ReduceRecursiveTask(minParallelSize, left + length / 2, right, reducer, location, evaluation);
 
         ForkJoinTask<Node> fl = l.fork();
         ForkJoinTask<Node> fr = r.fork();
-        return f.reduce(fl.join(), fr.join());
-    }
-
-
-    private Node reduce(Node[] seq, int left, int right, ReduceFunction f) {
-        Node acc = seq[left];
-        for (int i = left + 1; i < right; i++)
-            acc = f.reduce(acc, seq[i]);
+        Node a = fl.join();
+        Node b = fr.join();
 
-        return acc;
+        evaluation.check(location);
+        return reducer.combine(a, b);
     }
 }
@@ -0,0 +1,30 @@
+package ashes.of.jade.lang.interpreter;
+
+import ashes.of.jade.lang.nodes.MutableSequenceNode;
+import ashes.of.jade.lang.nodes.Node;
+import ashes.of.jade.lang.nodes.SequenceNode;
+
+/**
+ * Reduces ranges of a sequence and combines partial results
+ */
+interface Reducer {
+
+    /**
+     * @param left first element index, inclusive
+     * @param right last element index, exclusive
+     * @return reduced range
+     */
+    Node reduce(int left, int right);
+
+    Node combine(Node a, Node b);
+
+    /**
+     * Reduces the range element by element and stores every intermediate result
+     *
+     * @param left first element index, inclusive
+     * @param right last element index, exclusive
+     * @param acc result of elements before the range
+     * @param scanned sequence of results
+     */
+    void scan(int left, int right, Node acc, MutableSequenceNode scanned);
+}
@@ -2,13 +2,13 @@ package ashes.of.jade.lang.interpreter;
 
 import ashes.of.jade.lang.Location;
 import ashes.of.jade.lang.nodes.Node;
-import ashes.of.jade.lang.parser.ParseException;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Deque;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.function.Predicate;
 
@@ -16,40 +16,95 @@ import java.util.function.Predicate;
 public class Scope {
     private static final Logger log = LogManager.getLogger(Scope.class);
 
-    private final Map<String, Node> vars;
+    private Node[] vars;
+    private String[] names;
     private final Deque<Node> stack;
-
-    public Scope(Map<String, Node> vars, Deque<Node> stack) {
-        this.vars = vars;
+    private final Evaluation evaluation;
+
+    /**
+     * @param slots number of variable slots, scope grows if more slots are stored
+     * @param stack operand stack
+     * @param evaluation handle checked by long running operations
+     */
+    public Scope(int slots, Deque<Node> stack, Evaluation evaluation) {
+        this.vars = new Node[slots];
+        this.names = new String[slots];
         this.stack = stack;
+        this.evaluation = evaluation;
+    }
+
+    public Scope(int slots, Deque<Node> stack) {
+        this(slots, stack, new Evaluation());
+    }
+
+    public Scope(Evaluation evaluation) {
+        this(0, new ArrayDeque<>(), evaluation);
     }
 
     public Scope(Deque<Node> stack) {
-        this(new HashMap<>(), stack);
+        this(0, stack);
     }
 
     public Scope() {
-        this(new HashMap<>(), new ArrayDeque<>());
+        this(0, new ArrayDeque<>());
     }
 
+    /**
+     * @return variables by name in slot order
+     */
     public Map<String, Node> getVars() {
-        return vars;
+        Map<String, Node> map = new LinkedHashMap<>();
+        for (int i = 0; i < vars.length; i++)
+            if (names[i] != null)
+                map.put(names[i], vars[i]);
+
+        return map;
+    }
+
+    public Evaluation getEvaluation() {
+        return evaluation;
     }
 
     public Deque<Node> getStack() {
         return stack;
     }
 
-    public Node load(String name) {
-        Node node = vars.get(name);
+    public Node load(int slot) {
+        Node node = slot < vars.length ? vars[slot] : null;
 
-        log.trace("load  {} -> {}", name, node);
+        log.trace("load  @{} -> {}", slot, node);
         return node;
     }
 
-    public Node store(String name, Node node) {
-        log.trace("store {} <- {}", name, node);
-        return vars.put(name, node);
+    /**
+     * Finds variable by name, evaluation uses slots instead
+     */
+    public Node load(String name) {
+        return getVars().get(name);
+    }
+
+    public Node store(int slot, String name, Node node) {
+        log.trace("store {}@{} <- {}", name, slot, node);
+
+        if (slot >= vars.length) {
+            int size = Math.max(slot + 1, vars.length * 2);
+            vars = Arrays.copyOf(vars, size);
+            names = Arrays.copyOf(names, size);
+        }
+
+        Node prev = vars[slot];
+        vars[slot] = node;
+        names[slot] = name;
+        return prev;
+    }
+
+    /**
+     * Removes variable from the scope, the value can be collected once it's off the stack
+     */
+    public void release(int slot) {
+        log.trace("release @{}", slot);
+        vars[slot] = null;
+        names[slot] = null;
     }
 
     public void push(Node node) {
@@ -88,7 +143,7 @@ public class Scope {
     @Override
     public String toString() {
         return "Scope{" +
-                "vars=" + vars +
+                "vars=" + getVars() +
                 ", stack=" + stack +
                 '}';
     }
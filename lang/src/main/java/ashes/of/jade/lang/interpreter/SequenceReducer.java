@@ -0,0 +1,42 @@
+package ashes.of.jade.lang.interpreter;
+
+import ashes.of.jade.lang.nodes.MutableSequenceNode;
+import ashes.of.jade.lang.nodes.Node;
+import ashes.of.jade.lang.nodes.SequenceNode;
+
+
+/**
+ * Reduces boxed sequence elements with reduce function
+ */
+class SequenceReducer implements Reducer {
+
+    private final SequenceNode seq;
+    private final ReduceFunction f;
+
+    SequenceReducer(SequenceNode seq, ReduceFunction f) {
+        this.seq = seq;
+        this.f = f;
+    }
+
+    @Override
+    public Node reduce(int left, int right) {
+        Node acc = seq.get(left);
+        for (int i = left + 1; i < right; i++)
+            acc = f.reduce(acc, seq.get(i));
+
+        return acc;
+    }
+
+    @Override
+    public Node combine(Node a, Node b) {
+        return f.reduce(a, b);
+    }
+
+    @Override
+    public void scan(int left, int right, Node acc, MutableSequenceNode scanned) {
+        for (int i = left; i < right; i++) {
+            acc = f.reduce(acc, seq.get(i));
+            scanned.set(i, acc);
+        }
+    }
+}
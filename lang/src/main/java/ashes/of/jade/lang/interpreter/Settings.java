@@ -1,17 +1,86 @@
 package ashes.of.jade.lang.interpreter;
 
+import ashes.of.jade.lang.engine.EngineType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
 import java.util.concurrent.ForkJoinPool;
 
 public class Settings {
 
+    /**
+     * Profile of the machine written by {@link Calibration}
+     */
+    public static final Path DEFAULT_PROFILE = Paths.get(System.getProperty("user.home"), ".jade", "profile.properties");
+
     private static final int DEFAULT_PARALLELISM_MIN_SIZE = 65536;
+    private static final int DEFAULT_MAP_TASK_SIZE = 4096;
 
     private PrintStream out = System.out;
 
     private int mapParallelismSize = DEFAULT_PARALLELISM_MIN_SIZE;
     private int reduceParallelismSize = DEFAULT_PARALLELISM_MIN_SIZE;
 
+    /**
+     * Parallel map doesn't split sequence into tasks smaller than this size
+     */
+    private int mapTaskSize = DEFAULT_MAP_TASK_SIZE;
+
+    private EngineType engine = EngineType.INTERPRETER;
+
+    /**
+     * Parallelism of map and reduce is chosen from cost of elements measured on a prefix of the sequence,
+     * min parallel sizes aren't used
+     */
+    private boolean adaptiveParallelism = false;
+
+    /**
+     * Only output of the program matters: statements which don't reach out or print are skipped
+     * and sequences are released after their last use, so the resulting scope is incomplete
+     */
+    private boolean outputsOnly = false;
+
+    /**
+     * Wall-clock limit of one evaluation in milliseconds, zero means no limit
+     */
+    private long timeLimit = 0;
+
+    /**
+     * Max number of elements in a sequence
+     */
+    private long maxSequenceLength = Integer.MAX_VALUE;
+
+    /**
+     * Max estimated size of storage of a mapped sequence in bytes, half of the heap by default
+     */
+    private long maxSequenceBytes = Runtime.getRuntime().maxMemory() / 2;
+
+    /**
+     * Max number of elements processed by all maps and reduces of one evaluation
+     */
+    private long maxElements = Long.MAX_VALUE;
+
+    /**
+     * Workers of the editor pool: highlighting and orchestration of evaluations
+     */
+    private int editorPoolSize = 2;
+
+    /**
+     * Workers of the interpreter pool: evaluations, map and reduce tasks
+     */
+    private int interpreterPoolSize = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Workers of the background pool: calibration and other long jobs
+     */
+    private int backgroundPoolSize = 1;
+
 
     public PrintStream getOut() {
         return out;
@@ -36,4 +105,139 @@ public class Settings {
     public void setReduceParallelismSize(int reduceParallelismSize) {
         this.reduceParallelismSize = reduceParallelismSize;
     }
+
+    public int getMapTaskSize() {
+        return mapTaskSize;
+    }
+
+    public void setMapTaskSize(int mapTaskSize) {
+        this.mapTaskSize = mapTaskSize;
+    }
+
+    public EngineType getEngine() {
+        return engine;
+    }
+
+    public void setEngine(EngineType engine) {
+        this.engine = engine;
+    }
+
+    public boolean isOutputsOnly() {
+        return outputsOnly;
+    }
+
+    public void setOutputsOnly(boolean outputsOnly) {
+        this.outputsOnly = outputsOnly;
+    }
+
+    public long getTimeLimit() {
+        return timeLimit;
+    }
+
+    public void setTimeLimit(long timeLimit) {
+        this.timeLimit = timeLimit;
+    }
+
+    public long getMaxSequenceLength() {
+        return maxSequenceLength;
+    }
+
+    public void setMaxSequenceLength(long maxSequenceLength) {
+        this.maxSequenceLength = maxSequenceLength;
+    }
+
+    public long getMaxSequenceBytes() {
+        return maxSequenceBytes;
+    }
+
+    public void setMaxSequenceBytes(long maxSequenceBytes) {
+        this.maxSequenceBytes = maxSequenceBytes;
+    }
+
+    public long getMaxElements() {
+        return maxElements;
+    }
+
+    public void setMaxElements(long maxElements) {
+        this.maxElements = maxElements;
+    }
+
+    public int getEditorPoolSize() {
+        return editorPoolSize;
+    }
+
+    public void setEditorPoolSize(int editorPoolSize) {
+        this.editorPoolSize = editorPoolSize;
+    }
+
+    public int getInterpreterPoolSize() {
+        return interpreterPoolSize;
+    }
+
+    public void setInterpreterPoolSize(int interpreterPoolSize) {
+        this.interpreterPoolSize = interpreterPoolSize;
+    }
+
+    public int getBackgroundPoolSize() {
+        return backgroundPoolSize;
+    }
+
+    public void setBackgroundPoolSize(int backgroundPoolSize) {
+        this.backgroundPoolSize = backgroundPoolSize;
+    }
+
+    public boolean isAdaptiveParallelism() {
+        return adaptiveParallelism;
+    }
+
+    public void setAdaptiveParallelism(boolean adaptiveParallelism) {
+        this.adaptiveParallelism = adaptiveParallelism;
+    }
+
+
+    /**
+     * Loads parallelism settings and sizes of pools from the profile if it exists
+     *
+     * @param path profile file
+     * @return true if the profile is loaded
+     */
+    public boolean loadProfile(Path path) throws IOException {
+        if (!Files.exists(path))
+            return false;
+
+        Properties profile = new Properties();
+        try (InputStream in = Files.newInputStream(path)) {
+            profile.load(in);
+        }
+
+        mapParallelismSize = Integer.parseInt(profile.getProperty("mapParallelismSize", String.valueOf(mapParallelismSize)));
+        reduceParallelismSize = Integer.parseInt(profile.getProperty("reduceParallelismSize", String.valueOf(reduceParallelismSize)));
+        mapTaskSize = Integer.parseInt(profile.getProperty("mapTaskSize", String.valueOf(mapTaskSize)));
+        editorPoolSize = Integer.parseInt(profile.getProperty("editorPoolSize", String.valueOf(editorPoolSize)));
+        interpreterPoolSize = Integer.parseInt(profile.getProperty("interpreterPoolSize", String.valueOf(interpreterPoolSize)));
+        backgroundPoolSize = Integer.parseInt(profile.getProperty("backgroundPoolSize", String.valueOf(backgroundPoolSize)));
+        return true;
+    }
+
+    /**
+     * Saves parallelism settings and sizes of pools to the profile
+     *
+     * @param path profile file, parent directories are created
+     */
+    public void saveProfile(Path path) throws IOException {
+        Properties profile = new Properties();
+        profile.setProperty("mapParallelismSize", String.valueOf(mapParallelismSize));
+        profile.setProperty("reduceParallelismSize", String.valueOf(reduceParallelismSize));
+        profile.setProperty("mapTaskSize", String.valueOf(mapTaskSize));
+        profile.setProperty("editorPoolSize", String.valueOf(editorPoolSize));
+        profile.setProperty("interpreterPoolSize", String.valueOf(interpreterPoolSize));
+        profile.setProperty("backgroundPoolSize", String.valueOf(backgroundPoolSize));
+
+        if (path.getParent() != null)
+            Files.createDirectories(path.getParent());
+
+        try (OutputStream out = Files.newOutputStream(path)) {
+            profile.store(out, "Jade interpreter profile");
+        }
+    }
 }
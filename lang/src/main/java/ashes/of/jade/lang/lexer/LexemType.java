@@ -13,6 +13,11 @@ public enum LexemType {
      */
     REDUCE,
 
+    /**
+     * Call scan method
+     */
+    SCAN,
+
     /**
      * Print string to output stream
      */
@@ -298,6 +298,11 @@ public class Lexer {
                 code.add(LexemType.REDUCE, loc, "reduce");
                 break;
 
+            case "scan":
+                checkIsNotNewLine(token, loc, lexems, "Scan isn't allowed as first token");
+                code.add(LexemType.SCAN, loc, "scan");
+                break;
+
 
             default:
                 checkIsNotNewLine(token, loc, lexems, "Identifier isn't allowed as first token");
@@ -356,7 +361,8 @@ public class Lexer {
     private boolean isMiddleOfExpr(Lexem lexem) {
         return lexem.isAnyOf(
                 LexemType.INTEGER, LexemType.DOUBLE, LexemType.STRING,
-                LexemType.CURLY_CLOSE, LexemType.PARENT_CLOSE, LexemType.MAP, LexemType.REDUCE);
+                LexemType.CURLY_CLOSE, LexemType.PARENT_CLOSE, LexemType.MAP, LexemType.REDUCE,
+                LexemType.SCAN);
     }
 
 
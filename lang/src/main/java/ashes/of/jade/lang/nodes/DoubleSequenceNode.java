@@ -0,0 +1,46 @@
+package ashes.of.jade.lang.nodes;
+
+import ashes.of.jade.lang.Location;
+
+
+/**
+ * Sequence of doubles
+ */
+public class DoubleSequenceNode extends MutableSequenceNode {
+
+    private final double[] values;
+
+    public DoubleSequenceNode(Location location, double[] values) {
+        super(location);
+        this.values = values;
+    }
+
+    public double[] getValues() {
+        return values;
+    }
+
+    @Override
+    public NodeType getElementType() {
+        return NodeType.DOUBLE;
+    }
+
+    @Override
+    public int size() {
+        return values.length;
+    }
+
+    @Override
+    public long getLong(int index) {
+        return Math.round(values[index]);
+    }
+
+    @Override
+    public double getDouble(int index) {
+        return values[index];
+    }
+
+    @Override
+    public void set(int index, Node node) {
+        values[index] = node.toDouble();
+    }
+}
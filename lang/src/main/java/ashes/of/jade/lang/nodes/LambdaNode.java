@@ -1,6 +1,7 @@
 package ashes.of.jade.lang.nodes;
 
 import ashes.of.jade.lang.Location;
+import ashes.of.jade.lang.program.Program;
 
 import java.util.ArrayDeque;
 import java.util.Deque;
@@ -10,6 +11,8 @@ import java.util.Deque;
 public class LambdaNode extends Node {
 
     public Deque<Node> stack = new ArrayDeque<>();
+    private int params;
+    private Program program;
 
     public LambdaNode(Location location) {
         super(NodeType.LAMBDA, location);
@@ -20,6 +23,28 @@ public class LambdaNode extends Node {
         return stack;
     }
 
+    /**
+     * @return number of parameter slots, resolved by the parser
+     */
+    public int getParams() {
+        return params;
+    }
+
+    public void setParams(int params) {
+        this.params = params;
+    }
+
+    /**
+     * @return compiled body or null if lambda isn't compiled yet
+     */
+    public Program getProgram() {
+        return program;
+    }
+
+    public void setProgram(Program program) {
+        this.program = program;
+    }
+
     @Override
     public String toString() {
         return "LAMBDA{" + stack + "}";
@@ -0,0 +1,46 @@
+package ashes.of.jade.lang.nodes;
+
+import ashes.of.jade.lang.Location;
+
+
+/**
+ * Sequence of integers
+ */
+public class LongSequenceNode extends MutableSequenceNode {
+
+    private final long[] values;
+
+    public LongSequenceNode(Location location, long[] values) {
+        super(location);
+        this.values = values;
+    }
+
+    public long[] getValues() {
+        return values;
+    }
+
+    @Override
+    public NodeType getElementType() {
+        return NodeType.INTEGER;
+    }
+
+    @Override
+    public int size() {
+        return values.length;
+    }
+
+    @Override
+    public long getLong(int index) {
+        return values[index];
+    }
+
+    @Override
+    public double getDouble(int index) {
+        return values[index];
+    }
+
+    @Override
+    public void set(int index, Node node) {
+        values[index] = node.toInteger();
+    }
+}
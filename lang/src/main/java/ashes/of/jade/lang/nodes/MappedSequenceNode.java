@@ -0,0 +1,87 @@
+package ashes.of.jade.lang.nodes;
+
+import ashes.of.jade.lang.Location;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+
+/**
+ * Lazy view of a sequence mapped by a pipeline of lambdas, elements are mapped
+ * on access by all lambdas at once and never stored
+ */
+public class MappedSequenceNode extends SequenceNode {
+
+    private final SequenceNode source;
+    private final List<Node> lambdas;
+    private final UnaryOperator<Node> mapper;
+
+    private volatile NodeType elementType;
+
+    private MappedSequenceNode(Location location, SequenceNode source, List<Node> lambdas, UnaryOperator<Node> mapper) {
+        super(location);
+        this.source = source;
+        this.lambdas = lambdas;
+        this.mapper = mapper;
+    }
+
+    public MappedSequenceNode(Location location, SequenceNode source, Node lambda, UnaryOperator<Node> mapper) {
+        this(location, source, Collections.singletonList(lambda), mapper);
+    }
+
+    /**
+     * Composes one more lambda into the pipeline
+     *
+     * @param location location of the new sequence
+     * @param lambda lambda applied to results of this pipeline
+     * @param next function which applies the lambda
+     * @return mapped sequence over the same source
+     */
+    public MappedSequenceNode andThen(Location location, Node lambda, UnaryOperator<Node> next) {
+        List<Node> pipeline = new ArrayList<>(lambdas);
+        pipeline.add(lambda);
+
+        return new MappedSequenceNode(location, source, pipeline, element -> next.apply(mapper.apply(element)));
+    }
+
+    public SequenceNode getSource() {
+        return source;
+    }
+
+    /**
+     * @return lambdas in order of application
+     */
+    public List<Node> getLambdas() {
+        return lambdas;
+    }
+
+    @Override
+    public NodeType getElementType() {
+        if (elementType == null)
+            elementType = get(0).getType();
+
+        return elementType;
+    }
+
+    @Override
+    public int size() {
+        return source.size();
+    }
+
+    @Override
+    public Node get(int index) {
+        return mapper.apply(source.get(index));
+    }
+
+    @Override
+    public long getLong(int index) {
+        return get(index).toInteger();
+    }
+
+    @Override
+    public double getDouble(int index) {
+        return get(index).toDouble();
+    }
+}
@@ -0,0 +1,23 @@
+package ashes.of.jade.lang.nodes;
+
+import ashes.of.jade.lang.Location;
+
+
+/**
+ * Sequence with storage for every element, results of map and scan are written
+ * to it element by element. Lazy sequences compute elements and can't be written
+ */
+public abstract class MutableSequenceNode extends SequenceNode {
+
+    public MutableSequenceNode(Location location) {
+        super(location);
+    }
+
+    /**
+     * Stores number node to the sequence converting it to element type
+     *
+     * @param index element index
+     * @param node number node
+     */
+    public abstract void set(int index, Node node);
+}
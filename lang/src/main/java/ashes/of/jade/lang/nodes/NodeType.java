@@ -40,11 +40,21 @@ public enum NodeType {
      */
     MAP,
 
+    /**
+     * Call map method lazily, elements are mapped by the consumer of the sequence
+     */
+    LAZYMAP,
+
     /**
      * Call reduce method
      */
     REDUCE,
 
+    /**
+     * Call scan method
+     */
+    SCAN,
+
     /**
      * Print string to output stream
      */
@@ -97,6 +107,11 @@ public enum NodeType {
      */
     POWER,
 
+    /**
+     * Replace integer value from stack with (-1) raised to the power of it, 1 for even and -1 for odd values
+     */
+    PARITY,
+
     EQUAL,
 
     VAR,
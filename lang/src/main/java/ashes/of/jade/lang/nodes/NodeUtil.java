@@ -13,6 +13,7 @@ public class NodeUtil {
             case OUT:           return NodeType.OUT;
             case MAP:           return NodeType.MAP;
             case REDUCE:        return NodeType.REDUCE;
+            case SCAN:          return NodeType.SCAN;
             case COMMA:         return NodeType.COMMA;
             case ARROW:         return null;
             case PLUS:          return NodeType.ADD;
@@ -104,6 +105,54 @@ public class NodeUtil {
     }
 
     public static boolean isFunction(NodeType type) {
-        return type == NodeType.MAP || type == NodeType.REDUCE;
-    }    
+        return type == NodeType.MAP || type == NodeType.REDUCE || type == NodeType.SCAN;
+    }
+
+    /**
+     * @return number of values the node pops from the stack when evaluated
+     */
+    public static int arityOf(NodeType type) {
+        switch (type) {
+            case ADD:
+            case SUB:
+            case MUL:
+            case DIV:
+            case POWER:
+            case NEWSEQUENCE:
+            case MAP:
+            case LAZYMAP:       return 2;
+            case REDUCE:
+            case SCAN:          return 3;
+            case STORE:
+            case PARITY:
+            case OUT:
+            case PRINT:         return 1;
+            default:            return 0;
+        }
+    }
+
+    /**
+     * @return true if the node pushes a value to the stack when evaluated
+     */
+    public static boolean producesValue(NodeType type) {
+        switch (type) {
+            case INTEGER:
+            case DOUBLE:
+            case STRING:
+            case LAMBDA:
+            case LOAD:
+            case ADD:
+            case SUB:
+            case MUL:
+            case DIV:
+            case POWER:
+            case PARITY:
+            case NEWSEQUENCE:
+            case MAP:
+            case LAZYMAP:
+            case REDUCE:
+            case SCAN:          return true;
+            default:            return false;
+        }
+    }
 }
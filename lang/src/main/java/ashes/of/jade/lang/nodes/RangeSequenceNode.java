@@ -0,0 +1,82 @@
+package ashes.of.jade.lang.nodes;
+
+import ashes.of.jade.lang.Location;
+
+
+/**
+ * Lazy sequence of integers { start, start + step, .. end }, elements are computed on access
+ */
+public class RangeSequenceNode extends SequenceNode {
+
+    private final long start;
+    private final long end;
+    private final long step;
+    private final int size;
+
+    public RangeSequenceNode(Location location, long start, long end, long step) {
+        super(location);
+        this.start = start;
+        this.end = end;
+        this.step = step;
+
+        long size = sizeOf(start, end, step);
+        if (size < 0 || size > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Range is too long: {" + start + ", " + end + "}");
+
+        this.size = (int) size;
+    }
+
+    public RangeSequenceNode(Location location, long start, long end) {
+        this(location, start, end, 1);
+    }
+
+    /**
+     * @param step positive step
+     * @return number of elements in range, may exceed int, or -1 if it doesn't fit in long
+     */
+    public static long sizeOf(long start, long end, long step) {
+        if (end < start)
+            return 0;
+
+        // difference of bounds doesn't fit in long if they are far apart, but it's always a valid unsigned value
+        long steps = Long.divideUnsigned(end - start, step);
+        return steps < 0 || steps == Long.MAX_VALUE ? -1 : steps + 1;
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public long getEnd() {
+        return end;
+    }
+
+    public long getStep() {
+        return step;
+    }
+
+    @Override
+    public NodeType getElementType() {
+        return NodeType.INTEGER;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public long getLong(int index) {
+        return start + index * step;
+    }
+
+    @Override
+    public double getDouble(int index) {
+        return getLong(index);
+    }
+
+    @Override
+    public String toString() {
+        return "{" + start + ", " + end + "}";
+    }
+}
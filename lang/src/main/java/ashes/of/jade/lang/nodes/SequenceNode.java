@@ -3,33 +3,66 @@ package ashes.of.jade.lang.nodes;
 import ashes.of.jade.lang.Location;
 
 
-public class SequenceNode extends Node {
+/**
+ * Sequence of integers or doubles backed by primitive storage
+ */
+public abstract class SequenceNode extends Node {
 
-    public Node[] seq;
-
-    public SequenceNode(Location location, long start, long end) {
+    public SequenceNode(Location location) {
         super(NodeType.SEQUENCE, location);
-        long length = (end - start) + 1;
-        seq = new Node[ (int) length];
-        for (int i = 0; i < length; i++)
-            seq[i] = new IntNode(start + i);
     }
 
-    @Override
-    public SequenceNode toSeq() {
-        return this;
+    /**
+     * @return type of sequence elements, {@link NodeType#INTEGER} or {@link NodeType#DOUBLE}
+     */
+    public abstract NodeType getElementType();
+
+    public abstract int size();
+
+    public abstract long getLong(int index);
+
+    public abstract double getDouble(int index);
+
+
+    public boolean isDoubleSeq() {
+        return getElementType() == NodeType.DOUBLE;
+    }
+
+    /**
+     * Boxes element to a node
+     *
+     * @param index element index
+     * @return integer or double node
+     */
+    public Node get(int index) {
+        return isDoubleSeq() ?
+                new DoubleNode(getDouble(index)) :
+                new IntNode(getLong(index));
     }
 
+    /**
+     * Boxes all elements to nodes
+     *
+     * @return array of integer or double nodes
+     */
     public Node[] getSeq() {
-        return seq;
+        Node[] nodes = new Node[size()];
+        for (int i = 0; i < nodes.length; i++)
+            nodes[i] = get(i);
+
+        return nodes;
     }
 
-    public int size() {
-        return seq.length;
+    @Override
+    public SequenceNode toSeq() {
+        return this;
     }
 
     @Override
     public String toString() {
-        return "[" + seq[0] + ".." + seq[seq.length - 1] + "]";
+        if (size() == 0)
+            return "[]";
+
+        return "[" + get(0) + ".." + get(size() - 1) + "]";
     }
 }
@@ -0,0 +1,59 @@
+package ashes.of.jade.lang.nodes;
+
+import ashes.of.jade.lang.Location;
+
+
+/**
+ * LOAD or STORE node with the variable resolved to a slot by the parser.
+ * Global variables and lambda parameters have separate slot spaces,
+ * parameters of a lambda are numbered from zero in declaration order
+ */
+public class VariableNode extends Node {
+
+    /**
+     * Slot of a variable which is used before assignment
+     */
+    public static final int UNDEFINED = -1;
+
+    private final int slot;
+    private final boolean param;
+    private final boolean temporary;
+
+    private VariableNode(NodeType type, Location location, String name, int slot, boolean param, boolean temporary) {
+        super(type, location, name);
+        this.slot = slot;
+        this.param = param;
+        this.temporary = temporary;
+    }
+
+    public VariableNode(NodeType type, Location location, String name, int slot, boolean param) {
+        this(type, location, name, slot, param, false);
+    }
+
+    /**
+     * Variable introduced by the optimizer, it has no name in the program and isn't visible in scope
+     *
+     * @param type LOAD or STORE
+     */
+    public static VariableNode temporary(NodeType type, Location location, int slot, boolean param) {
+        return new VariableNode(type, location, "$" + slot, slot, param, true);
+    }
+
+    public int getSlot() {
+        return slot;
+    }
+
+    public boolean isParam() {
+        return param;
+    }
+
+    public boolean isTemporary() {
+        return temporary;
+    }
+
+    @Override
+    public String toString() {
+        return type + "{" + content + (param ? "@$" : "@") + slot + "}" +
+                (location == Location.EMPTY ? "" : " " + location);
+    }
+}
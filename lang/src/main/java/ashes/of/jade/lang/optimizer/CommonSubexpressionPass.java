@@ -0,0 +1,271 @@
+package ashes.of.jade.lang.optimizer;
+
+import ashes.of.jade.lang.nodes.LambdaNode;
+import ashes.of.jade.lang.nodes.Node;
+import ashes.of.jade.lang.nodes.NodeType;
+import ashes.of.jade.lang.nodes.VariableNode;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.*;
+
+import static ashes.of.jade.lang.nodes.NodeUtil.arityOf;
+import static ashes.of.jade.lang.nodes.NodeUtil.producesValue;
+
+
+/**
+ * Evaluates identical subexpressions once. All expressions are pure, so a repeated subexpression
+ * is stored to a temporary before its first use and every use loads the temporary.
+ * Inside lambdas every repeated operator is shared, temporaries are stored after parameters.
+ * In the program only repeated map, scan and reduce calls are shared, temporaries are stored
+ * by statements inserted before the first statement which uses them. A map consumed only
+ * by other calls isn't shared, the fusion pass maps it lazily without storing the sequence
+ */
+public class CommonSubexpressionPass implements Pass {
+    private static final Logger log = LogManager.getLogger(CommonSubexpressionPass.class);
+
+    /**
+     * Value of identical subexpressions, values are numbered as they are found
+     */
+    private static class Value {
+        private final int id;
+        private final NodeType type;
+        private final boolean operator;
+
+        /**
+         * Number of distinct expressions which use the value
+         */
+        private int uses;
+
+        /**
+         * All uses are map, scan or reduce calls which consume the sequence
+         */
+        private boolean consumed = true;
+
+        /**
+         * Slot of the temporary once the value is stored
+         */
+        private int slot = VariableNode.UNDEFINED;
+
+        private Value(int id, NodeType type, boolean operator) {
+            this.id = id;
+            this.type = type;
+            this.operator = operator;
+        }
+
+        private void use(NodeType consumer) {
+            uses++;
+            if (consumer != NodeType.MAP && consumer != NodeType.SCAN && consumer != NodeType.REDUCE)
+                consumed = false;
+        }
+    }
+
+    /**
+     * Subexpression in the program
+     */
+    private static class Occurrence {
+        private final Node node;
+        private final Occurrence[] args;
+        private final Value value;
+
+        private Occurrence(Node node, Occurrence[] args, Value value) {
+            this.node = node;
+            this.args = args;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Expression and the node which ends it: STORE, OUT or PRINT.
+     * Parameters of a lambda are stored without expression, the result of a lambda has no end
+     */
+    private static class Statement {
+        private final Occurrence expression;
+        private final Node end;
+
+        private Statement(Occurrence expression, Node end) {
+            this.expression = expression;
+            this.end = end;
+        }
+    }
+
+
+    @Override
+    public Deque<Node> apply(Deque<Node> rpn) {
+        Deque<Node> optimized = rewrite(rpn, false);
+        return optimized != null ? optimized : rpn;
+    }
+
+    private void apply(LambdaNode lambda) {
+        Deque<Node> optimized = rewrite(lambda.stack, true);
+        if (optimized != null)
+            lambda.stack = optimized;
+    }
+
+    /**
+     * @return nodes with temporaries or null if nothing is shared
+     */
+    private Deque<Node> rewrite(Deque<Node> rpn, boolean lambda) {
+        Map<String, Value> values = new HashMap<>();
+        Map<Integer, Integer> versions = new HashMap<>();
+        List<Statement> statements = new ArrayList<>();
+        Deque<Occurrence> stack = new ArrayDeque<>();
+        int slots = 0;
+
+        Iterator<Node> it = rpn.descendingIterator();
+        while (it.hasNext()) {
+            Node node = it.next();
+            NodeType type = node.getType();
+            if (node instanceof VariableNode)
+                slots = Math.max(slots, ((VariableNode) node).getSlot() + 1);
+
+            if (node.isLambda())
+                apply((LambdaNode) node);
+
+            // commas and line ends aren't evaluated, only line ends between statements are kept
+            if (!producesValue(type) && arityOf(type) == 0) {
+                if (stack.isEmpty())
+                    statements.add(new Statement(null, node));
+                continue;
+            }
+
+            if (!producesValue(type)) {
+                Occurrence expression = stack.poll();
+                if (arityOf(type) != 1 || !stack.isEmpty() || expression == null && !(lambda && type == NodeType.STORE))
+                    return null;
+
+                if (expression != null)
+                    expression.value.use(type);
+
+                // loads after the store get another value
+                if (type == NodeType.STORE)
+                    versions.merge(((VariableNode) node).getSlot(), 1, Integer::sum);
+
+                statements.add(new Statement(expression, node));
+                continue;
+            }
+
+            int arity = arityOf(type);
+            if (stack.size() < arity)
+                return null;
+
+            Occurrence[] args = new Occurrence[arity];
+            for (int i = arity - 1; i >= 0; i--)
+                args[i] = stack.pop();
+
+            String key = keyOf(node, args, versions);
+            Value value = values.get(key);
+            if (value == null) {
+                value = new Value(values.size(), type, arity > 0);
+                values.put(key, value);
+                for (Occurrence arg : args)
+                    arg.value.use(type);
+            }
+
+            stack.push(new Occurrence(node, args, value));
+        }
+
+        if (lambda && stack.size() == 1)
+            statements.add(new Statement(stack.pop(), null));
+
+        if (!stack.isEmpty() || values.values().stream().noneMatch(value -> isShared(value, lambda)))
+            return null;
+
+        return emit(statements, lambda, slots);
+    }
+
+    private Deque<Node> emit(List<Statement> statements, boolean lambda, int slots) {
+        List<Node> out = new ArrayList<>();
+        int[] next = { slots };
+        for (Statement statement : statements) {
+            List<Node> nodes = new ArrayList<>();
+            if (statement.expression != null)
+                emit(statement.expression, nodes, out, lambda, next);
+
+            out.addAll(nodes);
+            if (statement.end != null)
+                out.add(statement.end);
+        }
+
+        Deque<Node> optimized = new ArrayDeque<>(out.size());
+        out.forEach(optimized::push);
+        return optimized;
+    }
+
+    /**
+     * Emits nodes of the occurrence, shared values are loaded from temporaries
+     *
+     * @param nodes nodes of the current expression
+     * @param stores statements which store temporaries, evaluated before the current expression
+     * @param next next free slot
+     */
+    private void emit(Occurrence occurrence, List<Node> nodes, List<Node> stores, boolean lambda, int[] next) {
+        Value value = occurrence.value;
+        if (!isShared(value, lambda)) {
+            for (Occurrence arg : occurrence.args)
+                emit(arg, nodes, stores, lambda, next);
+
+            nodes.add(occurrence.node);
+            return;
+        }
+
+        if (value.slot == VariableNode.UNDEFINED) {
+            List<Node> expression = new ArrayList<>();
+            for (Occurrence arg : occurrence.args)
+                emit(arg, expression, stores, lambda, next);
+
+            expression.add(occurrence.node);
+            value.slot = next[0]++;
+            log.debug("{} is evaluated {} times, stored to ${}", occurrence.node, value.uses, value.slot);
+
+            stores.addAll(expression);
+            stores.add(VariableNode.temporary(NodeType.STORE, occurrence.node.getLocation(), value.slot, lambda));
+        }
+
+        nodes.add(VariableNode.temporary(NodeType.LOAD, occurrence.node.getLocation(), value.slot, lambda));
+    }
+
+
+    /**
+     * Any operator is shared in lambdas, the program shares only calls with sequences
+     */
+    private boolean isShared(Value value, boolean lambda) {
+        if (value.uses < 2 || !value.operator)
+            return false;
+
+        if (value.type == NodeType.MAP)
+            return !value.consumed;
+
+        return lambda || value.type == NodeType.SCAN || value.type == NodeType.REDUCE;
+    }
+
+    /**
+     * @return key which is equal for nodes with equal values
+     */
+    private String keyOf(Node node, Occurrence[] args, Map<Integer, Integer> versions) {
+        StringBuilder key = new StringBuilder(keyOf(node));
+        if (node.is(NodeType.LOAD))
+            key.append('#').append(versions.getOrDefault(((VariableNode) node).getSlot(), 0));
+
+        for (Occurrence arg : args)
+            key.append(' ').append(arg.value.id);
+
+        return key.toString();
+    }
+
+    private String keyOf(Node node) {
+        switch (node.getType()) {
+            case INTEGER:   return "i" + node.toInteger();
+            case DOUBLE:    return "d" + Double.doubleToLongBits(node.toDouble());
+            case STRING:    return "s" + node.getContent();
+            case LOAD:
+            case STORE:     return node.getType() + "@" + ((VariableNode) node).getSlot();
+            case LAMBDA:
+                StringJoiner body = new StringJoiner(" ", "{", "}");
+                ((LambdaNode) node).stack.descendingIterator().forEachRemaining(n -> body.add(keyOf(n)));
+                return body.toString();
+
+            default:        return node.getType().name();
+        }
+    }
+}
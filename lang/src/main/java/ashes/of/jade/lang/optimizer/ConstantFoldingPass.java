@@ -0,0 +1,181 @@
+package ashes.of.jade.lang.optimizer;
+
+import ashes.of.jade.lang.Location;
+import ashes.of.jade.lang.nodes.DoubleNode;
+import ashes.of.jade.lang.nodes.IntNode;
+import ashes.of.jade.lang.nodes.LambdaNode;
+import ashes.of.jade.lang.nodes.Node;
+import ashes.of.jade.lang.nodes.NodeType;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.*;
+
+import static ashes.of.jade.lang.nodes.NodeUtil.arityOf;
+import static ashes.of.jade.lang.nodes.NodeUtil.isOperator;
+import static ashes.of.jade.lang.nodes.NodeUtil.producesValue;
+
+
+/**
+ * Folds operators with constant operands and reduces strength of powers:
+ * x ^ n with small integer n becomes a chain of multiplications and (-1) ^ x becomes parity of x.
+ * Lambda bodies are optimized too, there savings are multiplied by size of the sequence
+ */
+public class ConstantFoldingPass implements Pass {
+    private static final Logger log = LogManager.getLogger(ConstantFoldingPass.class);
+
+    /**
+     * Max exponent replaced by multiplications
+     */
+    private static final int MAX_MULTIPLY_CHAIN = 8;
+
+    /**
+     * Nodes which produce a single value, in evaluation order
+     */
+    private static class Fragment {
+        private final List<Node> nodes = new ArrayList<>();
+
+        private Fragment(Node node) {
+            nodes.add(node);
+        }
+
+        private Fragment() {
+        }
+
+        private boolean isSingle(NodeType type) {
+            return nodes.size() == 1 && nodes.get(0).is(type);
+        }
+
+        private boolean isNumber() {
+            return nodes.size() == 1 && nodes.get(0).isNumber();
+        }
+
+        private Node first() {
+            return nodes.get(0);
+        }
+    }
+
+
+    @Override
+    public Deque<Node> apply(Deque<Node> rpn) {
+        List<Node> out = new ArrayList<>(rpn.size());
+        Deque<Fragment> stack = new ArrayDeque<>();
+
+        Iterator<Node> it = rpn.descendingIterator();
+        while (it.hasNext()) {
+            Node node = it.next();
+            if (node.isLambda()) {
+                LambdaNode lambda = (LambdaNode) node;
+                lambda.stack = apply(lambda.stack);
+            }
+
+            if (isOperator(node) && stack.size() >= 2) {
+                Fragment b = stack.pop();
+                Fragment a = stack.pop();
+                stack.push(operator(node, a, b));
+                continue;
+            }
+
+            if (!producesValue(node.getType())) {
+                // the node ends an expression, nodes before it keep their order
+                drain(stack, out);
+                out.add(node);
+                continue;
+            }
+
+            Fragment fragment = new Fragment();
+            List<Fragment> args = new ArrayList<>();
+            for (int i = 0; i < arityOf(node.getType()) && !stack.isEmpty(); i++)
+                args.add(0, stack.pop());
+
+            args.forEach(arg -> fragment.nodes.addAll(arg.nodes));
+            fragment.nodes.add(node);
+            stack.push(fragment);
+        }
+
+        drain(stack, out);
+
+        Deque<Node> optimized = new ArrayDeque<>(out.size());
+        out.forEach(optimized::push);
+        return optimized;
+    }
+
+    private void drain(Deque<Fragment> stack, List<Node> out) {
+        Iterator<Fragment> it = stack.descendingIterator();
+        while (it.hasNext())
+            out.addAll(it.next().nodes);
+
+        stack.clear();
+    }
+
+
+    /**
+     * A op B
+     */
+    private Fragment operator(Node op, Fragment a, Fragment b) {
+        if (a.isNumber() && b.isNumber()) {
+            Node folded = fold(op, a.first(), b.first());
+            log.debug("fold {} {} {} -> {}", a.first(), op, b.first(), folded);
+            return new Fragment(folded);
+        }
+
+        if (op.is(NodeType.POWER) && a.isSingle(NodeType.INTEGER) && a.first().toInteger() == -1) {
+            log.debug("replace (-1) ^ x with parity at {}", op.getLocation());
+            b.nodes.add(new Node(NodeType.PARITY, op.getLocation()));
+            return b;
+        }
+
+        if (op.is(NodeType.POWER) && a.isSingle(NodeType.LOAD) && b.isSingle(NodeType.INTEGER)) {
+            long power = b.first().toInteger();
+            if (power >= 2 && power <= MAX_MULTIPLY_CHAIN) {
+                log.debug("replace {} ^ {} with multiplications", a.first(), power);
+                Fragment chain = new Fragment(a.first());
+                for (int i = 1; i < power; i++) {
+                    chain.nodes.add(a.first());
+                    chain.nodes.add(new Node(NodeType.MUL, op.getLocation()));
+                }
+
+                return chain;
+            }
+        }
+
+        a.nodes.addAll(b.nodes);
+        a.nodes.add(op);
+        return a;
+    }
+
+    /**
+     * Evaluates operator with the same rules as the interpreter uses
+     */
+    private Node fold(Node op, Node a, Node b) {
+        Location location = a.getLocation();
+        boolean isDouble = a.isDouble() || b.isDouble();
+        switch (op.getType()) {
+            case ADD:
+                return isDouble ?
+                        new DoubleNode(location, a.toDouble() + b.toDouble()) :
+                        new IntNode(location, a.toInteger() + b.toInteger());
+
+            case SUB:
+                return isDouble ?
+                        new DoubleNode(location, a.toDouble() - b.toDouble()) :
+                        new IntNode(location, a.toInteger() - b.toInteger());
+
+            case MUL:
+                return isDouble ?
+                        new DoubleNode(location, a.toDouble() * b.toDouble()) :
+                        new IntNode(location, a.toInteger() * b.toInteger());
+
+            case DIV:
+                return new DoubleNode(location, a.toDouble() / b.toDouble());
+
+            case POWER:
+                double pow = Math.pow(a.toDouble(), b.toDouble());
+                return isDouble ?
+                        new DoubleNode(location, pow) :
+                        new IntNode(location, Math.round(pow));
+        }
+
+        throw new IllegalArgumentException("Unexpected operator: " + op);
+    }
+}
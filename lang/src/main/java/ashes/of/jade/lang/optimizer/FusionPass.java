@@ -0,0 +1,158 @@
+package ashes.of.jade.lang.optimizer;
+
+import ashes.of.jade.lang.nodes.LambdaNode;
+import ashes.of.jade.lang.nodes.Node;
+import ashes.of.jade.lang.nodes.NodeType;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.*;
+
+import static ashes.of.jade.lang.nodes.NodeUtil.arityOf;
+import static ashes.of.jade.lang.nodes.NodeUtil.producesValue;
+
+
+/**
+ * Replaces map with lazy map if the mapped sequence is consumed only once by reduce or
+ * another map, directly or through a variable which is loaded only once. Reduce then maps
+ * and folds each chunk in a single pass, chained maps are composed into one pipeline
+ * and the intermediate sequences are never materialized
+ */
+public class FusionPass implements Pass {
+    private static final Logger log = LogManager.getLogger(FusionPass.class);
+
+    /**
+     * Value on the simulated stack
+     */
+    private static class Value {
+        private static final Value UNKNOWN = new Value(null, null);
+
+        /**
+         * Map node which produces the value
+         */
+        private final Node map;
+
+        /**
+         * Variable from which the value was loaded
+         */
+        private final Variable var;
+
+        private Value(Node map, Variable var) {
+            this.map = map;
+            this.var = var;
+        }
+    }
+
+    /**
+     * Single assignment of a variable
+     */
+    private static class Variable {
+
+        /**
+         * Map node which produces the stored value
+         */
+        private final Node map;
+
+        private int loads;
+        private int consumes;
+
+        private Variable(Node map) {
+            this.map = map;
+        }
+    }
+
+
+    @Override
+    public Deque<Node> apply(Deque<Node> rpn) {
+        List<Node> nodes = new ArrayList<>(rpn.size());
+        rpn.descendingIterator().forEachRemaining(nodes::add);
+
+        Set<Node> fused = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Variable> assignments = new ArrayList<>();
+        Map<String, Variable> vars = new HashMap<>();
+        Deque<Value> stack = new ArrayDeque<>();
+
+        for (Node node : nodes) {
+            switch (node.getType()) {
+                case LAMBDA:
+                    LambdaNode lambda = (LambdaNode) node;
+                    lambda.stack = apply(lambda.stack);
+                    stack.push(Value.UNKNOWN);
+                    break;
+
+                case LOAD:
+                    Variable loaded = vars.get(node.getContent());
+                    if (loaded != null)
+                        loaded.loads++;
+
+                    stack.push(new Value(null, loaded));
+                    break;
+
+                case STORE:
+                    Variable stored = new Variable(pop(stack).map);
+                    vars.put(node.getContent(), stored);
+                    assignments.add(stored);
+                    break;
+
+                case MAP:
+                    pop(stack);
+                    consume(pop(stack), fused);
+                    stack.push(new Value(node, null));
+                    break;
+
+                case REDUCE:
+                case SCAN:
+                    popAll(stack, 2);
+                    consume(pop(stack), fused);
+                    stack.push(Value.UNKNOWN);
+                    break;
+
+                default:
+                    popAll(stack, arityOf(node.getType()));
+                    if (producesValue(node.getType()))
+                        stack.push(Value.UNKNOWN);
+            }
+        }
+
+        for (Variable var : assignments) {
+            if (var.map != null && var.loads == 1 && var.consumes == 1)
+                fused.add(var.map);
+        }
+
+        if (fused.isEmpty())
+            return rpn;
+
+        Deque<Node> optimized = new ArrayDeque<>(rpn.size());
+        for (Node node : nodes) {
+            if (fused.contains(node)) {
+                log.debug("map {} fused into consumer", node);
+                node = new Node(NodeType.LAZYMAP, node.getLocation(), node.getContent());
+            }
+
+            optimized.push(node);
+        }
+
+        return optimized;
+    }
+
+
+    /**
+     * Marks sequence consumed by map or reduce
+     */
+    private void consume(Value seq, Set<Node> fused) {
+        if (seq.map != null)
+            fused.add(seq.map);
+
+        if (seq.var != null)
+            seq.var.consumes++;
+    }
+
+    private Value pop(Deque<Value> stack) {
+        return stack.isEmpty() ? Value.UNKNOWN : stack.pop();
+    }
+
+    private void popAll(Deque<Value> stack, int count) {
+        for (int i = 0; i < count; i++)
+            pop(stack);
+    }
+}
@@ -0,0 +1,36 @@
+package ashes.of.jade.lang.optimizer;
+
+import ashes.of.jade.lang.nodes.Node;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+
+/**
+ * Runs optimization passes over parsed program before evaluation
+ */
+public class Optimizer {
+    private static final Logger log = LogManager.getLogger(Optimizer.class);
+
+    private final List<Pass> passes;
+
+    public Optimizer(List<Pass> passes) {
+        this.passes = passes;
+    }
+
+    public Optimizer() {
+        this(Arrays.asList(new ConstantFoldingPass(), new CommonSubexpressionPass(), new FusionPass()));
+    }
+
+    public Deque<Node> optimize(Deque<Node> rpn) {
+        for (Pass pass : passes) {
+            rpn = pass.apply(rpn);
+            log.debug("{} -> {}", pass.getClass().getSimpleName(), rpn);
+        }
+
+        return rpn;
+    }
+}
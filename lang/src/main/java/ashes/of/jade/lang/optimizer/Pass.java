@@ -0,0 +1,18 @@
+package ashes.of.jade.lang.optimizer;
+
+import ashes.of.jade.lang.nodes.Node;
+
+import java.util.Deque;
+
+
+/**
+ * Transformation of a program in reverse polish notation
+ */
+public interface Pass {
+
+    /**
+     * @param rpn program nodes, the last node is evaluated first
+     * @return transformed program in the same order
+     */
+    Deque<Node> apply(Deque<Node> rpn);
+}
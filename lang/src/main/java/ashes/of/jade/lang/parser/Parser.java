@@ -19,6 +19,7 @@ public class Parser {
 
 
     private final Deque<Scope> scopes = new ArrayDeque<>();
+    private final SlotResolver resolver = new SlotResolver();
 
     /**
      * expr ::= expr op expr | (expr) | identifier | { expr, expr } | number | map(expr, identifier -> expr) | reduce(expr, expr, identifier identifier -> expr)
@@ -74,6 +75,7 @@ public class Parser {
 
                 case MAP:
                 case REDUCE:
+                case SCAN:
                 case OUT:
                 case PRINT:
                     parseFunction(current, lexem);
@@ -110,8 +112,9 @@ public class Parser {
         log.trace("End of parse. stack -> push");
         scope.drainStackToOut();
 
-        log.info("out   <-- {}", scope.out);
-        return scope.out;
+        Deque<Node> rpn = resolver.resolve(scope.out);
+        log.info("out   <-- {}", rpn);
+        return rpn;
     }
 
 
@@ -0,0 +1,80 @@
+package ashes.of.jade.lang.parser;
+
+import ashes.of.jade.lang.nodes.LambdaNode;
+import ashes.of.jade.lang.nodes.Node;
+import ashes.of.jade.lang.nodes.NodeType;
+import ashes.of.jade.lang.nodes.VariableNode;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+
+/**
+ * Resolves variable names of LOAD and STORE nodes to slots.
+ * Global variables get slots in order of the first assignment, lambda parameters
+ * get slots in their own space, so lambda is evaluated without lookup by name
+ */
+class SlotResolver {
+
+    /**
+     * @param rpn program nodes
+     * @return nodes with variables replaced by {@link VariableNode},
+     *         variables used before assignment get {@link VariableNode#UNDEFINED} slot
+     */
+    public Deque<Node> resolve(Deque<Node> rpn) {
+        return resolve(rpn, new HashMap<>(), false);
+    }
+
+    private Deque<Node> resolve(Deque<Node> rpn, Map<String, Integer> slots, boolean param) {
+        Deque<Node> resolved = new ArrayDeque<>();
+
+        Iterator<Node> it = rpn.descendingIterator();
+        while (it.hasNext()) {
+            Node node = it.next();
+            switch (node.getType()) {
+                case STORE:
+                    int slot = slots.computeIfAbsent(node.getContent(), name -> slots.size());
+                    node = new VariableNode(NodeType.STORE, node.getLocation(), node.getContent(), slot, param);
+                    break;
+
+                case LOAD:
+                    int loaded = slots.getOrDefault(node.getContent(), VariableNode.UNDEFINED);
+                    node = new VariableNode(NodeType.LOAD, node.getLocation(), node.getContent(), loaded, param);
+                    break;
+
+                case LAMBDA:
+                    resolve((LambdaNode) node);
+                    break;
+            }
+
+            resolved.push(node);
+        }
+
+        return resolved;
+    }
+
+    /**
+     * Lambda starts with stores of parameters from the last one to the first one
+     */
+    private void resolve(LambdaNode lambda) {
+        Map<String, Integer> params = new HashMap<>();
+        Iterator<Node> it = lambda.stack.descendingIterator();
+        Deque<String> names = new ArrayDeque<>();
+        while (it.hasNext()) {
+            Node node = it.next();
+            if (!node.is(NodeType.STORE))
+                break;
+
+            names.push(node.getContent());
+        }
+
+        for (String name : names)
+            params.putIfAbsent(name, params.size());
+
+        lambda.stack = resolve(lambda.stack, params, true);
+        lambda.setParams(params.size());
+    }
+}
@@ -0,0 +1,102 @@
+package ashes.of.jade.lang.program;
+
+import ashes.of.jade.lang.Location;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+
+/**
+ * Liveness analysis of a compiled program for evaluation when only output matters.
+ * Statements are walked from the last one to the first one tracking variables which are read later:
+ * a store to a variable which is never read is removed with its whole statement
+ * and the last read of every variable becomes {@link Program#LOADLAST}, so sequences are released
+ * as soon as they aren't needed. Lambdas can't see global variables and are left as is
+ */
+public class Liveness {
+    private static final Logger log = LogManager.getLogger(Liveness.class);
+
+    /**
+     * @param program valid program, every statement ends with STORE, OUT or PRINT
+     * @return program without dead statements
+     */
+    public Program apply(Program program) {
+        int[] code = program.getCode();
+        List<int[]> statements = statements(code);
+
+        BitSet live = new BitSet(program.getSlots());
+        boolean[] kept = new boolean[statements.size()];
+        boolean[] last = new boolean[code.length];
+        for (int i = statements.size() - 1; i >= 0; i--) {
+            int start = statements.get(i)[0];
+            int end = statements.get(i)[1];
+
+            int endOp = code[end - Program.INSTRUCTION_SIZE];
+            int endOperand = code[end - Program.INSTRUCTION_SIZE + 1];
+            if (endOp == Program.STORE) {
+                if (!live.get(endOperand)) {
+                    log.debug("statement {} stores {} which is never read", program.getLocation(start), program.getName(endOperand));
+                    continue;
+                }
+
+                live.clear(endOperand);
+            }
+
+            kept[i] = true;
+            for (int pc = end - Program.INSTRUCTION_SIZE; pc >= start; pc -= Program.INSTRUCTION_SIZE) {
+                if (code[pc] == Program.LOAD && !live.get(code[pc + 1])) {
+                    last[pc] = true;
+                    live.set(code[pc + 1]);
+                }
+            }
+        }
+
+        int[] optimized = new int[code.length];
+        List<Location> locations = new ArrayList<>();
+        int size = 0;
+        for (int i = 0; i < statements.size(); i++) {
+            if (!kept[i])
+                continue;
+
+            for (int pc = statements.get(i)[0]; pc < statements.get(i)[1]; pc += Program.INSTRUCTION_SIZE) {
+                optimized[size++] = last[pc] ? Program.LOADLAST : code[pc];
+                optimized[size++] = code[pc + 1];
+                locations.add(program.getLocation(pc));
+            }
+        }
+
+        Program result = new Program(
+                Arrays.copyOf(optimized, size),
+                program.getConstants(),
+                locations.toArray(new Location[0]),
+                program.getNames(),
+                program.getMaxDepth());
+
+        log.debug("liveness {} -> {} instructions: {}", program.size(), result.size(), result);
+        return result;
+    }
+
+    /**
+     * @return bounds of statements as [start, end) pairs of code indexes
+     */
+    private List<int[]> statements(int[] code) {
+        List<int[]> statements = new ArrayList<>();
+        int start = 0;
+        for (int pc = 0; pc < code.length; pc += Program.INSTRUCTION_SIZE) {
+            int opcode = code[pc];
+            if (opcode == Program.STORE || opcode == Program.OUT || opcode == Program.PRINT) {
+                statements.add(new int[] {start, pc + Program.INSTRUCTION_SIZE});
+                start = pc + Program.INSTRUCTION_SIZE;
+            }
+        }
+
+        if (start < code.length)
+            statements.add(new int[] {start, code.length});
+
+        return statements;
+    }
+}
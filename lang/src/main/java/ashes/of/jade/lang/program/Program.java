@@ -0,0 +1,123 @@
+package ashes.of.jade.lang.program;
+
+import ashes.of.jade.lang.Location;
+import ashes.of.jade.lang.nodes.Node;
+
+import java.util.Arrays;
+
+
+/**
+ * Compiled program or lambda body.
+ * Code is a flat array of instructions, each instruction is an opcode followed by an operand:
+ * index in the constant pool for constants, slot for variables and zero for everything else.
+ * Program is immutable and can be evaluated by several threads at once
+ */
+public class Program {
+
+    public static final int INSTRUCTION_SIZE = 2;
+
+    public static final int CONST       = 0;
+    public static final int LOAD        = 1;
+    public static final int STORE       = 2;
+    public static final int ADD         = 3;
+    public static final int SUB         = 4;
+    public static final int MUL         = 5;
+    public static final int DIV         = 6;
+    public static final int POWER       = 7;
+    public static final int NEWSEQUENCE = 8;
+    public static final int MAP         = 9;
+    public static final int LAZYMAP     = 10;
+    public static final int REDUCE      = 11;
+    public static final int OUT         = 12;
+    public static final int PRINT       = 13;
+    public static final int PARITY      = 14;
+
+    /**
+     * Loads variable for the last time, sequence is released from the scope
+     */
+    public static final int LOADLAST    = 15;
+
+    public static final int SCAN        = 16;
+
+    private final int[] code;
+    private final Node[] constants;
+    private final Location[] locations;
+    private final String[] names;
+    private final int maxDepth;
+
+    Program(int[] code, Node[] constants, Location[] locations, String[] names, int maxDepth) {
+        this.code = code;
+        this.constants = constants;
+        this.locations = locations;
+        this.names = names;
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * @return instructions, the array must not be modified
+     */
+    public int[] getCode() {
+        return code;
+    }
+
+    public Node getConstant(int index) {
+        return constants[index];
+    }
+
+    Node[] getConstants() {
+        return constants;
+    }
+
+    /**
+     * @param pc index of the instruction in code
+     * @return location of the source node of the instruction
+     */
+    public Location getLocation(int pc) {
+        return locations[pc / INSTRUCTION_SIZE];
+    }
+
+    /**
+     * @return name of the variable in slot
+     */
+    public String getName(int slot) {
+        return names[slot];
+    }
+
+    String[] getNames() {
+        return names;
+    }
+
+    /**
+     * @return number of variable slots
+     */
+    public int getSlots() {
+        return names.length;
+    }
+
+    /**
+     * @return max size of the stack during evaluation, including initial values
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public int size() {
+        return code.length / INSTRUCTION_SIZE;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder b = new StringBuilder("Program{maxDepth=").append(maxDepth).append(", code=[");
+        for (int pc = 0; pc < code.length; pc += INSTRUCTION_SIZE) {
+            if (pc > 0)
+                b.append(", ");
+
+            b.append(code[pc]).append(':').append(code[pc + 1]);
+        }
+
+        return b.append("], constants=").append(Arrays.toString(constants))
+                .append(", names=").append(Arrays.toString(names))
+                .append('}')
+                .toString();
+    }
+}
@@ -0,0 +1,129 @@
+package ashes.of.jade.lang.program;
+
+import ashes.of.jade.lang.Location;
+import ashes.of.jade.lang.nodes.LambdaNode;
+import ashes.of.jade.lang.nodes.Node;
+import ashes.of.jade.lang.nodes.NodeUtil;
+import ashes.of.jade.lang.nodes.VariableNode;
+import ashes.of.jade.lang.parser.ParseException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+
+
+/**
+ * Compiles nodes in reverse polish notation to {@link Program}.
+ * Lambdas are compiled to their own programs which are attached to lambda nodes
+ */
+public class ProgramCompiler {
+    private static final Logger log = LogManager.getLogger(ProgramCompiler.class);
+
+    /**
+     * @param rpn program nodes with resolved variables
+     * @return compiled program
+     * @throws ParseException if variable is used before assignment
+     */
+    public Program compile(Deque<Node> rpn) {
+        Program program = compile(rpn, 0);
+        log.debug("compiled {} nodes to {}", rpn.size(), program);
+        return program;
+    }
+
+    /**
+     * @param lambda lambda node with resolved parameters
+     * @return compiled body, parameters are expected on the stack
+     */
+    public Program compile(LambdaNode lambda) {
+        return compile(lambda.getNodes(), lambda.getParams());
+    }
+
+    private Program compile(Deque<Node> rpn, int params) {
+        int[] code = new int[rpn.size() * Program.INSTRUCTION_SIZE];
+        List<Node> constants = new ArrayList<>();
+        List<Location> locations = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+
+        int pc = 0;
+        int depth = params;
+        int maxDepth = params;
+        Iterator<Node> it = rpn.descendingIterator();
+        while (it.hasNext()) {
+            Node node = it.next();
+            int opcode = opcodeOf(node);
+            if (opcode < 0)
+                continue;
+
+            int operand = 0;
+            switch (opcode) {
+                case Program.CONST:
+                    if (node.isLambda())
+                        ((LambdaNode) node).setProgram(compile((LambdaNode) node));
+
+                    operand = constants.size();
+                    constants.add(node);
+                    break;
+
+                case Program.LOAD:
+                case Program.STORE:
+                    operand = ((VariableNode) node).getSlot();
+                    if (operand == VariableNode.UNDEFINED)
+                        throw new ParseException(node.getContent(), node.getLocation(), "Variable %s is not defined", node.getContent());
+
+                    while (names.size() <= operand)
+                        names.add(null);
+
+                    // temporaries aren't named, so they aren't visible in scope
+                    if (!((VariableNode) node).isTemporary())
+                        names.set(operand, node.getContent());
+                    break;
+            }
+
+            code[pc++] = opcode;
+            code[pc++] = operand;
+            locations.add(node.getLocation());
+
+            depth += (NodeUtil.producesValue(node.getType()) ? 1 : 0) - NodeUtil.arityOf(node.getType());
+            maxDepth = Math.max(maxDepth, depth);
+        }
+
+        return new Program(
+                Arrays.copyOf(code, pc),
+                constants.toArray(new Node[0]),
+                locations.toArray(new Location[0]),
+                names.toArray(new String[0]),
+                maxDepth);
+    }
+
+    /**
+     * @return opcode or -1 if node isn't evaluated
+     */
+    private int opcodeOf(Node node) {
+        switch (node.getType()) {
+            case INTEGER:
+            case DOUBLE:
+            case STRING:
+            case LAMBDA:        return Program.CONST;
+            case LOAD:          return Program.LOAD;
+            case STORE:         return Program.STORE;
+            case ADD:           return Program.ADD;
+            case SUB:           return Program.SUB;
+            case MUL:           return Program.MUL;
+            case DIV:           return Program.DIV;
+            case POWER:         return Program.POWER;
+            case PARITY:        return Program.PARITY;
+            case NEWSEQUENCE:   return Program.NEWSEQUENCE;
+            case MAP:           return Program.MAP;
+            case LAZYMAP:       return Program.LAZYMAP;
+            case REDUCE:        return Program.REDUCE;
+            case SCAN:          return Program.SCAN;
+            case OUT:           return Program.OUT;
+            case PRINT:         return Program.PRINT;
+            default:            return -1;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package ashes.of.jade.lang.validator;
+
+import ashes.of.jade.lang.interpreter.EvalException;
+import ashes.of.jade.lang.parser.ParseException;
+
+import java.util.List;
+
+
+/**
+ * Program has errors found before evaluation.
+ * Location and message are taken from the first error, all errors are available with {@link #getErrors()}
+ */
+public class ValidationException extends EvalException {
+
+    private final List<ParseException> errors;
+
+    public ValidationException(List<ParseException> errors) {
+        super(errors.get(0).getContent(), errors.get(0).getLocation(), "%s%s",
+                errors.get(0).getMessage(),
+                errors.size() > 1 ? " (and " + (errors.size() - 1) + " more errors)" : "");
+        this.errors = errors;
+    }
+
+    public List<ParseException> getErrors() {
+        return errors;
+    }
+}
@@ -0,0 +1,346 @@
+package ashes.of.jade.lang.validator;
+
+import ashes.of.jade.lang.Location;
+import ashes.of.jade.lang.engine.Expression;
+import ashes.of.jade.lang.interpreter.EvalException;
+import ashes.of.jade.lang.nodes.LambdaNode;
+import ashes.of.jade.lang.nodes.Node;
+import ashes.of.jade.lang.nodes.NodeType;
+import ashes.of.jade.lang.nodes.VariableNode;
+import ashes.of.jade.lang.parser.ParseException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+import static ashes.of.jade.lang.nodes.NodeUtil.arityOf;
+import static ashes.of.jade.lang.nodes.NodeUtil.producesValue;
+
+
+/**
+ * Checks parsed program before evaluation: stack balance of every statement and lambda,
+ * definitions of variables and kinds of operands. Types of values are inferred statically,
+ * lambda bodies are checked with types of their arguments. Errors have the same messages
+ * and locations as the interpreter would report, but all of them are found at once
+ */
+public class Validator {
+    private static final Logger log = LogManager.getLogger(Validator.class);
+
+    /**
+     * Statically known type of a value on the stack
+     */
+    private static class Type {
+        private static final Type UNKNOWN = new Type(null, null, null, Location.EMPTY, "");
+
+        /**
+         * INTEGER, DOUBLE, STRING, SEQUENCE, LAMBDA or null if type is unknown
+         */
+        private final NodeType type;
+
+        /**
+         * Type of sequence elements, INTEGER, DOUBLE or null if unknown
+         */
+        private final NodeType element;
+
+        private final LambdaNode lambda;
+        private final Location location;
+        private final String content;
+
+        private Type(NodeType type, NodeType element, LambdaNode lambda, Location location, String content) {
+            this.type = type;
+            this.element = element;
+            this.lambda = lambda;
+            this.location = location;
+            this.content = content;
+        }
+
+        private static Type of(NodeType type, Location location) {
+            return type == null ? UNKNOWN : new Type(type, null, null, location, "");
+        }
+
+        private static Type seq(NodeType element, Location location) {
+            return new Type(NodeType.SEQUENCE, element, null, location, "");
+        }
+
+        private boolean isKnown() {
+            return type != null;
+        }
+
+        private boolean isNumber() {
+            return type == NodeType.INTEGER || type == NodeType.DOUBLE;
+        }
+
+        private Type element() {
+            return of(element, location);
+        }
+
+        @Override
+        public String toString() {
+            return type == NodeType.SEQUENCE ? "SEQUENCE<" + element + ">" : String.valueOf(type);
+        }
+    }
+
+    /**
+     * Errors found in one program, the same error found in several applications of a lambda is reported once
+     */
+    private static class Errors {
+        private final Map<String, ParseException> errors = new LinkedHashMap<>();
+
+        private void add(ParseException e) {
+            errors.putIfAbsent(e.getLocation() + " " + e.getMessage(), e);
+        }
+
+        private List<ParseException> toList() {
+            return new ArrayList<>(errors.values());
+        }
+    }
+
+
+    /**
+     * @param rpn program nodes with resolved variables
+     * @return all errors found in order of evaluation, empty list if program is valid
+     */
+    public List<ParseException> validate(Deque<Node> rpn) {
+        Errors errors = new Errors();
+        Deque<Type> stack = check(rpn, new ArrayDeque<>(), errors);
+        checkBalance(stack, errors);
+
+        List<ParseException> found = errors.toList();
+        log.debug("validation found {} errors: {}", found.size(), found);
+        return found;
+    }
+
+    /**
+     * Evaluates types of nodes
+     *
+     * @param rpn nodes in reverse polish notation
+     * @param stack initial stack, lambda arguments
+     * @return stack after evaluation
+     */
+    private Deque<Type> check(Deque<Node> rpn, Deque<Type> stack, Errors errors) {
+        Map<Integer, Type> vars = new HashMap<>();
+
+        Iterator<Node> it = rpn.descendingIterator();
+        while (it.hasNext()) {
+            Node node = it.next();
+            if (node.is(NodeType.NL) || node.is(NodeType.EOF)) {
+                checkBalance(stack, errors);
+                continue;
+            }
+
+            int arity = arityOf(node.getType());
+            if (stack.size() < arity) {
+                errors.add(underflow(node, stack.size(), arity));
+                stack.clear();
+                if (producesValue(node.getType()))
+                    stack.push(Type.UNKNOWN);
+                continue;
+            }
+
+            switch (node.getType()) {
+                case INTEGER:
+                case DOUBLE:
+                case STRING:
+                    stack.push(new Type(node.getType(), null, null, node.getLocation(), node.getContent()));
+                    break;
+
+                case LAMBDA:
+                    stack.push(new Type(NodeType.LAMBDA, null, (LambdaNode) node, node.getLocation(), node.getContent()));
+                    break;
+
+                case LOAD:
+                    VariableNode var = (VariableNode) node;
+                    if (var.getSlot() == VariableNode.UNDEFINED)
+                        errors.add(new ParseException(node.getContent(), node.getLocation(), "Variable %s is not defined", node.getContent()));
+
+                    stack.push(vars.getOrDefault(var.getSlot(), Type.UNKNOWN));
+                    break;
+
+                case STORE:
+                    vars.put(((VariableNode) node).getSlot(), stack.pop());
+                    break;
+
+                case ADD:
+                case SUB:
+                case MUL:
+                case DIV:
+                case POWER:
+                    Type b = pop(stack, Type::isNumber, "Expected Number", errors);
+                    Type a = pop(stack, Type::isNumber, "Expected Number", errors);
+                    stack.push(operator(node.getType(), a, b));
+                    break;
+
+                case PARITY:
+                    Type power = pop(stack, Type::isNumber, "Expected Number", errors);
+                    stack.push(Type.of(power.type, power.location));
+                    break;
+
+                case NEWSEQUENCE:
+                    pop(stack, t -> t.type == NodeType.INTEGER, "Expected Integer", errors);
+                    pop(stack, t -> t.type == NodeType.INTEGER, "Expected Integer", errors);
+                    stack.push(Type.seq(NodeType.INTEGER, node.getLocation()));
+                    break;
+
+                case MAP:
+                case LAZYMAP:
+                    stack.push(map(stack, errors));
+                    break;
+
+                case REDUCE:
+                    stack.push(reduce(stack, errors));
+                    break;
+
+                case SCAN:
+                    stack.push(scan(stack, errors));
+                    break;
+
+                case OUT:
+                    pop(stack, t -> t.isNumber() || t.type == NodeType.SEQUENCE, "Expected Number or Sequence", errors);
+                    break;
+
+                case PRINT:
+                    pop(stack, t -> t.type == NodeType.STRING, "Expected String", errors);
+                    break;
+            }
+        }
+
+        return stack;
+    }
+
+    /**
+     * Error of the interpreter when node is evaluated with not enough values on the stack
+     */
+    private ParseException underflow(Node node, int size, int arity) {
+        return arity == 1 ?
+                new EvalException(node.getLocation(), "Stack is empty") :
+                new EvalException(node.getLocation(), "Stack size %d is less than %d", size, arity);
+    }
+
+    /**
+     * Every statement should consume all values it produces
+     */
+    private void checkBalance(Deque<Type> stack, Errors errors) {
+        Iterator<Type> it = stack.descendingIterator();
+        while (it.hasNext()) {
+            Type value = it.next();
+            errors.add(new EvalException(value.content, value.location, "Unexpected expression"));
+        }
+
+        stack.clear();
+    }
+
+    private Type pop(Deque<Type> stack, Predicate<Type> predicate, String message, Errors errors) {
+        Type type = stack.pop();
+        if (type.isKnown() && !predicate.test(type)) {
+            errors.add(new EvalException(type.content, type.location, "Invalid type: " + message));
+            return Type.UNKNOWN;
+        }
+
+        return type;
+    }
+
+    /**
+     * A op B, the interpreter keeps location of A for all operators but power
+     */
+    private Type operator(NodeType op, Type a, Type b) {
+        if (op == NodeType.DIV)
+            return Type.of(NodeType.DOUBLE, a.location);
+
+        if (!a.isKnown() || !b.isKnown())
+            return Type.UNKNOWN;
+
+        Location location = op == NodeType.POWER ? Location.EMPTY : a.location;
+        return Type.of(Expression.typeOf(op, a.type, b.type), location);
+    }
+
+    private Type map(Deque<Type> stack, Errors errors) {
+        Type lambda = pop(stack, t -> t.type == NodeType.LAMBDA, "Expected Lambda", errors);
+        Type seq = pop(stack, t -> t.type == NodeType.SEQUENCE, "Expected Sequence", errors);
+
+        Type element = apply(lambda, errors, seq.element());
+        if (element.isKnown() && !element.isNumber()) {
+            errors.add(new EvalException(element.content, element.location, "Invalid type: Expected number"));
+            element = Type.UNKNOWN;
+        }
+
+        return seq.isKnown() ? Type.seq(element.type, seq.location) : Type.UNKNOWN;
+    }
+
+    /**
+     * Elements are reduced in chunks, then chunk results are combined and finally combined with the accumulator
+     */
+    private Type reduce(Deque<Type> stack, Errors errors) {
+        Type lambda = pop(stack, t -> t.type == NodeType.LAMBDA, "Expected Lambda", errors);
+        Type acc = pop(stack, Type::isNumber, "Expected Number", errors);
+        Type seq = pop(stack, t -> t.type == NodeType.SEQUENCE, "Expected Sequence", errors);
+
+        Type element = seq.element();
+        Type reduced = join(element, apply(lambda, errors, element, element));
+        reduced = join(reduced, apply(lambda, errors, reduced, element));
+        reduced = join(reduced, apply(lambda, errors, reduced, reduced));
+
+        return apply(lambda, errors, acc, reduced);
+    }
+
+    /**
+     * Elements are scanned in blocks from offsets combined of the accumulator and reduced blocks,
+     * so the lambda is applied to the same types as in reduce and to the results of previous elements
+     */
+    private Type scan(Deque<Type> stack, Errors errors) {
+        Type lambda = pop(stack, t -> t.type == NodeType.LAMBDA, "Expected Lambda", errors);
+        Type acc = pop(stack, Type::isNumber, "Expected Number", errors);
+        Type seq = pop(stack, t -> t.type == NodeType.SEQUENCE, "Expected Sequence", errors);
+
+        Type element = seq.element();
+        Type reduced = join(element, apply(lambda, errors, element, element));
+        reduced = join(reduced, apply(lambda, errors, reduced, element));
+
+        Type scanned = apply(lambda, errors, acc, element);
+        scanned = join(scanned, apply(lambda, errors, scanned, reduced));
+        scanned = join(scanned, apply(lambda, errors, scanned, element));
+        if (scanned.isKnown() && !scanned.isNumber()) {
+            errors.add(new EvalException(scanned.content, scanned.location, "Invalid type: Expected number"));
+            scanned = Type.UNKNOWN;
+        }
+
+        return seq.isKnown() ? Type.seq(scanned.type, seq.location) : Type.UNKNOWN;
+    }
+
+    /**
+     * @return common type of values, double if one of them is integer and another is double
+     */
+    private Type join(Type a, Type b) {
+        if (a.type == b.type)
+            return a;
+
+        if (a.isNumber() && b.isNumber())
+            return Type.of(NodeType.DOUBLE, a.location);
+
+        return Type.UNKNOWN;
+    }
+
+    /**
+     * Evaluates type of lambda body with types of arguments
+     */
+    private Type apply(Type lambda, Errors errors, Type... args) {
+        if (lambda.lambda == null)
+            return Type.UNKNOWN;
+
+        Deque<Type> stack = new ArrayDeque<>();
+        for (Type arg : args)
+            stack.push(arg);
+
+        stack = check(lambda.lambda.getNodes(), stack, errors);
+        if (stack.isEmpty()) {
+            errors.add(new EvalException(lambda.content, lambda.location, "Lambda should return a value"));
+            return Type.UNKNOWN;
+        }
+
+        Type result = stack.pop();
+        checkBalance(stack, errors);
+
+        log.trace("lambda {} with arguments {} returns {}", lambda.location, Arrays.toString(args), result);
+        return result;
+    }
+}
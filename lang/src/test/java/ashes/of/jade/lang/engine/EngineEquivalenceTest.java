@@ -0,0 +1,82 @@
+package ashes.of.jade.lang.engine;
+
+import ashes.of.jade.lang.interpreter.ExecutionPool;
+import ashes.of.jade.lang.interpreter.Interpreter;
+import ashes.of.jade.lang.interpreter.Scope;
+import ashes.of.jade.lang.interpreter.Settings;
+import ashes.of.jade.lang.lexer.Lexer;
+import ashes.of.jade.lang.parser.Parser;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * Every engine should return exactly the same results as the interpreter
+ */
+@RunWith(Parameterized.class)
+public class EngineEquivalenceTest {
+
+    private static final String SOURCE =
+            "var n = 5000\n" +
+            "var sequence = map({0, n}, i -> (-1)^i / (2 * i + 1))\n" +
+            "var pi = 4 * reduce(sequence, 0, x y -> x + y)\n" +
+            "var squares = map(map({0, n}, x -> x * x), x -> x - 1)\n" +
+            "var sum = reduce(squares, 0, x y -> x + y)\n" +
+            "var nested = map({1, 10}, x -> reduce({0, x}, 0, a b -> a + b))\n" +
+            "var product = reduce({1, 10}, 1, x y -> x * y)\n" +
+            "var powers = map({0, 10}, x -> 2 ^ x - x ^ 0.5)\n" +
+            "var signs = map({0, 10}, x -> x ^ 3 + (-1) ^ (x * 1.0) * 2.5 - (-1) ^ x)\n" +
+            "var ratio = reduce(map({1, 100}, x -> x * 2), 1, x y -> x / y)\n" +
+            "var shared = map({0, n}, i -> (2 * i + 1) * (2 * i + 1) / (2 * i + 1 + 3) - (i * 0.5 + 1) * (i * 0.5 + 1))";
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<EngineType> engines() {
+        return Arrays.asList(EngineType.values());
+    }
+
+    private final EngineType engine;
+
+    private Scope expected;
+
+    public EngineEquivalenceTest(EngineType engine) {
+        this.engine = engine;
+    }
+
+    private Interpreter interpreter(EngineType engine) {
+        Settings settings = new Settings();
+        settings.setEngine(engine);
+        settings.setMapParallelismSize(1000);
+        settings.setReduceParallelismSize(1000);
+
+        return new Interpreter(ExecutionPool.common(), settings, new Lexer(), new Parser());
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        expected = interpreter(EngineType.INTERPRETER).eval(SOURCE);
+    }
+
+
+    @Test
+    public void engineShouldReturnSameNumbers() throws Exception {
+        Scope actual = interpreter(engine).eval(SOURCE);
+
+        for (String var : new String[] { "pi", "sum", "product", "ratio" })
+            assertEquals(var, expected.load(var), actual.load(var));
+    }
+
+    @Test
+    public void engineShouldReturnSameSequences() throws Exception {
+        Scope actual = interpreter(engine).eval(SOURCE);
+
+        for (String var : new String[] { "squares", "nested", "powers", "signs", "shared" })
+            assertArrayEquals(var, expected.load(var).toSeq().getSeq(), actual.load(var).toSeq().getSeq());
+    }
+}
@@ -0,0 +1,73 @@
+package ashes.of.jade.lang.engine.bytecode;
+
+import ashes.of.jade.lang.engine.Frame;
+import ashes.of.jade.lang.engine.LambdaFunction;
+import ashes.of.jade.lang.lexer.Lexer;
+import ashes.of.jade.lang.nodes.LambdaNode;
+import ashes.of.jade.lang.nodes.Node;
+import ashes.of.jade.lang.nodes.NodeType;
+import ashes.of.jade.lang.parser.Parser;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BytecodeEngineTest {
+
+    private BytecodeEngine engine;
+
+    @Before
+    public void setUp() throws Exception {
+        engine = new BytecodeEngine();
+    }
+
+    private LambdaNode lambda(String source) {
+        return (LambdaNode) new Parser()
+                .parse(new Lexer().parse("var f = map({0, 1}, " + source + ")"))
+                .stream()
+                .filter(Node::isLambda)
+                .findFirst()
+                .orElseThrow(AssertionError::new);
+    }
+
+    private Frame frame(long[] longs, double[] doubles) {
+        Frame frame = new Frame();
+        System.arraycopy(longs, 0, frame.longs, 0, longs.length);
+        System.arraycopy(doubles, 0, frame.doubles, 0, doubles.length);
+        return frame;
+    }
+
+
+    @Test
+    public void engineShouldCompileIntegerLambda() throws Exception {
+        LambdaFunction f = engine.compile(lambda("x -> x * x - 3 + 2 ^ 3"), NodeType.INTEGER);
+
+        assertNotNull(f);
+        assertEquals(NodeType.INTEGER, f.getType());
+        assertEquals(105, f.applyAsLong(frame(new long[] { 10 }, new double[1])));
+        assertEquals(105.0, f.applyAsDouble(frame(new long[] { 10 }, new double[1])), 0.00001);
+    }
+
+    @Test
+    public void engineShouldCompileLambdaWithDivisionToDouble() throws Exception {
+        LambdaFunction f = engine.compile(lambda("i -> (-1)^i / (2 * i + 1)"), NodeType.INTEGER);
+
+        assertNotNull(f);
+        assertEquals(NodeType.DOUBLE, f.getType());
+        assertEquals(-1.0 / 7, f.applyAsDouble(frame(new long[] { 3 }, new double[1])), 0.00001);
+    }
+
+    @Test
+    public void engineShouldCompileBinaryLambdaWithMixedParameterTypes() throws Exception {
+        LambdaFunction f = engine.compile(lambda("x y -> x - y * 2"), NodeType.DOUBLE, NodeType.INTEGER);
+
+        assertNotNull(f);
+        assertEquals(NodeType.DOUBLE, f.getType());
+        assertEquals(0.5, f.applyAsDouble(frame(new long[] { 0, 3 }, new double[] { 6.5, 0 })), 0.00001);
+    }
+
+    @Test
+    public void engineShouldNotCompileLambdaWithSequences() throws Exception {
+        assertNull(engine.compile(lambda("x -> reduce({0, x}, 0, a b -> a + b)"), NodeType.INTEGER));
+    }
+}
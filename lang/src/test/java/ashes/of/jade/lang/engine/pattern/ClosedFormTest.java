@@ -0,0 +1,142 @@
+package ashes.of.jade.lang.engine.pattern;
+
+import ashes.of.jade.lang.Location;
+import ashes.of.jade.lang.engine.Expression;
+import ashes.of.jade.lang.interpreter.EvalException;
+import ashes.of.jade.lang.interpreter.ExecutionPool;
+import ashes.of.jade.lang.interpreter.Interpreter;
+import ashes.of.jade.lang.interpreter.Settings;
+import ashes.of.jade.lang.lexer.Lexer;
+import ashes.of.jade.lang.nodes.*;
+import ashes.of.jade.lang.parser.Parser;
+import org.junit.Test;
+
+import java.util.function.LongUnaryOperator;
+import java.util.function.UnaryOperator;
+
+import static org.junit.Assert.*;
+
+public class ClosedFormTest {
+
+    private static final Location LOCATION = new Location(0, 1, 1);
+
+    private LambdaNode lambda(String source) {
+        return (LambdaNode) new Parser()
+                .parse(new Lexer().parse("var f = map({0, 1}, " + source + ")"))
+                .stream()
+                .filter(Node::isLambda)
+                .findFirst()
+                .orElseThrow(AssertionError::new);
+    }
+
+    private Polynomial polynomial(String source) {
+        return Polynomial.of(Expression.of(lambda(source), NodeType.INTEGER));
+    }
+
+    private MappedSequenceNode map(SequenceNode seq, String source, LongUnaryOperator f) {
+        UnaryOperator<Node> mapper = node -> new IntNode(f.applyAsLong(node.toInteger()));
+        return new MappedSequenceNode(LOCATION, seq, lambda(source), mapper);
+    }
+
+    private long sum(SequenceNode seq) {
+        long sum = 0;
+        for (int i = 0; i < seq.size(); i++)
+            sum += seq.getLong(i);
+
+        return sum;
+    }
+
+
+    @Test
+    public void polynomialShouldEvaluateAsLambda() throws Exception {
+        Polynomial p = polynomial("x -> (x - 1) * (x + 2) * x - 3 * x + 4");
+
+        assertEquals(3, p.degree());
+        for (long x : new long[] { 0, 1, -5, 1L << 40, Long.MAX_VALUE, Long.MIN_VALUE })
+            assertEquals((x - 1) * (x + 2) * x - 3 * x + 4, p.apply(x));
+    }
+
+    @Test
+    public void polynomialShouldNotMatchNonPolynomialLambdas() throws Exception {
+        assertNull(polynomial("x -> x ^ 2"));
+        assertNull(polynomial("x -> x / 2"));
+        assertNull(polynomial("x -> x * 0.5"));
+        assertNull(polynomial("x -> (-1) ^ x"));
+    }
+
+    @Test
+    public void polynomialSumShouldWrapAroundAsFold() throws Exception {
+        Polynomial p = polynomial("x -> x * x * x * 1000000007 - x * 13 + 5");
+        for (long n : new long[] { 0, 1, 2, 3, 10, 1000, 123457 }) {
+            long sum = 0;
+            for (long x = 0; x < n; x++)
+                sum += p.apply(x);
+
+            assertEquals("n = " + n, sum, p.sum(n));
+        }
+    }
+
+    @Test
+    public void closedFormShouldSumMappedRangesWithSteps() throws Exception {
+        RangeSequenceNode range = new RangeSequenceNode(LOCATION, -1000, 5000, 7);
+        SequenceNode squares = map(range, "x -> x * x - 1", x -> x * x - 1);
+        SequenceNode cubes = map(squares, "x -> x * x * x", x -> x * x * x);
+
+        assertEquals(new IntNode(sum(range)), ClosedForm.reduce(range, new IntNode(0), lambda("x y -> x + y")));
+        assertEquals(new IntNode(sum(squares)), ClosedForm.reduce(squares, new IntNode(0), lambda("x y -> y + x")));
+        assertEquals(new IntNode(sum(cubes)), ClosedForm.reduce(cubes, new IntNode(0), lambda("x y -> x + y")));
+    }
+
+    @Test
+    public void closedFormShouldNotReduceWithoutExactResult() throws Exception {
+        RangeSequenceNode range = new RangeSequenceNode(LOCATION, 1, 100);
+
+        assertNull(ClosedForm.reduce(range, new DoubleNode(0), lambda("x y -> x + y")));
+        assertNull(ClosedForm.reduce(range, new IntNode(0), lambda("x y -> x - y")));
+        assertNull(ClosedForm.reduce(map(range, "x -> x ^ 2", x -> x * x), new IntNode(0), lambda("x y -> x + y")));
+        assertNull(ClosedForm.reduce(new RangeSequenceNode(LOCATION, 1, 20), new IntNode(1), lambda("x y -> x * y")));
+        assertEquals(new IntNode(0), ClosedForm.reduce(new RangeSequenceNode(LOCATION, 1, 128), new IntNode(1), lambda("x y -> x * y")));
+    }
+
+    @Test
+    public void closedFormShouldSumRangesAtExtremeBoundsAsFold() throws Exception {
+        RangeSequenceNode max = new RangeSequenceNode(LOCATION, Long.MAX_VALUE - 1000, Long.MAX_VALUE);
+        RangeSequenceNode min = new RangeSequenceNode(LOCATION, Long.MIN_VALUE, Long.MIN_VALUE + 1000 * 3, 3);
+        RangeSequenceNode steps = new RangeSequenceNode(LOCATION, Long.MIN_VALUE, Long.MAX_VALUE, Long.MAX_VALUE / 1000);
+
+        for (RangeSequenceNode range : new RangeSequenceNode[] { max, min, steps }) {
+            assertEquals(range.toString(), new IntNode(sum(range)), ClosedForm.reduce(range, new IntNode(0), lambda("x y -> x + y")));
+            assertTrue(range.toString(), range.getLong(range.size() - 1) <= range.getEnd());
+        }
+    }
+
+    @Test
+    public void rangesWithWrappedSizeShouldBeRejectedBeforeSum() throws Exception {
+        long[][] bounds = {
+                { -8000000000000000000L, 8000000000000000000L },
+                { Long.MIN_VALUE, Long.MAX_VALUE },
+                { 0, Long.MAX_VALUE },
+        };
+
+        for (long[] bound : bounds) {
+            try {
+                new RangeSequenceNode(LOCATION, bound[0], bound[1]);
+                fail("Range should be rejected: " + bound[0] + ", " + bound[1]);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+
+        Interpreter interpreter = new Interpreter(ExecutionPool.common(), new Settings(), new Lexer(), new Parser());
+        try {
+            interpreter.eval(
+                    "var a = 2000000000 * 2000000000 * 2\n" +
+                    "var b = 0 - a\n" +
+                    "var sum = reduce({b, a}, 0, x y -> x + y)");
+
+            fail("Eval should fail");
+        } catch (EvalException e) {
+            assertEquals(new Location(67, 3, 18), e.getLocation());
+        }
+    }
+}
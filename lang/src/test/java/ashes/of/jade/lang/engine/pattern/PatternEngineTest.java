@@ -0,0 +1,117 @@
+package ashes.of.jade.lang.engine.pattern;
+
+import ashes.of.jade.lang.engine.Frame;
+import ashes.of.jade.lang.engine.LambdaFunction;
+import ashes.of.jade.lang.engine.stack.StackEngine;
+import ashes.of.jade.lang.lexer.Lexer;
+import ashes.of.jade.lang.nodes.LambdaNode;
+import ashes.of.jade.lang.nodes.Node;
+import ashes.of.jade.lang.nodes.NodeType;
+import ashes.of.jade.lang.parser.Parser;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PatternEngineTest {
+
+    private static final long[] LONGS = { 0, 1, -1, 7, -13, 1L << 40, Long.MAX_VALUE, Long.MIN_VALUE };
+    private static final double[] DOUBLES = { 0.0, -0.0, 1.5, -2.25, 1e300, -1e-300, Double.NaN, Double.POSITIVE_INFINITY };
+
+    private PatternEngine engine;
+    private StackEngine stack;
+
+    @Before
+    public void setUp() throws Exception {
+        stack = new StackEngine();
+        engine = new PatternEngine(stack);
+    }
+
+    private LambdaNode lambda(String source) {
+        return (LambdaNode) new Parser()
+                .parse(new Lexer().parse("var f = map({0, 1}, " + source + ")"))
+                .stream()
+                .filter(Node::isLambda)
+                .findFirst()
+                .orElseThrow(AssertionError::new);
+    }
+
+    /**
+     * Matched function should return the same bits as the lambda evaluated by the stack engine
+     */
+    private void assertMatches(String source, NodeType param, Class<?> kernel) {
+        LambdaNode lambda = lambda(source);
+        LambdaFunction f = engine.compile(lambda, param);
+        LambdaFunction expected = stack.compile(lambda, param);
+
+        assertTrue(source + " -> " + f, kernel.isInstance(f));
+        assertEquals(expected.getType(), f.getType());
+
+        Frame frame = new Frame();
+        int size = param == NodeType.DOUBLE ? DOUBLES.length : LONGS.length;
+        for (int i = 0; i < size; i++) {
+            frame.longs[0] = LONGS[i];
+            frame.doubles[0] = DOUBLES[i];
+
+            if (f.getType() == NodeType.DOUBLE)
+                assertEquals(source, Double.doubleToLongBits(expected.applyAsDouble(frame)), Double.doubleToLongBits(f.applyAsDouble(frame)));
+            else
+                assertEquals(source, expected.applyAsLong(frame), f.applyAsLong(frame));
+        }
+    }
+
+    private void assertNotMatches(String source, NodeType... params) {
+        LambdaFunction f = engine.compile(lambda(source), params);
+
+        assertFalse(source, f instanceof LongAffineFunction || f instanceof DoubleAffineFunction || f instanceof AssociativeFunction);
+    }
+
+
+    @Test
+    public void engineShouldMatchIntegerAffineLambdas() throws Exception {
+        assertMatches("x -> x", NodeType.INTEGER, LongAffineFunction.class);
+        assertMatches("x -> x * 2 + 1", NodeType.INTEGER, LongAffineFunction.class);
+        assertMatches("x -> 3 - (x + 1) * 5", NodeType.INTEGER, LongAffineFunction.class);
+        assertMatches("x -> (x - 1) * (2 + 3) + x", NodeType.INTEGER, LongAffineFunction.class);
+    }
+
+    @Test
+    public void engineShouldMatchDoubleAffineLambdas() throws Exception {
+        assertMatches("x -> x * 0.5", NodeType.INTEGER, DoubleAffineFunction.class);
+        assertMatches("x -> x / 4 + 1", NodeType.INTEGER, DoubleAffineFunction.class);
+        assertMatches("x -> x * 2.5 - 1", NodeType.DOUBLE, DoubleAffineFunction.class);
+        assertMatches("x -> 1 - x / 3", NodeType.DOUBLE, DoubleAffineFunction.class);
+        assertMatches("x -> 2 - x", NodeType.DOUBLE, DoubleAffineFunction.class);
+        assertMatches("x -> x + 0.0", NodeType.DOUBLE, DoubleAffineFunction.class);
+    }
+
+    @Test
+    public void engineShouldNotMatchLambdasWhichRoundDifferently() throws Exception {
+        assertNotMatches("x -> (x + 1) * 2", NodeType.DOUBLE);
+        assertNotMatches("x -> x * 2 + 0.5", NodeType.INTEGER);
+        assertNotMatches("x -> x * x", NodeType.INTEGER);
+        assertNotMatches("x -> 2 / x", NodeType.DOUBLE);
+        assertNotMatches("x -> x ^ 2", NodeType.INTEGER);
+    }
+
+    @Test
+    public void engineShouldMatchSumAndProductReduces() throws Exception {
+        LambdaFunction sum = engine.compile(lambda("x y -> x + y"), NodeType.INTEGER, NodeType.INTEGER);
+        LambdaFunction product = engine.compile(lambda("x y -> y * x"), NodeType.DOUBLE, NodeType.DOUBLE);
+
+        assertTrue(sum instanceof AssociativeFunction);
+        assertTrue(product instanceof AssociativeFunction);
+
+        Frame frame = new Frame();
+        frame.longs[0] = 3;
+        frame.longs[1] = 4;
+        frame.doubles[0] = 1.5;
+        frame.doubles[1] = 4;
+        assertEquals(7, sum.applyAsLong(frame));
+        assertEquals(6.0, product.applyAsDouble(frame), 0.0);
+
+        assertNotMatches("x y -> x - y", NodeType.INTEGER, NodeType.INTEGER);
+        assertNotMatches("x y -> x + x", NodeType.INTEGER, NodeType.INTEGER);
+        assertNotMatches("x y -> x + y", NodeType.INTEGER, NodeType.DOUBLE);
+    }
+}
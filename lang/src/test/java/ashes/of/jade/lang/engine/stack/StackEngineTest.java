@@ -0,0 +1,75 @@
+package ashes.of.jade.lang.engine.stack;
+
+import ashes.of.jade.lang.engine.Frame;
+import ashes.of.jade.lang.engine.LambdaFunction;
+import ashes.of.jade.lang.lexer.Lexer;
+import ashes.of.jade.lang.nodes.LambdaNode;
+import ashes.of.jade.lang.nodes.Node;
+import ashes.of.jade.lang.nodes.NodeType;
+import ashes.of.jade.lang.parser.Parser;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class StackEngineTest {
+
+    private StackEngine engine;
+
+    @Before
+    public void setUp() throws Exception {
+        engine = new StackEngine();
+    }
+
+    private LambdaNode lambda(String source) {
+        return (LambdaNode) new Parser()
+                .parse(new Lexer().parse("var f = map({0, 1}, " + source + ")"))
+                .stream()
+                .filter(Node::isLambda)
+                .findFirst()
+                .orElseThrow(AssertionError::new);
+    }
+
+    private Frame frame(long[] longs, double[] doubles) {
+        Frame frame = new Frame();
+        System.arraycopy(longs, 0, frame.longs, 0, longs.length);
+        System.arraycopy(doubles, 0, frame.doubles, 0, doubles.length);
+        return frame;
+    }
+
+
+    @Test
+    public void engineShouldCompileIntegerLambda() throws Exception {
+        LambdaFunction f = engine.compile(lambda("x -> x * x - 3 + 2 ^ 3"), NodeType.INTEGER);
+
+        assertNotNull(f);
+        assertEquals(NodeType.INTEGER, f.getType());
+        assertEquals(105, f.applyAsLong(frame(new long[] { 10 }, new double[1])));
+    }
+
+    @Test
+    public void engineShouldCompileDoubleLambdaWithWidenedIntegers() throws Exception {
+        LambdaFunction f = engine.compile(lambda("x y -> x * 2 + y / 4"), NodeType.INTEGER, NodeType.DOUBLE);
+
+        assertNotNull(f);
+        assertEquals(NodeType.DOUBLE, f.getType());
+        assertEquals(6.5, f.applyAsDouble(frame(new long[] { 3, 0 }, new double[] { 0, 2.0 })), 0.00001);
+        assertEquals(7, f.applyAsLong(frame(new long[] { 3, 0 }, new double[] { 0, 2.0 })));
+    }
+
+    @Test
+    public void engineShouldNotCompileLambdaWithSequences() throws Exception {
+        assertNull(engine.compile(lambda("x -> map({0, x}, a -> a)"), NodeType.INTEGER));
+    }
+
+    @Test
+    public void engineShouldReuseFrameBetweenCalls() throws Exception {
+        LambdaFunction f = engine.compile(lambda("x -> (x + 1) * (x - 1) - x ^ 2"), NodeType.INTEGER);
+        Frame frame = new Frame();
+
+        for (int i = 0; i < 100; i++) {
+            frame.longs[0] = i;
+            assertEquals(-1, f.applyAsLong(frame));
+        }
+    }
+}
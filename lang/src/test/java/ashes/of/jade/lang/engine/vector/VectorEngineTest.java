@@ -0,0 +1,129 @@
+package ashes.of.jade.lang.engine.vector;
+
+import ashes.of.jade.lang.engine.Block;
+import ashes.of.jade.lang.engine.Frame;
+import ashes.of.jade.lang.engine.LambdaFunction;
+import ashes.of.jade.lang.lexer.Lexer;
+import ashes.of.jade.lang.nodes.LambdaNode;
+import ashes.of.jade.lang.nodes.Node;
+import ashes.of.jade.lang.nodes.NodeType;
+import ashes.of.jade.lang.parser.Parser;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class VectorEngineTest {
+
+    private VectorEngine engine;
+
+    @Before
+    public void setUp() throws Exception {
+        engine = new VectorEngine();
+    }
+
+    private LambdaNode lambda(String source) {
+        return (LambdaNode) new Parser()
+                .parse(new Lexer().parse("var f = map({0, 1}, " + source + ")"))
+                .stream()
+                .filter(Node::isLambda)
+                .findFirst()
+                .orElseThrow(AssertionError::new);
+    }
+
+
+    @Test
+    public void engineShouldApplyIntegerLambdaToBlock() throws Exception {
+        LambdaFunction f = engine.compile(lambda("x -> x * x - 3 + 2 ^ 3 + (-1) ^ x"), NodeType.INTEGER);
+        Block block = new Block();
+        for (int i = 0; i < 100; i++)
+            block.longs[i] = i;
+
+        f.applyToBlock(block, 100);
+
+        assertEquals(NodeType.INTEGER, f.getType());
+        for (int i = 0; i < 100; i++)
+            assertEquals((long) i * i + 5 + (i % 2 == 0 ? 1 : -1), block.longs[i]);
+    }
+
+    @Test
+    public void engineShouldApplyDoubleLambdaToBlockOfIntegers() throws Exception {
+        LambdaFunction f = engine.compile(lambda("x -> (x + 1) / 4 - x ^ 0.5"), NodeType.INTEGER);
+        Block block = new Block();
+        for (int i = 0; i < Block.SIZE; i++)
+            block.longs[i] = i;
+
+        f.applyToBlock(block, Block.SIZE);
+
+        assertEquals(NodeType.DOUBLE, f.getType());
+        for (int i = 0; i < Block.SIZE; i++)
+            assertEquals((i + 1) / 4.0 - Math.sqrt(i), block.doubles[i], 0.00001);
+    }
+
+    @Test
+    public void engineShouldReturnSameResultForBlockAndSingleElement() throws Exception {
+        LambdaFunction f = engine.compile(lambda("x -> (x - 1) * 2.5 + x * x"), NodeType.DOUBLE);
+        Block block = new Block();
+        for (int i = 0; i < 10; i++)
+            block.doubles[i] = i * 0.5;
+
+        f.applyToBlock(block, 10);
+
+        Frame frame = new Frame();
+        for (int i = 0; i < 10; i++) {
+            frame.doubles[0] = i * 0.5;
+            assertEquals(f.applyAsDouble(frame), block.doubles[i], 0.0);
+        }
+    }
+
+    @Test
+    public void engineShouldApplyConstantOperandsOnBothSides() throws Exception {
+        LambdaFunction f = engine.compile(lambda("x -> 10 - x / 4 + 1 / (x + 1) - (3 - x) * 2"), NodeType.INTEGER);
+        Block block = new Block();
+        for (int i = 0; i < 100; i++)
+            block.longs[i] = i;
+
+        f.applyToBlock(block, 100);
+
+        for (int i = 0; i < 100; i++)
+            assertEquals(10 - i / 4.0 + 1.0 / (i + 1) - (3 - i) * 2, block.doubles[i], 0.00001);
+    }
+
+    @Test
+    public void engineShouldRunArithmeticInKernels() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        VectorEngine counting = new VectorEngine(new ScalarKernels() {
+            @Override
+            public void mul(long[] a, long b, int length) {
+                calls.incrementAndGet();
+                super.mul(a, b, length);
+            }
+
+            @Override
+            public void add(long[] a, long[] b, int length) {
+                calls.incrementAndGet();
+                super.add(a, b, length);
+            }
+        });
+
+        LambdaFunction f = counting.compile(lambda("x -> 3 * x + x"), NodeType.INTEGER);
+        Block block = new Block();
+        block.longs[0] = 5;
+        f.applyToBlock(block, 1);
+
+        assertEquals(20, block.longs[0]);
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void kernelsShouldFallBackToScalarWithoutProviders() throws Exception {
+        assertEquals("scalar", Kernels.load().getName());
+    }
+
+    @Test
+    public void engineShouldNotCompileLambdaWithSequences() throws Exception {
+        assertNull(engine.compile(lambda("x -> map({0, x}, a -> a)"), NodeType.INTEGER));
+    }
+}
@@ -0,0 +1,89 @@
+package ashes.of.jade.lang.interpreter;
+
+import ashes.of.jade.lang.Location;
+import ashes.of.jade.lang.engine.pattern.ClosedForm;
+import ashes.of.jade.lang.engine.stack.StackEngine;
+import ashes.of.jade.lang.lexer.Lexer;
+import ashes.of.jade.lang.nodes.*;
+import ashes.of.jade.lang.parser.Parser;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class CalibrationTest {
+
+    private ExecutionPool pool;
+
+    @Before
+    public void setUp() throws Exception {
+        pool = new ExecutionPool("calibration", 2);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        pool.shutdown();
+    }
+
+    @Test
+    public void calibrateShouldSetParallelismSettingsInBounds() throws Exception {
+        Settings settings = new Settings();
+        new Calibration(pool).calibrate(settings);
+
+        assertTrue(settings.getMapParallelismSize() >= 256);
+        assertTrue(settings.getReduceParallelismSize() >= 256);
+        assertTrue(settings.getMapTaskSize() >= 256);
+        assertTrue(settings.getMapParallelismSize() <= 1 << 24);
+    }
+
+    @Test
+    public void reduceProbeShouldBeCompiledWithoutClosedForm() throws Exception {
+        List<LambdaNode> lambdas = new Parser()
+                .parse(new Lexer().parse(String.format(Calibration.REDUCE, 1000)))
+                .stream()
+                .filter(Node::isLambda)
+                .map(LambdaNode.class::cast)
+                .collect(Collectors.toList());
+
+        LambdaNode map = lambdas.stream().filter(lambda -> lambda.getParams() == 1).findFirst().orElseThrow(AssertionError::new);
+        LambdaNode reduce = lambdas.stream().filter(lambda -> lambda.getParams() == 2).findFirst().orElseThrow(AssertionError::new);
+        SequenceNode seq = new MappedSequenceNode(Location.EMPTY, new RangeSequenceNode(Location.EMPTY, 1, 1000), map,
+                x -> new DoubleNode(x.toInteger() / 3.0));
+
+        assertNull(ClosedForm.reduce(seq, new DoubleNode(0), reduce));
+        assertEquals(NodeType.DOUBLE, new StackEngine().compile(map, NodeType.INTEGER).getType());
+        assertEquals(NodeType.DOUBLE, new StackEngine().compile(reduce, NodeType.DOUBLE, NodeType.DOUBLE).getType());
+    }
+
+    @Test
+    public void profileShouldBeLoadedAsSaved() throws Exception {
+        Path dir = Files.createTempDirectory("jade");
+        Path profile = dir.resolve("profile").resolve("profile.properties");
+
+        Settings settings = new Settings();
+        assertFalse(settings.loadProfile(profile));
+
+        settings.setMapParallelismSize(1000);
+        settings.setReduceParallelismSize(2000);
+        settings.setMapTaskSize(300);
+        settings.setInterpreterPoolSize(3);
+        settings.saveProfile(profile);
+
+        Settings loaded = new Settings();
+        assertTrue(loaded.loadProfile(profile));
+        assertEquals(1000, loaded.getMapParallelismSize());
+        assertEquals(2000, loaded.getReduceParallelismSize());
+        assertEquals(300, loaded.getMapTaskSize());
+        assertEquals(3, loaded.getInterpreterPoolSize());
+
+        Files.delete(profile);
+        Files.delete(profile.getParent());
+        Files.delete(dir);
+    }
+}
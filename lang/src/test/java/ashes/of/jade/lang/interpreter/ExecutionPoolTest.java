@@ -0,0 +1,70 @@
+package ashes.of.jade.lang.interpreter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+import static org.junit.Assert.*;
+
+public class ExecutionPoolTest {
+
+    private ExecutionPool pool;
+
+    @Before
+    public void setUp() throws Exception {
+        pool = new ExecutionPool("test-pool", 2);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        pool.shutdown();
+    }
+
+    @Test
+    public void submitShouldRunJobInNamedWorker() throws Exception {
+        String name = pool.submit(() -> Thread.currentThread().getName()).join();
+
+        assertTrue(name, name.startsWith("test-pool-"));
+        assertEquals(2, pool.getParallelism());
+    }
+
+    @Test
+    public void statisticsShouldCountSubmittedAndFailedJobs() throws Exception {
+        pool.submit(() -> 1).join();
+        ForkJoinTask<Object> failed = pool.submit(() -> {
+            throw new IllegalStateException("failed");
+        });
+
+        try {
+            failed.join();
+            fail("Job should fail");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+
+        PoolStatistics statistics = pool.getStatistics();
+        assertEquals("test-pool", statistics.getName());
+        assertEquals(2, statistics.getSubmitted());
+        assertEquals(1, statistics.getCompleted());
+        assertEquals(1, statistics.getFailed());
+    }
+
+    @Test
+    public void invokeShouldRunNestedTaskInCurrentWorker() throws Exception {
+        boolean nested = pool.submit(() -> {
+            Thread worker = Thread.currentThread();
+            return pool.invoke(new RecursiveTask<Boolean>() {
+                @Override
+                protected Boolean compute() {
+                    return Thread.currentThread() == worker;
+                }
+            });
+        }).join();
+
+        assertTrue(nested);
+        assertEquals(1, pool.getStatistics().getSubmitted());
+    }
+}
@@ -0,0 +1,32 @@
+package ashes.of.jade.lang.interpreter;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class GranularityTest {
+
+    @Test
+    public void taskSizeShouldCoverAllElementsIfThereIsOneThread() throws Exception {
+        Granularity granularity = new Granularity(1);
+
+        assertEquals(1000, granularity.taskSize(256, 256_000_000, 1000));
+    }
+
+    @Test
+    public void taskSizeShouldSplitSmallSequenceWithExpensiveLambda() throws Exception {
+        Granularity granularity = new Granularity(4);
+
+        // 100us per element
+        assertEquals(2, granularity.taskSize(256, 256 * 100_000, 1000));
+    }
+
+    @Test
+    public void taskSizeShouldNotSplitLargeSequenceWithCheapLambdaIntoSmallTasks() throws Exception {
+        Granularity granularity = new Granularity(4);
+
+        // 1ns per element
+        assertEquals(200_000, granularity.taskSize(256, 256, 10_000_000));
+        assertEquals(1000, granularity.taskSize(256, 256, 1000));
+    }
+}
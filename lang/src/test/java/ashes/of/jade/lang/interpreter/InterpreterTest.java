@@ -3,7 +3,10 @@ package ashes.of.jade.lang.interpreter;
 import ashes.of.jade.lang.Location;
 import ashes.of.jade.lang.lexer.Lexer;
 import ashes.of.jade.lang.nodes.*;
+import ashes.of.jade.lang.optimizer.Optimizer;
+import ashes.of.jade.lang.parser.ParseException;
 import ashes.of.jade.lang.parser.Parser;
+import ashes.of.jade.lang.validator.ValidationException;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.junit.Assert;
@@ -14,7 +17,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
 import java.nio.charset.Charset;
 import java.util.Arrays;
-import java.util.concurrent.ForkJoinPool;
+import java.util.Collections;
 
 import static org.junit.Assert.*;
 
@@ -27,7 +30,7 @@ public class InterpreterTest {
     
     @Before
     public void setUp() throws Exception {
-        interpreter = new Interpreter(ForkJoinPool.commonPool(), new Settings(), new Lexer(), new Parser());
+        interpreter = new Interpreter(ExecutionPool.common(), new Settings(), new Lexer(), new Parser());
     }
 
     /*
@@ -40,7 +43,7 @@ public class InterpreterTest {
             interpreter.eval("var a = 10 + b");
 
             fail("Eval should fail");
-        } catch (EvalException e) {
+        } catch (ParseException e) {
             log.warn("Can't eval", e);
             Assert.assertEquals(new Location(13, 1, 14), e.getLocation());
         }
@@ -174,10 +177,41 @@ public class InterpreterTest {
                 new IntNode(3), new IntNode(4), new IntNode(5),
                 new IntNode(6), new IntNode(7), new IntNode(8),
                 new IntNode(9), new IntNode(10)},
-                seq.seq);
+                seq.getSeq());
     }
 
 
+    @Test
+    public void evalShouldCreateLazyRangeWithoutAllocatingElements() throws Exception {
+        Scope scope = interpreter.eval("var seq = {0, 2000000000}");
+
+        SequenceNode seq = scope.load("seq").toSeq();
+
+        assertTrue(seq instanceof RangeSequenceNode);
+        assertEquals(2000000001, seq.size());
+        assertEquals(1999999999, seq.getLong(1999999999));
+    }
+
+    @Test
+    public void evalShouldFailIfSequenceIsTooLong() {
+        try {
+            interpreter.eval("var seq = {0, 3000000 * 1000}");
+
+            fail("Eval should fail");
+        } catch (EvalException e) {
+            log.warn("Can't eval", e);
+            assertEquals(new Location(10, 1, 11), e.getLocation());
+        }
+    }
+
+    @Test
+    public void evalShouldReduceRangeInParallel() throws Exception {
+        interpreter.getSettings().setReduceParallelismSize(1000);
+        Scope scope = interpreter.eval("var sum = reduce({1, 100000}, 0, x y -> x + y)");
+
+        assertEquals(5000050000L, scope.load("sum").toInteger());
+    }
+
     @Test
     public void evalSрouldFailIfExpressionContainsSeqPlusInvalidSeq() {
         try {
@@ -239,7 +273,7 @@ public class InterpreterTest {
                 new IntNode(2), new IntNode(3), new IntNode(4), new IntNode(5),
                 new IntNode(6), new IntNode(7), new IntNode(8), new IntNode(9),
                 new IntNode(10), new IntNode(11), new IntNode(12) },
-        seq.seq);
+        seq.getSeq());
     }
 
 
@@ -277,6 +311,49 @@ public class InterpreterTest {
         assertEquals("print 5 + 2", "7", out);
     }
 
+    @Test
+    public void evalShouldReturnRunningResultsOfScan() throws Exception {
+        Scope scope = interpreter.eval(
+                "var sums = scan({1, 5}, 0, x y -> x + y)\n" +
+                "var halves = scan({1, 3}, 1, x y -> x * y / 2)");
+
+        assertArrayEquals(new IntNode[] {
+                new IntNode(1), new IntNode(3), new IntNode(6), new IntNode(10), new IntNode(15)},
+                scope.load("sums").toSeq().getSeq());
+
+        assertArrayEquals(new DoubleNode[] {
+                new DoubleNode(0.5), new DoubleNode(0.5), new DoubleNode(0.75)},
+                scope.load("halves").toSeq().getSeq());
+    }
+
+    @Test
+    public void evalShouldScanLargeSequenceInParallel() throws Exception {
+        String source =
+                "var sums = scan({1, 100000}, 10, x y -> x + y)\n" +
+                "var mapped = scan(map({1, 100000}, x -> x * 0.5), 0, x y -> x + y)\n" +
+                "var last = reduce(sums, 0, x y -> x + y)";
+
+        interpreter.getSettings().setReduceParallelismSize(Integer.MAX_VALUE);
+        Scope expected = interpreter.eval(source);
+        interpreter.getSettings().setReduceParallelismSize(1000);
+        Scope actual = interpreter.eval(source);
+
+        SequenceNode sums = actual.load("sums").toSeq();
+        assertEquals(100000, sums.size());
+        assertEquals(11, sums.getLong(0));
+        assertEquals(5000050010L, sums.getLong(99999));
+        assertArrayEquals(expected.load("sums").toSeq().getSeq(), sums.getSeq());
+        assertArrayEquals(expected.load("mapped").toSeq().getSeq(), actual.load("mapped").toSeq().getSeq());
+        assertEquals(expected.load("last"), actual.load("last"));
+    }
+
+    @Test
+    public void evalShouldScanEmptySequence() throws Exception {
+        Scope scope = interpreter.eval("var s = scan({5, 1}, 0, x y -> x + y)");
+
+        assertEquals(0, scope.load("s").toSeq().size());
+    }
+
 
     /*
      * out
@@ -305,6 +382,40 @@ public class InterpreterTest {
     }
 
 
+    @Test
+    public void evalShouldReportTypeErrorBeforeEvaluation() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        interpreter.getSettings().setOut(new PrintStream(baos));
+
+        try {
+            interpreter.eval(
+                    "out 42\n" +
+                    "var m = map(13, x -> x)");
+
+            fail("Eval should fail");
+        } catch (EvalException e) {
+            log.warn("Can't eval", e);
+            assertEquals(new Location(19, 2, 13), e.getLocation());
+            assertEquals("", baos.toString(Charset.defaultCharset().name()));
+        }
+    }
+
+    @Test
+    public void evalShouldReportAllErrorsOfProgram() throws Exception {
+        try {
+            interpreter.eval(
+                    "var a = b + 1\n" +
+                    "out \"string\"");
+
+            fail("Eval should fail");
+        } catch (ValidationException e) {
+            log.warn("Can't eval", e);
+            assertEquals(new Location(8, 1, 9), e.getLocation());
+            assertEquals(2, e.getErrors().size());
+            assertEquals(new Location(18, 2, 5), e.getErrors().get(1).getLocation());
+        }
+    }
+
     @Test(expected = EvalException.class)
     public void evalShouldThrowAnExceptionIfInputContainsIntegerFirstMapParameter() throws Exception {
         interpreter.eval("var m = map(13, x -> x)");
@@ -324,7 +435,7 @@ public class InterpreterTest {
         assertTrue(a.isSeq());
         assertArrayEquals("0..5 -> 0..25", new IntNode[] {
                 new IntNode(0), new IntNode(1), new IntNode(4),
-                new IntNode(9), new IntNode(16), new IntNode(25)}, a.toSeq().seq);
+                new IntNode(9), new IntNode(16), new IntNode(25)}, a.toSeq().getSeq());
     }
 
     @Test
@@ -337,7 +448,64 @@ public class InterpreterTest {
         assertArrayEquals("0..5 -> 0..25", new DoubleNode[] {
                 new DoubleNode(0.), new DoubleNode(1.), new DoubleNode(4.),
                 new DoubleNode(9.), new DoubleNode(16.), new DoubleNode(25.)},
-                a.toSeq().seq);
+                a.toSeq().getSeq());
+    }
+
+    @Test
+    public void evalShouldStoreMappedSequenceWithElementTypeOfLambdaResult() throws Exception {
+        Scope scope = interpreter.eval(
+                "var ints = map({0, 5}, x -> x + 1)\n" +
+                "var doubles = map(ints, x -> x / 2)");
+
+        assertEquals(NodeType.INTEGER, scope.load("ints").toSeq().getElementType());
+        assertEquals(NodeType.DOUBLE, scope.load("doubles").toSeq().getElementType());
+    }
+
+    @Test
+    public void evalShouldNotModifySourceSequenceInMap() throws Exception {
+        Scope scope = interpreter.eval(
+                "var seq = {0, 3}\n" +
+                "var mapped = map(seq, x -> x * 10)");
+
+        assertArrayEquals(new IntNode[] {
+                new IntNode(0), new IntNode(1), new IntNode(2), new IntNode(3)},
+                scope.load("seq").toSeq().getSeq());
+
+        assertArrayEquals(new IntNode[] {
+                new IntNode(0), new IntNode(10), new IntNode(20), new IntNode(30)},
+                scope.load("mapped").toSeq().getSeq());
+    }
+
+    @Test
+    public void evalShouldMapLargeSequenceInParallel() throws Exception {
+        interpreter.getSettings().setMapParallelismSize(1000);
+        Scope scope = interpreter.eval("var seq = map({0, 100000}, x -> x * 0.5)");
+
+        SequenceNode seq = scope.load("seq").toSeq();
+
+        assertEquals(100001, seq.size());
+        assertEquals(0.0, seq.getDouble(0), 0.00001);
+        assertEquals(31337.0, seq.getDouble(62674), 0.00001);
+        assertEquals(50000.0, seq.getDouble(100000), 0.00001);
+    }
+
+
+    /*
+     * out
+     */
+
+    @Test
+    public void evalShouldPrintSequenceElementsToOutputStream() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        interpreter.getSettings().setOut(new PrintStream(baos));
+
+        interpreter.eval(
+                "out {1, 3}\n" +
+                "out map({1, 2}, x -> x / 2)");
+
+        String out = baos.toString(Charset.defaultCharset().name());
+
+        assertEquals("[1, 2, 3]\n[0.5, 1.0]\n", out);
     }
 
 
@@ -355,4 +523,305 @@ public class InterpreterTest {
         assertTrue(a.isInteger());
         assertEquals("reduced = ", 55, a.toInteger());
     }
+
+    @Test
+    public void evalShouldReducePolynomialMapsOfRangesInClosedForm() throws Exception {
+        interpreter.getSettings().setTimeLimit(1000);
+        Scope scope = interpreter.eval(
+                "var sum = reduce({1, 2000000000}, 0, x y -> x + y)\n" +
+                "var squares = reduce(map(map({0, 3000000}, x -> x * x + 1), x -> 3 - x * 2), 7, x y -> x + y)\n" +
+                "var product = reduce({1, 1000000000}, 1, x y -> x * y)");
+
+        long squares = 7;
+        for (long x = 0; x <= 3000000; x++)
+            squares += 3 - (x * x + 1) * 2;
+
+        assertEquals(new IntNode(2000000001000000000L), scope.load("sum"));
+        assertEquals(new IntNode(squares), scope.load("squares"));
+        assertEquals(new IntNode(0), scope.load("product"));
+    }
+
+    @Test
+    public void evalShouldReduceFusedMapThroughVariable() throws Exception {
+        interpreter.getSettings().setReduceParallelismSize(100);
+        Scope scope = interpreter.eval(
+                "var n = 5000\n" +
+                "var sequence = map({0, n}, i -> (-1)^i / (2 * i + 1))\n" +
+                "var pi = 4 * reduce(sequence, 0, x y -> x + y)");
+
+        assertTrue(scope.load("sequence") instanceof MappedSequenceNode);
+        assertEquals(Math.PI, scope.load("pi").toDouble(), 0.001);
+    }
+
+    @Test
+    public void evalShouldReturnSameResultWithAndWithoutConstantFolding() throws Exception {
+        String source =
+                "var seq = map({0, 100}, i -> (-1) ^ i * i ^ 3 + 2 * 3 - 2 ^ 4 / 8)\n" +
+                "var sum = reduce(seq, 0, x y -> x + y)";
+        Interpreter plain = new Interpreter(ExecutionPool.common(), new Settings(), new Lexer(), new Parser(),
+                new Optimizer(Collections.emptyList()));
+
+        Scope folded = interpreter.eval(source);
+        Scope unfolded = plain.eval(source);
+
+        assertArrayEquals(unfolded.load("seq").toSeq().getSeq(), folded.load("seq").toSeq().getSeq());
+        assertEquals(unfolded.load("sum"), folded.load("sum"));
+    }
+
+    @Test
+    public void evalShouldReturnSameResultWithAndWithoutFusion() throws Exception {
+        String source = "var sum = reduce(map({1, 20000}, x -> x * 3 - 1), 0, x y -> x + y)";
+        Interpreter plain = new Interpreter(ExecutionPool.common(), new Settings(), new Lexer(), new Parser(),
+                new Optimizer(Collections.emptyList()));
+
+        Node fused = interpreter.eval(source).load("sum");
+        Node unfused = plain.eval(source).load("sum");
+
+        assertEquals(unfused, fused);
+        assertEquals(600010000, fused.toInteger());
+    }
+
+    @Test
+    public void evalShouldReturnSameResultWithAndWithoutCommonSubexpressions() throws Exception {
+        String source =
+                "var seq = map({0, 1000}, i -> (2 * i + 1) * (2 * i + 1) / (2 * i + 1 + 3) + reduce({0, i}, 0, x y -> x + y) - reduce({0, i}, 0, x y -> x + y) / 2)\n" +
+                "var a = scan(seq, 0, x y -> x + y)\n" +
+                "var b = reduce(scan(seq, 0, x y -> x + y), 0, x y -> x + y)";
+        Interpreter plain = new Interpreter(ExecutionPool.common(), new Settings(), new Lexer(), new Parser(),
+                new Optimizer(Collections.emptyList()));
+
+        Scope shared = interpreter.eval(source);
+        Scope unshared = plain.eval(source);
+
+        assertArrayEquals(unshared.load("seq").toSeq().getSeq(), shared.load("seq").toSeq().getSeq());
+        assertArrayEquals(unshared.load("a").toSeq().getSeq(), shared.load("a").toSeq().getSeq());
+        assertEquals(unshared.load("b"), shared.load("b"));
+        assertEquals(unshared.getVars().keySet(), shared.getVars().keySet());
+    }
+
+    @Test
+    public void evalShouldMapChainedMapsInOnePass() throws Exception {
+        Scope scope = interpreter.eval("var seq = map(map(map({0, 4}, i -> i * 2), x -> x + 1), x -> x * 1.5)");
+
+        assertArrayEquals(new DoubleNode[] {
+                new DoubleNode(1.5), new DoubleNode(4.5), new DoubleNode(7.5),
+                new DoubleNode(10.5), new DoubleNode(13.5)},
+                scope.load("seq").toSeq().getSeq());
+    }
+
+    @Test
+    public void evalShouldComposeLazyMapsIntoOnePipeline() throws Exception {
+        Scope scope = interpreter.eval(
+                "var a = map({1, 100}, i -> i * 2)\n" +
+                "var b = map(a, x -> x - 1)\n" +
+                "var s = reduce(b, 0, x y -> x + y)");
+
+        MappedSequenceNode b = (MappedSequenceNode) scope.load("b");
+
+        assertEquals(2, b.getLambdas().size());
+        assertTrue(b.getSource() instanceof RangeSequenceNode);
+        assertEquals(10000, scope.load("s").toInteger());
+    }
+
+    @Test
+    public void evalShouldSkipDeadStatementsAndReleaseSequencesInOutputsOnlyMode() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        interpreter.getSettings().setOut(new PrintStream(baos));
+        interpreter.getSettings().setOutputsOnly(true);
+
+        Scope scope = interpreter.eval(
+                "var seq = map({0, 10}, x -> x * 2)\n" +
+                "var unused = map(seq, x -> x / 0)\n" +
+                "var sum = reduce(seq, 0, x y -> x + y)\n" +
+                "out sum");
+
+        assertEquals("110", baos.toString(Charset.defaultCharset().name()).trim());
+        assertNull(scope.load("seq"));
+        assertNull(scope.load("unused"));
+        assertEquals(110, scope.load("sum").toInteger());
+    }
+
+    @Test(expected = EvaluationCancelledException.class)
+    public void evalShouldNotMapIfEvaluationIsCancelled() throws Exception {
+        Evaluation evaluation = new Evaluation();
+        evaluation.cancel();
+
+        interpreter.eval("var seq = map({0, 100}, x -> x * 2)", evaluation);
+    }
+
+    @Test
+    public void submittedEvalsShouldPrintToTheirOwnOutputs() throws Exception {
+        ByteArrayOutputStream shared = new ByteArrayOutputStream();
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        interpreter.getSettings().setOut(new PrintStream(shared));
+
+        Evaluation a = interpreter.submit("out {1, 3}", new Evaluation(new PrintStream(first)));
+        Evaluation b = interpreter.submit("print \"b\"", new Evaluation(new PrintStream(second)));
+        a.join();
+        b.join();
+
+        assertEquals("[1, 2, 3]" + System.lineSeparator(), first.toString(Charset.defaultCharset().name()));
+        assertEquals("b", second.toString(Charset.defaultCharset().name()));
+        assertEquals(0, shared.size());
+    }
+
+    @Test
+    public void submittedEvalShouldStopPromptlyWhenCancelled() throws Exception {
+        Evaluation evaluation = interpreter.submit("var sum = reduce({0, 2000000000}, 0, x y -> x + y * y)");
+        evaluation.cancel();
+
+        long start = System.currentTimeMillis();
+        try {
+            evaluation.join();
+
+            fail("Eval should be cancelled");
+        } catch (EvaluationCancelledException e) {
+            assertTrue(System.currentTimeMillis() - start < 1000);
+        }
+    }
+
+    @Test
+    public void evalShouldFailIfSequenceIsLongerThanLimit() throws Exception {
+        interpreter.getSettings().setMaxSequenceLength(1000);
+
+        try {
+            interpreter.eval("var seq = {0, 1000}");
+
+            fail("Eval should fail");
+        } catch (EvalException e) {
+            log.warn("Can't eval", e);
+            assertEquals(new Location(10, 1, 11), e.getLocation());
+        }
+    }
+
+    @Test
+    public void evalShouldFailIfSequenceBoundsAreTooFarApart() throws Exception {
+        String[] sequences = {
+                "{b, a}",
+                "{b, 0}",
+                "{0, a * 3}",
+        };
+
+        for (String seq : sequences) {
+            try {
+                interpreter.eval(
+                        "var a = 2000000000 * 2000000000 * 2\n" +
+                        "var b = 0 - a\n" +
+                        "out reduce(" + seq + ", 0, x y -> x + y)");
+
+                fail("Eval should fail: " + seq);
+            } catch (EvalException e) {
+                log.warn("Can't eval", e);
+                assertEquals(new Location(61, 3, 12), e.getLocation());
+            }
+        }
+    }
+
+    @Test
+    public void evalShouldFailIfMappedSequenceIsLargerThanLimit() throws Exception {
+        interpreter.getSettings().setMaxSequenceBytes(8000);
+
+        try {
+            interpreter.eval("var seq = map({0, 1000}, x -> x)");
+
+            fail("Eval should fail");
+        } catch (EvalException e) {
+            log.warn("Can't eval", e);
+            assertEquals(new Location(10, 1, 11), e.getLocation());
+        }
+    }
+
+    @Test
+    public void evalShouldFailIfProgramProcessesMoreElementsThanLimit() throws Exception {
+        interpreter.getSettings().setMaxElements(1500);
+
+        try {
+            interpreter.eval(
+                    "var a = reduce({0, 999}, 0, x y -> x + y)\n" +
+                    "var b = reduce({0, 999}, 0, x y -> x * y)");
+
+            fail("Eval should fail");
+        } catch (EvalException e) {
+            log.warn("Can't eval", e);
+            assertEquals(new Location(50, 2, 9), e.getLocation());
+        }
+    }
+
+    @Test
+    public void evalShouldFailIfOutputOfSequenceIsLargerThanLimit() throws Exception {
+        try {
+            interpreter.eval("out {0, 2000000000}");
+
+            fail("Eval should fail");
+        } catch (EvalException e) {
+            log.warn("Can't eval", e);
+            assertEquals(new Location(0, 1, 1), e.getLocation());
+        }
+    }
+
+    @Test
+    public void evalShouldCountOutputOfSequenceAsProcessedElements() throws Exception {
+        interpreter.getSettings().setMaxElements(1000);
+
+        try {
+            interpreter.eval("out {1, 100000}");
+
+            fail("Eval should fail");
+        } catch (EvalException e) {
+            log.warn("Can't eval", e);
+            assertEquals(new Location(0, 1, 1), e.getLocation());
+        }
+    }
+
+    @Test
+    public void evalShouldFailIfTimeLimitIsExceeded() throws Exception {
+        interpreter.getSettings().setTimeLimit(50);
+
+        long start = System.currentTimeMillis();
+        try {
+            interpreter.eval("var sum = reduce({0, 2000000000}, 0, x y -> x + y * y)");
+
+            fail("Eval should fail");
+        } catch (EvalException e) {
+            log.warn("Can't eval", e);
+            assertEquals(new Location(10, 1, 11), e.getLocation());
+            assertTrue(System.currentTimeMillis() - start < 1000);
+        }
+    }
+
+    @Test
+    public void evalShouldReturnSameResultWithAdaptiveParallelism() throws Exception {
+        String source =
+                "var seq = map({0, 100000}, x -> x * 2)\n" +
+                "var heavy = map({0, 1000}, x -> x ^ 3 + x ^ 2 + x)\n" +
+                "var sum = reduce(seq, 0, x y -> x + y)";
+
+        Scope expected = interpreter.eval(source);
+        interpreter.getSettings().setAdaptiveParallelism(true);
+        Scope actual = interpreter.eval(source);
+
+        assertArrayEquals(expected.load("seq").toSeq().getSeq(), actual.load("seq").toSeq().getSeq());
+        assertArrayEquals(expected.load("heavy").toSeq().getSeq(), actual.load("heavy").toSeq().getSeq());
+        assertEquals(expected.load("sum"), actual.load("sum"));
+    }
+
+    @Test
+    public void evalShouldMapNestedSequencesInParallelOnSingleWorker() throws Exception {
+        ExecutionPool pool = new ExecutionPool("single", 1);
+        Settings settings = new Settings();
+        settings.setMapParallelismSize(8);
+        settings.setReduceParallelismSize(8);
+        Interpreter single = new Interpreter(pool, settings, new Lexer(), new Parser());
+
+        try {
+            Scope scope = single.submit("var seq = map({1, 50}, x -> reduce(map({1, x}, y -> y * 2), 0, a b -> a + b))").join();
+
+            SequenceNode seq = scope.load("seq").toSeq();
+            assertEquals(50, seq.size());
+            assertEquals(2550, seq.getLong(49));
+        } finally {
+            pool.shutdown();
+        }
+    }
 }
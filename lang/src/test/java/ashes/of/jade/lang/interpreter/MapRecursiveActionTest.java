@@ -0,0 +1,60 @@
+package ashes.of.jade.lang.interpreter;
+
+import ashes.of.jade.lang.Location;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.Assert.*;
+
+public class MapRecursiveActionTest {
+
+    private ForkJoinPool pool;
+
+    @Before
+    public void setUp() throws Exception {
+        pool = new ForkJoinPool(4);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void actionShouldRunEveryElementOnce() throws Exception {
+        AtomicIntegerArray counts = new AtomicIntegerArray(10000);
+
+        pool.invoke(new MapRecursiveAction(16, 0, counts.length(), (start, end) -> {
+            for (int i = start; i < end; i++)
+                counts.incrementAndGet(i);
+        }));
+
+        for (int i = 0; i < counts.length(); i++)
+            assertEquals(1, counts.get(i));
+    }
+
+    @Test
+    public void actionShouldNotSplitRangeSmallerThanMinSize() throws Exception {
+        int[] batches = new int[1];
+
+        pool.invoke(new MapRecursiveAction(1000, 0, 1000, (start, end) -> {
+            assertEquals(0, start);
+            assertEquals(1000, end);
+            batches[0]++;
+        }));
+
+        assertEquals(1, batches[0]);
+    }
+
+    @Test(expected = EvalException.class)
+    public void actionShouldRethrowExceptionOfAnyPart() throws Exception {
+        pool.invoke(new MapRecursiveAction(16, 0, 10000, (start, end) -> {
+            if (start <= 5000 && 5000 < end)
+                throw new EvalException(Location.EMPTY, "Invalid element");
+        }));
+    }
+}
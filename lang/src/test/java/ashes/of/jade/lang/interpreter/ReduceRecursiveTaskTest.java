@@ -3,6 +3,7 @@ package ashes.of.jade.lang.interpreter;
 import ashes.of.jade.lang.Location;
 import ashes.of.jade.lang.nodes.IntNode;
 import ashes.of.jade.lang.nodes.Node;
+import ashes.of.jade.lang.nodes.RangeSequenceNode;
 import ashes.of.jade.lang.nodes.SequenceNode;
 import org.junit.After;
 import org.junit.Before;
@@ -25,7 +26,7 @@ public class ReduceRecursiveTaskTest {
     @Before
     public void setUp() throws Exception {
         pool = new ForkJoinPool(4);
-        seq = new SequenceNode(Location.EMPTY, 0, 10000);
+        seq = new RangeSequenceNode(Location.EMPTY, 0, 10000);
     }
 
     @After
@@ -38,7 +39,7 @@ public class ReduceRecursiveTaskTest {
         ReduceFunction f = (a, b) -> new IntNode(a.toInteger() + b.toInteger());
 
         ForkJoinTask<Node> reduced = pool
-                .submit(new ReduceRecursiveTask(4, seq.seq, 0, seq.seq.length, f));
+                .submit(new ReduceRecursiveTask(4, seq, 0, seq.size(), f));
 
 
         Node join = f.reduce(new IntNode(13), reduced.join());
@@ -58,7 +59,7 @@ public class ReduceRecursiveTaskTest {
         };
 
         ForkJoinTask<Node> reduced = pool
-                .submit(new ReduceRecursiveTask(10, seq.seq, 0, seq.seq.length, f));
+                .submit(new ReduceRecursiveTask(10, seq, 0, seq.size(), f));
 
 
         Node join = f.reduce(new IntNode(13), reduced.join());
@@ -80,7 +81,7 @@ public class ReduceRecursiveTaskTest {
         };
 
         ForkJoinTask<Node> reduced = pool
-                .submit(new ReduceRecursiveTask(100000, seq.seq, 0, seq.seq.length, f));
+                .submit(new ReduceRecursiveTask(100000, seq, 0, seq.size(), f));
 
 
         Node join = f.reduce(new IntNode(13), reduced.join());
@@ -89,4 +90,24 @@ public class ReduceRecursiveTaskTest {
         // main, FJP-1-worker-1
         assertEquals(2, threads.size());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void taskShouldStopReducingIfEvaluationIsCancelled() throws Exception {
+        Evaluation evaluation = new Evaluation();
+        ReduceFunction f = (a, b) -> {
+            evaluation.cancel();
+            return new IntNode(a.toInteger() + b.toInteger());
+        };
+
+        ForkJoinTask<Node> reduced = pool
+                .submit(new ReduceRecursiveTask(10, seq, 0, seq.size(), f, evaluation));
+
+        try {
+            reduced.join();
+
+            fail("Reduce should be cancelled");
+        } catch (EvaluationCancelledException e) {
+            assertTrue(evaluation.isCancelled());
+        }
+    }
+}
@@ -644,6 +644,19 @@ public class LexerTest {
     }
 
 
+    @Test
+    public void parseShouldFailIfStmtStartsFromScan() {
+        try {
+            List<Lexem> lexems = lexer.parse("scan({0, 1}, 0, x y -> x + y)");
+
+            fail("Parse should fail");
+        } catch (ParseException e) {
+            log.warn("Can't parse", e);
+            assertEquals(new Location(0, 1, 1), e.getLocation());
+        }
+    }
+
+
     @Test
     public void parseShouldFail1IfPrintIsInMiddleOfStmt() {
         try {
@@ -0,0 +1,39 @@
+package ashes.of.jade.lang.nodes;
+
+import ashes.of.jade.lang.Location;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RangeSequenceNodeTest {
+
+    @Test
+    public void sizeOfShouldNotOverflowForExtremeBounds() throws Exception {
+        assertEquals(0, RangeSequenceNode.sizeOf(1, 0, 1));
+        assertEquals(1, RangeSequenceNode.sizeOf(Long.MAX_VALUE, Long.MAX_VALUE, 1));
+        assertEquals(Long.MAX_VALUE, RangeSequenceNode.sizeOf(0, Long.MAX_VALUE - 1, 1));
+        assertEquals(-1, RangeSequenceNode.sizeOf(0, Long.MAX_VALUE, 1));
+        assertEquals(-1, RangeSequenceNode.sizeOf(-8000000000000000000L, 8000000000000000000L, 1));
+        assertEquals(8000000001L, RangeSequenceNode.sizeOf(-8000000000000000000L, 8000000000000000000L, 2000000000));
+        assertEquals(-1, RangeSequenceNode.sizeOf(Long.MIN_VALUE, Long.MAX_VALUE, 1));
+        assertEquals(3, RangeSequenceNode.sizeOf(Long.MIN_VALUE, Long.MAX_VALUE, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void rangeShouldKeepSizeWithinInt() throws Exception {
+        RangeSequenceNode range = new RangeSequenceNode(Location.EMPTY, -11, Integer.MAX_VALUE - 12L);
+
+        assertEquals(Integer.MAX_VALUE, range.size());
+        assertEquals(Integer.MAX_VALUE - 12L, range.getLong(range.size() - 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rangeShouldFailIfSizeDoesNotFitInInt() throws Exception {
+        new RangeSequenceNode(Location.EMPTY, 0, Integer.MAX_VALUE);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rangeShouldFailIfSizeDoesNotFitInLong() throws Exception {
+        new RangeSequenceNode(Location.EMPTY, -8000000000000000000L, 8000000000000000000L);
+    }
+}
@@ -0,0 +1,104 @@
+package ashes.of.jade.lang.optimizer;
+
+import ashes.of.jade.lang.lexer.Lexer;
+import ashes.of.jade.lang.nodes.LambdaNode;
+import ashes.of.jade.lang.nodes.Node;
+import ashes.of.jade.lang.nodes.NodeType;
+import ashes.of.jade.lang.nodes.VariableNode;
+import ashes.of.jade.lang.parser.Parser;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Deque;
+
+import static org.junit.Assert.*;
+
+public class CommonSubexpressionPassTest {
+
+    private Lexer lexer;
+    private Parser parser;
+    private CommonSubexpressionPass pass;
+
+    @Before
+    public void setUp() throws Exception {
+        lexer = new Lexer();
+        parser = new Parser();
+        pass = new CommonSubexpressionPass();
+    }
+
+    private Deque<Node> apply(String source) {
+        return pass.apply(parser.parse(lexer.parse(source)));
+    }
+
+    private long count(Deque<Node> rpn, NodeType type) {
+        return rpn.stream()
+                .filter(node -> node.is(type))
+                .count();
+    }
+
+    private long temporaries(Deque<Node> rpn, NodeType type) {
+        return rpn.stream()
+                .filter(node -> node.is(type) && ((VariableNode) node).isTemporary())
+                .count();
+    }
+
+    private LambdaNode lambda(Deque<Node> rpn) {
+        return (LambdaNode) rpn.stream()
+                .filter(Node::isLambda)
+                .findFirst()
+                .orElseThrow(AssertionError::new);
+    }
+
+
+    @Test
+    public void passShouldStoreRepeatedSubexpressionOfLambdaOnce() throws Exception {
+        LambdaNode lambda = lambda(apply("var s = map({0, 10}, i -> (2 * i + 1) * (2 * i + 1) / (2 * i + 1 + 3))"));
+
+        assertEquals(1, temporaries(lambda.stack, NodeType.STORE));
+        assertEquals(3, temporaries(lambda.stack, NodeType.LOAD));
+        assertEquals(2, count(lambda.stack, NodeType.MUL));
+        assertEquals(2, count(lambda.stack, NodeType.ADD));
+    }
+
+    @Test
+    public void passShouldNotChangeLambdaWithoutRepeatedOperators() throws Exception {
+        LambdaNode lambda = lambda(apply("var s = map({0, 10}, x -> x * x + x)"));
+
+        assertEquals(0, temporaries(lambda.stack, NodeType.STORE));
+        assertEquals(2, count(lambda.stack, NodeType.MUL) + count(lambda.stack, NodeType.ADD));
+    }
+
+    @Test
+    public void passShouldShareReduceAcrossStatements() throws Exception {
+        Deque<Node> rpn = apply(
+                "var a = reduce(map({0, 10}, x -> x * x), 0, x y -> x + y)\n" +
+                "var b = 2 * reduce(map({0, 10}, y -> y * y), 0, x y -> x + y)");
+
+        assertEquals(1, count(rpn, NodeType.REDUCE));
+        assertEquals(1, count(rpn, NodeType.MAP));
+        assertEquals(1, temporaries(rpn, NodeType.STORE));
+        assertEquals(2, temporaries(rpn, NodeType.LOAD));
+    }
+
+    @Test
+    public void passShouldNotShareMapConsumedByReduces() throws Exception {
+        Deque<Node> rpn = apply(
+                "var a = reduce(map({0, 10}, x -> x * x), 0, x y -> x + y)\n" +
+                "var b = reduce(map({0, 10}, x -> x * x), 1, x y -> x * y)");
+
+        assertEquals(2, count(rpn, NodeType.MAP));
+        assertEquals(0, temporaries(rpn, NodeType.STORE));
+    }
+
+    @Test
+    public void passShouldNotShareCallsIfVariableIsReassigned() throws Exception {
+        Deque<Node> rpn = apply(
+                "var n = 10\n" +
+                "var a = scan({0, n}, 0, x y -> x + y)\n" +
+                "var n = 20\n" +
+                "var b = scan({0, n}, 0, x y -> x + y)");
+
+        assertEquals(2, count(rpn, NodeType.SCAN));
+        assertEquals(0, temporaries(rpn, NodeType.STORE));
+    }
+}
@@ -0,0 +1,108 @@
+package ashes.of.jade.lang.optimizer;
+
+import ashes.of.jade.lang.lexer.Lexer;
+import ashes.of.jade.lang.nodes.LambdaNode;
+import ashes.of.jade.lang.nodes.Node;
+import ashes.of.jade.lang.nodes.NodeType;
+import ashes.of.jade.lang.parser.Parser;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Deque;
+
+import static ashes.of.jade.lang.NodeAssert.*;
+import static org.junit.Assert.*;
+
+public class ConstantFoldingPassTest {
+
+    private Lexer lexer;
+    private Parser parser;
+    private ConstantFoldingPass pass;
+
+    @Before
+    public void setUp() throws Exception {
+        lexer = new Lexer();
+        parser = new Parser();
+        pass = new ConstantFoldingPass();
+    }
+
+    private Deque<Node> apply(String source) {
+        return pass.apply(parser.parse(lexer.parse(source)));
+    }
+
+    private Deque<Node> lambda(Deque<Node> rpn) {
+        return rpn.stream()
+                .filter(Node::isLambda)
+                .map(node -> ((LambdaNode) node).getNodes())
+                .findFirst()
+                .orElseThrow(AssertionError::new);
+    }
+
+
+    @Test
+    public void passShouldFoldConstantExpression() throws Exception {
+        Deque<Node> rpn = apply("var n = 2 * 3 + 4 ^ 2 - 1");
+
+        assertValue(rpn, 21);
+        assertStore(rpn, "n");
+    }
+
+    @Test
+    public void passShouldFoldDivisionToDouble() throws Exception {
+        Deque<Node> rpn = apply("var n = 3 / 2");
+
+        assertValue(rpn, 1.5);
+        assertStore(rpn, "n");
+    }
+
+    @Test
+    public void passShouldFoldConstantsAroundVariables() throws Exception {
+        Deque<Node> rpn = apply(
+                "var a = 2\n" +
+                "var b = a * (2 + 3)");
+
+        assertValue(rpn, 2);
+        assertStore(rpn, "a");
+        assertNode(rpn, NodeType.NL);
+        assertNode(NodeType.LOAD, "a", rpn.removeLast());
+        assertValue(rpn, 5);
+        assertMultiply(rpn);
+        assertStore(rpn, "b");
+    }
+
+    @Test
+    public void passShouldReplaceSmallIntegerPowerWithMultiplications() throws Exception {
+        Deque<Node> nodes = lambda(apply("var s = map({0, 10}, x -> x ^ 3)"));
+
+        assertStore(nodes, "x");
+        assertNode(NodeType.LOAD, "x", nodes.removeLast());
+        assertNode(NodeType.LOAD, "x", nodes.removeLast());
+        assertMultiply(nodes);
+        assertNode(NodeType.LOAD, "x", nodes.removeLast());
+        assertMultiply(nodes);
+        assertTrue(nodes.isEmpty());
+    }
+
+    @Test
+    public void passShouldNotReplaceLargeOrDoublePower() throws Exception {
+        assertTrue(lambda(apply("var s = map({0, 10}, x -> x ^ 20)")).stream().anyMatch(n -> n.is(NodeType.POWER)));
+        assertTrue(lambda(apply("var s = map({0, 10}, x -> x ^ 0.5)")).stream().anyMatch(n -> n.is(NodeType.POWER)));
+        assertTrue(lambda(apply("var s = map({0, 10}, x -> (x + 1) ^ 2)")).stream().anyMatch(n -> n.is(NodeType.POWER)));
+    }
+
+    @Test
+    public void passShouldReplaceMinusOnePowerWithParity() throws Exception {
+        Deque<Node> nodes = lambda(apply("var s = map({0, 10}, i -> (-1) ^ i / (2 * i + 1))"));
+
+        assertStore(nodes, "i");
+        assertNode(NodeType.LOAD, "i", nodes.removeLast());
+        assertNode(nodes, NodeType.PARITY);
+        assertValue(nodes, 2);
+        assertNode(NodeType.LOAD, "i", nodes.removeLast());
+        assertMultiply(nodes);
+        assertValue(nodes, 1);
+        assertPlus(nodes);
+        assertDivide(nodes);
+        assertTrue(nodes.isEmpty());
+    }
+}
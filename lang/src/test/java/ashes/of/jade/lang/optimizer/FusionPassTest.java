@@ -0,0 +1,104 @@
+package ashes.of.jade.lang.optimizer;
+
+import ashes.of.jade.lang.lexer.Lexer;
+import ashes.of.jade.lang.nodes.Node;
+import ashes.of.jade.lang.nodes.NodeType;
+import ashes.of.jade.lang.parser.Parser;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Deque;
+
+import static org.junit.Assert.*;
+
+public class FusionPassTest {
+
+    private Lexer lexer;
+    private Parser parser;
+    private FusionPass pass;
+
+    @Before
+    public void setUp() throws Exception {
+        lexer = new Lexer();
+        parser = new Parser();
+        pass = new FusionPass();
+    }
+
+    private Deque<Node> apply(String source) {
+        return pass.apply(parser.parse(lexer.parse(source)));
+    }
+
+    private long count(Deque<Node> rpn, NodeType type) {
+        return rpn.stream()
+                .filter(node -> node.is(type))
+                .count();
+    }
+
+
+    @Test
+    public void passShouldFuseMapIntoReduceInOneExpression() throws Exception {
+        Deque<Node> rpn = apply("var s = reduce(map({0, 10}, x -> x * x), 0, x y -> x + y)");
+
+        assertEquals(0, count(rpn, NodeType.MAP));
+        assertEquals(1, count(rpn, NodeType.LAZYMAP));
+    }
+
+    @Test
+    public void passShouldFuseMapIntoReduceThroughVariableUsedOnce() throws Exception {
+        Deque<Node> rpn = apply(
+                "var seq = map({0, 10}, x -> x * x)\n" +
+                "var s = reduce(seq, 0, x y -> x + y)");
+
+        assertEquals(0, count(rpn, NodeType.MAP));
+        assertEquals(1, count(rpn, NodeType.LAZYMAP));
+    }
+
+    @Test
+    public void passShouldNotFuseMapIfVariableIsUsedTwice() throws Exception {
+        Deque<Node> rpn = apply(
+                "var seq = map({0, 10}, x -> x * x)\n" +
+                "var s = reduce(seq, 0, x y -> x + y)\n" +
+                "out seq");
+
+        assertEquals(1, count(rpn, NodeType.MAP));
+        assertEquals(0, count(rpn, NodeType.LAZYMAP));
+    }
+
+    @Test
+    public void passShouldNotFuseMapIfVariableIsReassigned() throws Exception {
+        Deque<Node> rpn = apply(
+                "var seq = map({0, 10}, x -> x * x)\n" +
+                "var seq = {0, 5}\n" +
+                "var s = reduce(seq, 0, x y -> x + y)");
+
+        assertEquals(1, count(rpn, NodeType.MAP));
+        assertEquals(0, count(rpn, NodeType.LAZYMAP));
+    }
+
+    @Test
+    public void passShouldNotFuseMapIfResultIsPrinted() throws Exception {
+        Deque<Node> rpn = apply("out map({0, 10}, x -> x * x)");
+
+        assertEquals(1, count(rpn, NodeType.MAP));
+        assertEquals(0, count(rpn, NodeType.LAZYMAP));
+    }
+
+    @Test
+    public void passShouldFuseInnerMapIntoOuterMap() throws Exception {
+        Deque<Node> rpn = apply("var s = map(map({0, 10}, i -> i * 2), x -> x + 1)");
+
+        assertEquals(1, count(rpn, NodeType.MAP));
+        assertEquals(1, count(rpn, NodeType.LAZYMAP));
+    }
+
+    @Test
+    public void passShouldFuseMapChainThroughVariablesIntoReduce() throws Exception {
+        Deque<Node> rpn = apply(
+                "var a = map({0, 10}, i -> i * 2)\n" +
+                "var b = map(a, x -> x + 1)\n" +
+                "var s = reduce(b, 0, x y -> x + y)");
+
+        assertEquals(0, count(rpn, NodeType.MAP));
+        assertEquals(2, count(rpn, NodeType.LAZYMAP));
+    }
+}
@@ -5,13 +5,16 @@ import ashes.of.jade.lang.interpreter.EvalException;
 import ashes.of.jade.lang.lexer.Lexem;
 import ashes.of.jade.lang.lexer.Lexer;
 import ashes.of.jade.lang.lexer.LexerTest;
+import ashes.of.jade.lang.nodes.LambdaNode;
 import ashes.of.jade.lang.nodes.Node;
 import ashes.of.jade.lang.nodes.NodeType;
+import ashes.of.jade.lang.nodes.VariableNode;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Arrays;
 import java.util.Deque;
 import java.util.List;
 
@@ -336,4 +339,42 @@ public class ParserTest {
 
         System.out.println(rpn);
     }
-}
\ No newline at end of file
+
+
+    @Test
+    public void parseShouldResolveGlobalsAndLambdaParamsToSeparateSlots() throws Exception {
+        List<Lexem> lexems = lexer.parse(
+                "var a = 1\n" +
+                "var b = reduce({0, a}, 0, x y -> x + y)\n" +
+                "var a = b + a\n");
+
+        VariableNode[] vars = parser.parse(lexems).stream()
+                .filter(node -> node instanceof VariableNode)
+                .toArray(VariableNode[]::new);
+
+        // STORE a, LOAD a, STORE b, LOAD b, LOAD a, STORE a
+        assertEquals(6, vars.length);
+        assertArrayEquals(new int[] { 0, 0, 1, 1, 0, 0 },
+                Arrays.stream(vars).mapToInt(VariableNode::getSlot).toArray());
+        assertTrue(Arrays.stream(vars).noneMatch(VariableNode::isParam));
+
+        LambdaNode lambda = (LambdaNode) parser.parse(lexems).stream()
+                .filter(Node::isLambda)
+                .findFirst()
+                .orElseThrow(AssertionError::new);
+
+        // STORE y, STORE x, LOAD x, LOAD y
+        assertEquals(2, lambda.getParams());
+        Deque<Node> nodes = lambda.getNodes();
+        assertParam(nodes.removeLast(), NodeType.STORE, "y", 1);
+        assertParam(nodes.removeLast(), NodeType.STORE, "x", 0);
+        assertParam(nodes.removeLast(), NodeType.LOAD, "x", 0);
+        assertParam(nodes.removeLast(), NodeType.LOAD, "y", 1);
+    }
+
+    private void assertParam(Node node, NodeType type, String name, int slot) {
+        assertNode(type, name, node);
+        assertTrue(((VariableNode) node).isParam());
+        assertEquals(slot, ((VariableNode) node).getSlot());
+    }
+}
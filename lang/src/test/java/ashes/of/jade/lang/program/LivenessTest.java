@@ -0,0 +1,87 @@
+package ashes.of.jade.lang.program;
+
+import ashes.of.jade.lang.lexer.Lexer;
+import ashes.of.jade.lang.parser.Parser;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LivenessTest {
+
+    private Liveness liveness;
+
+    @Before
+    public void setUp() throws Exception {
+        liveness = new Liveness();
+    }
+
+    private Program compile(String source) {
+        return new ProgramCompiler().compile(new Parser().parse(new Lexer().parse(source)));
+    }
+
+
+    @Test
+    public void applyShouldRemoveStatementsWhichDoNotReachOutput() throws Exception {
+        Program program = liveness.apply(compile(
+                "var a = 1\n" +
+                "var b = 2\n" +
+                "var c = a + 1\n" +
+                "out a"));
+
+        assertArrayEquals(new int[] {
+                Program.CONST, 0,
+                Program.STORE, 0,
+                Program.LOADLAST, 0,
+                Program.OUT, 0,
+        }, program.getCode());
+
+        assertEquals(compile("var a = 1").getLocation(0), program.getLocation(0));
+    }
+
+    @Test
+    public void applyShouldMarkOnlyLastReadOfVariable() throws Exception {
+        Program program = liveness.apply(compile(
+                "var s = {0, 10}\n" +
+                "out s\n" +
+                "var t = map(s, x -> x)\n" +
+                "out reduce(t, 0, x y -> x + y)"));
+
+        assertArrayEquals(new int[] {
+                Program.CONST, 0,
+                Program.CONST, 1,
+                Program.NEWSEQUENCE, 0,
+                Program.STORE, 0,
+                Program.LOAD, 0,
+                Program.OUT, 0,
+                Program.LOADLAST, 0,
+                Program.CONST, 2,
+                Program.MAP, 0,
+                Program.STORE, 1,
+                Program.LOADLAST, 1,
+                Program.CONST, 3,
+                Program.CONST, 4,
+                Program.REDUCE, 0,
+                Program.OUT, 0,
+        }, program.getCode());
+    }
+
+    @Test
+    public void applyShouldKeepOverwrittenVariableWhichIsReadByItsNewValue() throws Exception {
+        Program program = liveness.apply(compile(
+                "var a = 1\n" +
+                "var a = a + 1\n" +
+                "out a"));
+
+        assertArrayEquals(new int[] {
+                Program.CONST, 0,
+                Program.STORE, 0,
+                Program.LOADLAST, 0,
+                Program.CONST, 1,
+                Program.ADD, 0,
+                Program.STORE, 0,
+                Program.LOADLAST, 0,
+                Program.OUT, 0,
+        }, program.getCode());
+    }
+}
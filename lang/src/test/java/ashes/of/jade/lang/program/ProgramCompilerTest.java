@@ -0,0 +1,92 @@
+package ashes.of.jade.lang.program;
+
+import ashes.of.jade.lang.Location;
+import ashes.of.jade.lang.lexer.Lexer;
+import ashes.of.jade.lang.nodes.LambdaNode;
+import ashes.of.jade.lang.nodes.Node;
+import ashes.of.jade.lang.parser.Parser;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Deque;
+
+import static org.junit.Assert.*;
+
+public class ProgramCompilerTest {
+
+    private ProgramCompiler compiler;
+
+    @Before
+    public void setUp() throws Exception {
+        compiler = new ProgramCompiler();
+    }
+
+    private Deque<Node> parse(String source) {
+        return new Parser().parse(new Lexer().parse(source));
+    }
+
+
+    @Test
+    public void compileShouldEmitInstructionsInEvaluationOrder() throws Exception {
+        Program program = compiler.compile(parse("var n = 13 + 6 * 2\nout n\n"));
+
+        assertArrayEquals(new int[] {
+                Program.CONST, 0,
+                Program.CONST, 1,
+                Program.CONST, 2,
+                Program.MUL, 0,
+                Program.ADD, 0,
+                Program.STORE, 0,
+                Program.LOAD, 0,
+                Program.OUT, 0,
+        }, program.getCode());
+
+        assertEquals(8, program.size());
+        assertEquals(13, program.getConstant(0).toInteger());
+        assertEquals("n", program.getName(0));
+        assertEquals(1, program.getSlots());
+        assertEquals(3, program.getMaxDepth());
+    }
+
+    @Test
+    public void compileShouldKeepLocationOfEveryInstruction() throws Exception {
+        Program program = compiler.compile(parse("var n = 1 + 2 ^ 3"));
+
+        // CONST 1, CONST 2, CONST 3, POWER, ADD, STORE
+        assertEquals(new Location(8, 1, 9), program.getLocation(0));
+        assertEquals(new Location(14, 1, 15), program.getLocation(3 * Program.INSTRUCTION_SIZE));
+        assertEquals(new Location(10, 1, 11), program.getLocation(4 * Program.INSTRUCTION_SIZE));
+    }
+
+    @Test
+    public void compileShouldAttachProgramsToLambdas() throws Exception {
+        Deque<Node> rpn = parse("var s = reduce({0, 10}, 0, x y -> x * x + y * y)");
+        Program program = compiler.compile(rpn);
+
+        LambdaNode lambda = (LambdaNode) rpn.stream()
+                .filter(Node::isLambda)
+                .findFirst()
+                .orElseThrow(AssertionError::new);
+
+        assertSame(lambda, program.getConstant(3));
+
+        Program body = lambda.getProgram();
+        assertNotNull(body);
+        assertArrayEquals(new int[] {
+                Program.STORE, 1,
+                Program.STORE, 0,
+                Program.LOAD, 0,
+                Program.LOAD, 0,
+                Program.MUL, 0,
+                Program.LOAD, 1,
+                Program.LOAD, 1,
+                Program.MUL, 0,
+                Program.ADD, 0,
+        }, body.getCode());
+
+        // two arguments on the stack before parameters are stored
+        assertEquals(3, body.getMaxDepth());
+        assertEquals("x", body.getName(0));
+        assertEquals("y", body.getName(1));
+    }
+}
@@ -0,0 +1,137 @@
+package ashes.of.jade.lang.validator;
+
+import ashes.of.jade.lang.Location;
+import ashes.of.jade.lang.lexer.Lexer;
+import ashes.of.jade.lang.parser.ParseException;
+import ashes.of.jade.lang.parser.Parser;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+
+public class ValidatorTest {
+
+    private Lexer lexer;
+    private Parser parser;
+    private Validator validator;
+
+    @Before
+    public void setUp() throws Exception {
+        lexer = new Lexer();
+        parser = new Parser();
+        validator = new Validator();
+    }
+
+    private List<ParseException> validate(String source) {
+        return validator.validate(parser.parse(lexer.parse(source)));
+    }
+
+    private void assertFails(String source, Location... expected) {
+        List<Location> locations = validate(source).stream()
+                .map(ParseException::getLocation)
+                .collect(Collectors.toList());
+
+        assertEquals(asList(expected), locations);
+    }
+
+
+    @Test
+    public void validateShouldAcceptValidProgram() throws Exception {
+        List<ParseException> errors = validate(
+                "var n = 500\n" +
+                "var sequence = map({0, n}, i -> (-1)^i / (2 * i + 1))\n" +
+                "var pi = 4 * reduce(sequence, 0, x y -> x + y)\n" +
+                "print \"pi = \"\n" +
+                "out pi");
+
+        assertTrue(errors.isEmpty());
+    }
+
+    @Test
+    public void validateShouldFailIfVariableIsUsedBeforeAssignment() throws Exception {
+        assertFails("var a = a + 1", new Location(8, 1, 9));
+    }
+
+    @Test
+    public void validateShouldFailIfLambdaUsesGlobalVariable() throws Exception {
+        assertFails(
+                "var n = 2\n" +
+                "var seq = map({0, 3}, x -> x * n)",
+                new Location(41, 2, 32));
+    }
+
+    @Test
+    public void validateShouldFailIfMapIsAppliedToNumber() throws Exception {
+        assertFails("var m = map(13, x -> x)", new Location(12, 1, 13));
+    }
+
+    @Test
+    public void validateShouldFailIfNumberIsAddedToSequenceThroughVariable() throws Exception {
+        assertFails(
+                "var seq = map({0, 5}, x -> x * 2)\n" +
+                "var n = 5 + seq",
+                new Location(14, 1, 15));
+    }
+
+    @Test
+    public void validateShouldFailIfLambdaBodyIsInvalidForElementType() throws Exception {
+        assertFails("var s = map({0, 10}, x -> x + {0, x})", new Location(30, 1, 31));
+    }
+
+    @Test
+    public void validateShouldFailIfMapLambdaReturnsSequence() throws Exception {
+        assertFails("var s = map({0, 10}, x -> map({0, x}, y -> y))", new Location(30, 1, 31));
+    }
+
+    @Test
+    public void validateShouldInferResultOfReduce() throws Exception {
+        assertFails(
+                "var r = reduce({0, 10}, 0, x y -> map({x, y}, z -> z))\n" +
+                "out r + 1",
+                new Location(38, 1, 39));
+    }
+
+    @Test
+    public void validateShouldInferSequenceResultOfScan() throws Exception {
+        assertFails(
+                "var s = scan({0, 10}, 0, x y -> x + y)\n" +
+                "var n = s + 1",
+                new Location(13, 1, 14));
+    }
+
+    @Test
+    public void validateShouldFailIfOperatorHasNotEnoughOperands() throws Exception {
+        List<ParseException> errors = validate("var a = 10 + ");
+
+        assertEquals(1, errors.size());
+        assertEquals(new Location(11, 1, 12), errors.get(0).getLocation());
+        assertEquals("Stack size 1 is less than 2", errors.get(0).getMessage());
+    }
+
+    @Test
+    public void validateShouldFailIfMapHasEmptyParameter() throws Exception {
+        assertFails("var a = map(, x -> x)", new Location(8, 1, 9));
+    }
+
+    @Test
+    public void validateShouldReportAllErrors() throws Exception {
+        assertFails(
+                "var a = b + 1\n" +
+                "var m = map(13, x -> x)\n" +
+                "out \"string\"\n" +
+                "var c = a * d",
+                new Location(8, 1, 9),
+                new Location(26, 2, 13),
+                new Location(42, 3, 5),
+                new Location(63, 4, 13));
+    }
+
+    @Test
+    public void validateShouldReportErrorInLambdaOnce() throws Exception {
+        assertFails("var r = reduce({0, 10}, 0, x y -> x + z)", new Location(38, 1, 39));
+    }
+}